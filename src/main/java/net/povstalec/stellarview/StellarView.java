@@ -94,7 +94,7 @@ public class StellarView
     		return;
     	
     	Space.updateSol();
-    	Space.resetStarFields();
+    	Space.updateStarFields();
     }
     
     public static float lightSourceDimming(ClientLevel level, Camera camera)
@@ -12,14 +12,16 @@ import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.client.renderer.ShaderInstance;
 import net.minecraft.util.Mth;
 import net.minecraft.world.phys.Vec3;
+import net.povstalec.stellarview.common.util.GpuResources;
 
 public class StellarViewSkyEffects {
-    public static VertexBuffer createDarkSky() {
-        VertexBuffer darkBuffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
+    public static VertexBuffer createDarkSky(Object owner) {
+        VertexBuffer darkBuffer = GpuResources.track(new VertexBuffer(VertexBuffer.Usage.STATIC), owner, GpuResources.Scope.UNIVERSE);
         Tesselator tesselator = Tesselator.getInstance();
         BufferBuilder bufferbuilder = tesselator.begin(VertexFormat.Mode.TRIANGLE_FAN, DefaultVertexFormat.POSITION);
 
         MeshData mesh = buildSkyDisc(bufferbuilder, -16.0F);
+        GpuResources.setBytes(darkBuffer, mesh.vertexBuffer().remaining());
         darkBuffer.bind();
         darkBuffer.upload(mesh);
         VertexBuffer.unbind();
@@ -27,12 +29,13 @@ public class StellarViewSkyEffects {
         return darkBuffer;
     }
 
-    public static VertexBuffer createLightSky() {
-        VertexBuffer skyBuffer = new VertexBuffer(VertexBuffer.Usage.STATIC);
+    public static VertexBuffer createLightSky(Object owner) {
+        VertexBuffer skyBuffer = GpuResources.track(new VertexBuffer(VertexBuffer.Usage.STATIC), owner, GpuResources.Scope.UNIVERSE);
         Tesselator tesselator = Tesselator.getInstance();
         BufferBuilder bufferbuilder = tesselator.begin(VertexFormat.Mode.TRIANGLE_FAN, DefaultVertexFormat.POSITION);
 
         MeshData mesh = buildSkyDisc(bufferbuilder, 16.0F);
+        GpuResources.setBytes(skyBuffer, mesh.vertexBuffer().remaining());
         skyBuffer.bind();
         skyBuffer.upload(mesh);
         VertexBuffer.unbind();
@@ -0,0 +1,97 @@
+package net.povstalec.stellarview.client.render.shader;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.minecraft.client.renderer.ShaderInstance;
+import net.povstalec.stellarview.common.util.GpuResources;
+import org.joml.Matrix4f;
+import org.lwjgl.opengl.GL15C;
+import org.lwjgl.opengl.GL31C;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.ByteBuffer;
+
+/**
+ * std140 uniform block with the sky state that stays the same for a whole frame, see shaders/include/sky_frame.glsl.
+ * It's uploaded once per frame and every Star and billboard draw reads it, so they only need to set their own per-draw uniforms
+ */
+public final class SkyFrameUniforms
+{
+	public static final String BLOCK_NAME = "SkyFrame";
+	public static final int BINDING = 3;
+	
+	private static final int MATRIX_BYTES = 16 * Float.BYTES;
+	private static final int PROJECTION_OFFSET = 0;
+	private static final int MODEL_VIEW_OFFSET = PROJECTION_OFFSET + MATRIX_BYTES;
+	private static final int STAR_MODEL_VIEW_OFFSET = MODEL_VIEW_OFFSET + MATRIX_BYTES;
+	private static final int STAR_COLOR_OFFSET = STAR_MODEL_VIEW_OFFSET + MATRIX_BYTES;
+	private static final int SIZE = STAR_COLOR_OFFSET + 4 * Float.BYTES;
+	
+	private static int bufferId = -1;
+	private static final AutoCloseable RESOURCE = SkyFrameUniforms::close;
+	
+	/**
+	 * Points the uniform block of the shader at the shared binding, shaders without the block are left alone
+	 */
+	public static void bindBlock(ShaderInstance shaderInstance)
+	{
+		RenderSystem.assertOnRenderThread();
+		
+		int blockIndex = GL31C.glGetUniformBlockIndex(shaderInstance.getId(), BLOCK_NAME);
+		if(blockIndex != GL31C.GL_INVALID_INDEX)
+			GL31C.glUniformBlockBinding(shaderInstance.getId(), blockIndex, BINDING);
+	}
+	
+	/**
+	 * Uploads the state of the current frame, must be called before any sky object of the frame is drawn
+	 * @param projectionMatrix Projection shared by all sky draws
+	 * @param modelViewMatrix Model view of the texture layers, which are already transformed by the sky pose on the CPU
+	 * @param starModelViewMatrix Model view of the Star Fields
+	 * @param starBrightness Brightness all Stars get multiplied by
+	 */
+	public static void update(Matrix4f projectionMatrix, Matrix4f modelViewMatrix, Matrix4f starModelViewMatrix, float starBrightness)
+	{
+		RenderSystem.assertOnRenderThread();
+		
+		if(bufferId < 0)
+		{
+			bufferId = GlStateManager._glGenBuffers();
+			GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, bufferId);
+			GL15C.glBufferData(GL31C.GL_UNIFORM_BUFFER, SIZE, GL15C.GL_DYNAMIC_DRAW);
+			GpuResources.setBytes(GpuResources.track(RESOURCE, "Sky Frame Uniforms", GpuResources.Scope.PERSISTENT), SIZE);
+		}
+		else
+			GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, bufferId);
+		
+		try(MemoryStack stack = MemoryStack.stackPush())
+		{
+			// std140 lays out a mat4 as four vec4 columns, the same as the column-major order JOML writes
+			ByteBuffer buffer = stack.malloc(SIZE);
+			projectionMatrix.get(PROJECTION_OFFSET, buffer);
+			modelViewMatrix.get(MODEL_VIEW_OFFSET, buffer);
+			starModelViewMatrix.get(STAR_MODEL_VIEW_OFFSET, buffer);
+			buffer.putFloat(STAR_COLOR_OFFSET, 1.0F);
+			buffer.putFloat(STAR_COLOR_OFFSET + Float.BYTES, 1.0F);
+			buffer.putFloat(STAR_COLOR_OFFSET + 2 * Float.BYTES, 1.0F);
+			buffer.putFloat(STAR_COLOR_OFFSET + 3 * Float.BYTES, starBrightness);
+			
+			GL15C.glBufferSubData(GL31C.GL_UNIFORM_BUFFER, 0, buffer);
+		}
+		
+		GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, 0);
+		
+		// Other mods may use the same binding point, so it's claimed again every frame
+		GL31C.glBindBufferBase(GL31C.GL_UNIFORM_BUFFER, BINDING, bufferId);
+	}
+	
+	public static void close()
+	{
+		GpuResources.untrack(RESOURCE);
+		
+		if(bufferId >= 0)
+		{
+			RenderSystem.glDeleteBuffers(bufferId);
+			bufferId = -1;
+		}
+	}
+}
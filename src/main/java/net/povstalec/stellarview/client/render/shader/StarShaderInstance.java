@@ -14,6 +14,12 @@ public class StarShaderInstance extends ShaderInstance
 	@Nullable
 	public final Uniform RELATIVE_SPACE_LY;
 	public final Uniform RELATIVE_SPACE_KM;
+	@Nullable
+	public final Uniform STAR_BOUNDS_MIN;
+	@Nullable
+	public final Uniform STAR_BOUNDS_STEP;
+	@Nullable
+	public final Uniform STAR_KEEP_FRACTION;
 	
 	public StarShaderInstance(ResourceProvider provider, ResourceLocation shaderLocation, VertexFormat format)
 			throws IOException
@@ -21,5 +27,8 @@ public class StarShaderInstance extends ShaderInstance
 		super(provider, shaderLocation, format);
 		this.RELATIVE_SPACE_LY = this.getUniform("RelativeSpaceLy");
 		this.RELATIVE_SPACE_KM = this.getUniform("RelativeSpaceKm");
+		this.STAR_BOUNDS_MIN = this.getUniform("StarBoundsMin");
+		this.STAR_BOUNDS_STEP = this.getUniform("StarBoundsStep");
+		this.STAR_KEEP_FRACTION = this.getUniform("StarKeepFraction");
 	}
 }
@@ -1,11 +1,14 @@
 package net.povstalec.stellarview.client.render.shader;
 
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import net.minecraft.client.renderer.ShaderInstance;
 import net.minecraft.resources.ResourceLocation;
 import net.neoforged.api.distmarker.Dist;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.EventBusSubscriber;
 import net.neoforged.neoforge.client.event.RegisterShadersEvent;
 import net.povstalec.stellarview.StellarView;
+import net.povstalec.stellarview.common.util.ProceduralStars;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
@@ -14,6 +17,16 @@ public class StellarViewShaders
 {
 	@Nullable
     private static StarShaderInstance rendertypeStarShater;
+	@Nullable
+	private static StarShaderInstance rendertypeStarInstancedShader;
+	@Nullable
+	private static StarShaderInstance rendertypeStarCompactShader;
+	@Nullable
+	private static StarShaderInstance rendertypeStarProceduralShader;
+	@Nullable
+	private static StarShaderInstance rendertypeStarBakedShader;
+	@Nullable
+	private static ShaderInstance rendertypeBillboardShader;
 	
 	@EventBusSubscriber(modid = StellarView.MODID, value = Dist.CLIENT, bus= EventBusSubscriber.Bus.MOD)
     public static class ShaderInit
@@ -25,12 +38,74 @@ public class StellarViewShaders
             		(shaderInstance) ->
             {
             	rendertypeStarShater = (StarShaderInstance) shaderInstance;
+            	SkyFrameUniforms.bindBlock(shaderInstance);
+            });
+
+            event.registerShader(new StarShaderInstance(event.getResourceProvider(), ResourceLocation.fromNamespaceAndPath(StellarView.MODID,"rendertype_star_instanced"), StellarViewVertexFormat.STAR_INSTANCE.get()),
+            		(shaderInstance) ->
+            {
+            	rendertypeStarInstancedShader = (StarShaderInstance) shaderInstance;
+            	SkyFrameUniforms.bindBlock(shaderInstance);
+            });
+
+            event.registerShader(new StarShaderInstance(event.getResourceProvider(), ResourceLocation.fromNamespaceAndPath(StellarView.MODID,"rendertype_star_compact"), StellarViewVertexFormat.STAR_COMPACT_INSTANCE.get()),
+            		(shaderInstance) ->
+            {
+            	rendertypeStarCompactShader = (StarShaderInstance) shaderInstance;
+            	SkyFrameUniforms.bindBlock(shaderInstance);
+            });
+
+            event.registerShader(new StarShaderInstance(event.getResourceProvider(), ResourceLocation.fromNamespaceAndPath(StellarView.MODID,"rendertype_star_procedural"), DefaultVertexFormat.EMPTY),
+            		(shaderInstance) ->
+            {
+            	rendertypeStarProceduralShader = (StarShaderInstance) shaderInstance;
+            	SkyFrameUniforms.bindBlock(shaderInstance);
+            	ProceduralStars.bindBlock(shaderInstance);
+            });
+
+            event.registerShader(new StarShaderInstance(event.getResourceProvider(), ResourceLocation.fromNamespaceAndPath(StellarView.MODID,"rendertype_star_baked"), DefaultVertexFormat.POSITION_COLOR),
+            		(shaderInstance) ->
+            {
+            	rendertypeStarBakedShader = (StarShaderInstance) shaderInstance;
+            	SkyFrameUniforms.bindBlock(shaderInstance);
+            });
+
+            event.registerShader(new ShaderInstance(event.getResourceProvider(), ResourceLocation.fromNamespaceAndPath(StellarView.MODID,"rendertype_billboard"), DefaultVertexFormat.POSITION_TEX_COLOR),
+            		(shaderInstance) ->
+            {
+            	rendertypeBillboardShader = shaderInstance;
+            	SkyFrameUniforms.bindBlock(shaderInstance);
             });
         }
     }
-	
+
 	public static StarShaderInstance starShader()
 	{
 		return rendertypeStarShater;
 	}
+	
+	public static StarShaderInstance starInstancedShader()
+	{
+		return rendertypeStarInstancedShader;
+	}
+	
+	public static StarShaderInstance starCompactShader()
+	{
+		return rendertypeStarCompactShader;
+	}
+	
+	public static StarShaderInstance starProceduralShader()
+	{
+		return rendertypeStarProceduralShader;
+	}
+	
+	public static StarShaderInstance starBakedShader()
+	{
+		return rendertypeStarBakedShader;
+	}
+	
+	public static ShaderInstance billboardShader()
+	{
+		return rendertypeBillboardShader;
+	}
 }
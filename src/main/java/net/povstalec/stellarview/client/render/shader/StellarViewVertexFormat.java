@@ -16,6 +16,8 @@ import java.util.function.Supplier;
 public class StellarViewVertexFormat
 {
 	public static final DeferredVertexThing<VertexFormatElement> ELEMENT_HEIGHT_WIDTH_SIZE = register(VertexFormatElement.Type.FLOAT, VertexFormatElement.Usage.GENERIC, 3);
+	public static final DeferredVertexThing<VertexFormatElement> ELEMENT_QUANTIZED_POS_SIZE = register(VertexFormatElement.Type.USHORT, VertexFormatElement.Usage.GENERIC, 4);
+	public static final DeferredVertexThing<VertexFormatElement> ELEMENT_QUANTIZED_SIN_COS = register(VertexFormatElement.Type.SHORT, VertexFormatElement.Usage.GENERIC, 2);
 	
 	// NOTE: The order of elements very much MATTERS!!!
 	public static final DeferredVertexThing<VertexFormat> STAR_POS_COLOR_LY = new DeferredVertexThing<>(() -> VertexFormat.builder()
@@ -23,6 +25,20 @@ public class StellarViewVertexFormat
 			.add("Color", VertexFormatElement.COLOR)
 			.add("HeightWidthSize", ELEMENT_HEIGHT_WIDTH_SIZE.get())
 			.build());
+	
+	// One record per Star, the corners are created in the vertex shader from gl_VertexID
+	public static final DeferredVertexThing<VertexFormat> STAR_INSTANCE = new DeferredVertexThing<>(() -> VertexFormat.builder()
+			.add("StarPos", VertexFormatElement.POSITION)
+			.add("Color", VertexFormatElement.COLOR)
+			.add("SinCosSize", ELEMENT_HEIGHT_WIDTH_SIZE.get())
+			.build());
+	
+	// Same as STAR_INSTANCE, but position and size are 16-bit steps inside the bounds of the Star Buffer and sin and cos are scaled to 16-bit integers
+	public static final DeferredVertexThing<VertexFormat> STAR_COMPACT_INSTANCE = new DeferredVertexThing<>(() -> VertexFormat.builder()
+			.add("StarPosSize", ELEMENT_QUANTIZED_POS_SIZE.get())
+			.add("Color", VertexFormatElement.COLOR)
+			.add("SinCos", ELEMENT_QUANTIZED_SIN_COS.get())
+			.build());
 
 	// NOTE: VertexFormatElements now require an ID, and this ID can only be between 0 and 31. The ELEMENTS list here is AT-ed to be public
 	// so this method can access the size. What this means though is that if enough mods add VertexFormatElements the game will not be able to
@@ -39,7 +55,11 @@ public class StellarViewVertexFormat
 		// The registering of VertexFormatElements is not threadsafe so it needs to be done later
 		event.enqueueWork(() -> {
 			ELEMENT_HEIGHT_WIDTH_SIZE.initialize();
+			ELEMENT_QUANTIZED_POS_SIZE.initialize();
+			ELEMENT_QUANTIZED_SIN_COS.initialize();
 			STAR_POS_COLOR_LY.initialize();
+			STAR_INSTANCE.initialize();
+			STAR_COMPACT_INSTANCE.initialize();
 		});
 	}
 
@@ -19,6 +19,7 @@ import net.povstalec.stellarview.client.render.level.StellarViewNetherEffects;
 import net.povstalec.stellarview.client.render.level.StellarViewOverworldEffects;
 import net.povstalec.stellarview.client.resourcepack.objects.*;
 import net.povstalec.stellarview.client.resourcepack.objects.distinct.Sol;
+import net.povstalec.stellarview.common.util.GpuResources;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -57,6 +58,9 @@ public class ResourcepackReloadListener
     		Space.clear();
     		ViewCenters.clear();
     		
+    		// Whatever the previous universe still had in video memory goes with it
+    		GpuResources.releaseUniverse();
+    		
 			HashMap<ResourceLocation, ViewCenter> viewCenters = new HashMap<>();
 			HashMap<ResourceLocation, SpaceObject> spaceObjects = new HashMap<>();
     		
@@ -93,7 +97,10 @@ public class ResourcepackReloadListener
 
 			setSpaceObjects(spaceObjects);
 			Space.setupSynodicOrbits();
+			Space.logBounds();
 			setViewCenters(spaceObjects, viewCenters);
+			
+			SpaceTextureAtlas.stitch(manager, spaceObjects.values(), viewCenters.values());
 		}
 		
 		private static void addViewCenter(HashMap<ResourceLocation, ViewCenter> viewCenters, ResourceLocation location, JsonElement element)
@@ -0,0 +1,285 @@
+package net.povstalec.stellarview.client.resourcepack;
+
+import net.povstalec.stellarview.client.resourcepack.objects.SpaceObject;
+import net.povstalec.stellarview.common.config.GeneralConfig;
+import net.povstalec.stellarview.common.util.SpaceCoords;
+import net.povstalec.stellarview.common.util.SphericalCoords;
+import org.joml.Quaterniond;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+
+import java.util.Arrays;
+
+/**
+ * Everything the sky objects need to be drawn in a single frame, evaluated once per frame before anything is drawn.
+ * Walking the Space tree fills one slot per textured object with its position relative to the view center, its sky position, distance and visibility,
+ * so drawing only reads these arrays instead of working out positions, rotations and fade out distances while issuing draw calls.
+ * Nothing in here touches OpenGL, so a frame can be evaluated without a render thread
+ */
+public final class SkyScene
+{
+	private static final int MIN_CAPACITY = 64;
+	
+	private static final byte VISIBLE = 1; // The object itself gets drawn
+	private static final byte CHILDREN_VISIBLE = 2; // The children of the object get drawn
+	
+	private final Quaterniond skyRotation = new Quaterniond();
+	private final SpaceCoords coords = new SpaceCoords();
+	private final Vector3d relativePosition = new Vector3d();
+	
+	private long ticks;
+	private float partialTicks;
+	
+	// Parts of the day brightness that are the same for every texture layer in a frame
+	private boolean starsAlwaysVisible;
+	private float starBrightness;
+	private float lightSourceDimming;
+	private float rainDimming;
+	
+	private int objects = 0;
+	private int culledSubtrees = 0;
+	private SpaceObject[] evaluated = new SpaceObject[MIN_CAPACITY];
+	private float[] offsets = new float[3 * MIN_CAPACITY]; // Orbit offset of each object in km, including the offsets of its parents
+	private double[] positions = new double[3 * MIN_CAPACITY]; // Rotated position relative to the view center in km
+	private double[] theta = new double[MIN_CAPACITY];
+	private double[] phi = new double[MIN_CAPACITY];
+	private double[] distances = new double[MIN_CAPACITY]; // km
+	private byte[] flags = new byte[MIN_CAPACITY];
+	
+	/**
+	 * Starts evaluating a new frame, every slot of the previous frame is dropped
+	 * @param viewCenterRotation Whether the sky is rotated by the axis rotation of the object it's viewed from
+	 * @param starBrightness Star brightness of the level
+	 * @param lightSourceDimming Dimming caused by light sources around the camera
+	 * @param rainDimming Dimming caused by rain
+	 */
+	public void begin(ViewCenter viewCenter, boolean viewCenterRotation, long ticks, float partialTicks, float starBrightness, float lightSourceDimming, float rainDimming)
+	{
+		this.ticks = ticks;
+		this.partialTicks = partialTicks;
+		
+		this.starsAlwaysVisible = viewCenter.starsAlwaysVisible();
+		this.starBrightness = starBrightness;
+		this.lightSourceDimming = lightSourceDimming;
+		this.rainDimming = rainDimming;
+		
+		// Inverting so that we can view the world through the relative rotation of our view center
+		skyRotation.identity();
+		if(viewCenterRotation)
+			viewCenter.getObjectAxisRotation().quaterniond().invert(skyRotation);
+		
+		objects = 0;
+		culledSubtrees = 0;
+	}
+	
+	/**
+	 * Evaluates the whole Space tree, the master parent is evaluated last just like it's rendered last
+	 */
+	public void evaluate(ViewCenter viewCenter, Iterable<SpaceObject> spaceObjects, SpaceObject masterParent, Vector3f parentVector)
+	{
+		for(SpaceObject spaceObject : spaceObjects)
+		{
+			if(spaceObject != masterParent)
+				spaceObject.evaluate(this, viewCenter, parentVector, SpaceObject.NO_ROTATION);
+		}
+		
+		masterParent.evaluate(this, viewCenter, parentVector, SpaceObject.NO_ROTATION);
+	}
+	
+	/**
+	 * @param objectCoords Coordinates of the object without its orbit offset
+	 * @param offset Orbit offset added to the coordinates
+	 * @return Distance between the offset coordinates and the view center in km
+	 */
+	public double distance(SpaceCoords objectCoords, Vector3f offset, SpaceCoords viewCenterCoords)
+	{
+		return objectCoords.addInto(offset, coords).relativeKm(viewCenterCoords, relativePosition).length();
+	}
+	
+	/**
+	 * Counts a subtree that has been rejected as a whole without being evaluated
+	 */
+	public void cull()
+	{
+		culledSubtrees++;
+	}
+	
+	/**
+	 * Adds a slot for an object to this frame
+	 * @param objectCoords Coordinates of the object without its orbit offset
+	 * @param offset Orbit offset of the object, passed on to its children
+	 * @param fadeOutHandler Distances at which the object and its children stop being drawn
+	 * @param isViewCenter Whether the sky is viewed from this object, in which case the object itself isn't drawn
+	 * @return Index of the slot
+	 */
+	public int add(SpaceObject object, SpaceCoords objectCoords, Vector3f offset, SpaceObject.FadeOutHandler fadeOutHandler, SpaceCoords viewCenterCoords, boolean isViewCenter)
+	{
+		if(objects == evaluated.length)
+			grow();
+		
+		int index = objects++;
+		
+		// Add the orbit offset to the coords of the object, then subtract coords of the View Center to get relative coords
+		objectCoords.addInto(offset, coords).relativeKm(viewCenterCoords, relativePosition);
+		skyRotation.transform(relativePosition);
+		
+		double distance = SphericalCoords.sphericalR(relativePosition);
+		
+		evaluated[index] = object;
+		offsets[3 * index] = offset.x;
+		offsets[3 * index + 1] = offset.y;
+		offsets[3 * index + 2] = offset.z;
+		positions[3 * index] = relativePosition.x;
+		positions[3 * index + 1] = relativePosition.y;
+		positions[3 * index + 2] = relativePosition.z;
+		theta[index] = SphericalCoords.sphericalTheta(relativePosition);
+		phi[index] = SphericalCoords.sphericalPhi(relativePosition);
+		distances[index] = distance;
+		
+		byte objectFlags = 0;
+		if(!isViewCenter && fadeOutHandler.getFadeOutEndDistance().toKm() > distance)
+			objectFlags |= VISIBLE;
+		if(fadeOutHandler.getMaxChildRenderDistance().toKm() > distance)
+			objectFlags |= CHILDREN_VISIBLE;
+		flags[index] = objectFlags;
+		
+		return index;
+	}
+	
+	/**
+	 * Drops the slots and the objects they were filled in by, so objects that have been removed from Space can be collected
+	 */
+	public void clear()
+	{
+		Arrays.fill(evaluated, null);
+		objects = 0;
+	}
+	
+	private void grow()
+	{
+		int capacity = evaluated.length * 2;
+		
+		evaluated = Arrays.copyOf(evaluated, capacity);
+		offsets = Arrays.copyOf(offsets, 3 * capacity);
+		positions = Arrays.copyOf(positions, 3 * capacity);
+		theta = Arrays.copyOf(theta, capacity);
+		phi = Arrays.copyOf(phi, capacity);
+		distances = Arrays.copyOf(distances, capacity);
+		flags = Arrays.copyOf(flags, capacity);
+	}
+	
+	public long ticks()
+	{
+		return ticks;
+	}
+	
+	public float partialTicks()
+	{
+		return partialTicks;
+	}
+	
+	/**
+	 * @return Number of objects evaluated this frame
+	 */
+	public int size()
+	{
+		return objects;
+	}
+	
+	/**
+	 * @return Number of subtrees rejected as a whole this frame
+	 */
+	public int culledSubtrees()
+	{
+		return culledSubtrees;
+	}
+	
+	/**
+	 * @return Whether the slot was filled in by the object this frame, objects left out of the evaluation keep stale indexes
+	 */
+	public boolean isEvaluated(int index, SpaceObject object)
+	{
+		return index >= 0 && index < objects && evaluated[index] == object;
+	}
+	
+	public double distance(int index)
+	{
+		return distances[index];
+	}
+	
+	public double theta(int index)
+	{
+		return theta[index];
+	}
+	
+	public double phi(int index)
+	{
+		return phi[index];
+	}
+	
+	/**
+	 * @return Rotated position of the object relative to the view center in km
+	 */
+	public Vector3d relativePosition(int index, Vector3d dest)
+	{
+		return dest.set(positions[3 * index], positions[3 * index + 1], positions[3 * index + 2]);
+	}
+	
+	/**
+	 * @return Orbit offset of the object, including the offsets of its parents
+	 */
+	public Vector3f offset(int index, Vector3f dest)
+	{
+		return dest.set(offsets[3 * index], offsets[3 * index + 1], offsets[3 * index + 2]);
+	}
+	
+	/**
+	 * @param radius The radius of the sphere onto which the sky position is projected
+	 * @return Sky position of the object
+	 */
+	public SphericalCoords skyPosition(int index, double radius)
+	{
+		return new SphericalCoords(radius, theta[index], phi[index]);
+	}
+	
+	/**
+	 * @return Whether the object itself should be drawn, it isn't when it's too far away or when the sky is viewed from it
+	 */
+	public boolean isVisible(int index)
+	{
+		return (flags[index] & VISIBLE) != 0;
+	}
+	
+	/**
+	 * @return Whether the children of the object should be drawn
+	 */
+	public boolean childrenVisible(int index)
+	{
+		return (flags[index] & CHILDREN_VISIBLE) != 0;
+	}
+	
+	/**
+	 * Brightness of a texture layer, finished from the parts of the day brightness evaluated at the start of the frame
+	 * @param size Size of the texture layer
+	 */
+	public float dayBrightness(ViewCenter viewCenter, float size)
+	{
+		if(starsAlwaysVisible)
+			return GeneralConfig.bright_stars.get() ? 0.5F * lightSourceDimming : 0.5F;
+		
+		float brightness = starBrightness * 2;
+		
+		if(GeneralConfig.bright_stars.get())
+			brightness = brightness * lightSourceDimming;
+		
+		if(brightness < viewCenter.dayMaxBrightness && size > viewCenter.dayMinVisibleSize)
+		{
+			float aboveSize = size >= viewCenter.dayMaxVisibleSize ? viewCenter.dayVisibleSizeRange : size - viewCenter.dayMinVisibleSize;
+			float brightnessPercentage = aboveSize / viewCenter.dayVisibleSizeRange;
+			
+			brightness = brightnessPercentage * viewCenter.dayMaxBrightness;
+		}
+		
+		return brightness * rainDimming;
+	}
+}
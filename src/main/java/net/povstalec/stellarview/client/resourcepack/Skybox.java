@@ -58,9 +58,9 @@ public class Skybox
 					new Vector3f(DEFAULT_DISTANCE, -DEFAULT_DISTANCE, -DEFAULT_DISTANCE)
 				}
 			};
-
+	
 	private SkyboxFacade[] facades = new SkyboxFacade[6];
-    
+
     public static final Codec<Skybox> CODEC = RecordCodecBuilder.create(instance -> instance.group(
     		SkyboxFacade.CODEC.fieldOf("top_facade").forGetter(Skybox::topFacade),
 			SkyboxFacade.CODEC.fieldOf("north_facade").forGetter(Skybox::northFacade),
@@ -80,6 +80,11 @@ public class Skybox
 		facades[5] = bottomFacade;
 	}
 	
+	public SkyboxFacade[] facades()
+	{
+		return facades;
+	}
+	
 	public SkyboxFacade topFacade()
 	{
 		return facades[0];
@@ -116,13 +121,13 @@ public class Skybox
         //stack.mulPose(Axis.YP.rotationDegrees(skyXAngle));
         //stack.mulPose(Axis.ZP.rotationDegrees(skyYAngle));
         //stack.mulPose(Axis.XP.rotationDegrees(skyZAngle));
-        
+
         Matrix4f lastMatrix = transformeModelView;
 
         RenderSystem.setShaderColor(1.0F, 1.0F, 1.0F, 1.0F);
         RenderSystem.setShader(GameRenderer::getPositionTexColorShader);
         RenderSystem.defaultBlendFunc();
-        
+
         for(int i = 0; i < 6; i++)
         {
         	this.renderFacade(tesselator, lastMatrix, facades[i], i);
@@ -137,12 +142,14 @@ public class Skybox
 		UV.Quad uv = facade.uv();
 		Color.IntRGBA rgba = facade.rgba();
 		
-		RenderSystem.setShaderTexture(0, facade.texture());
+		SpaceTextureAtlas.Region region = SpaceTextureAtlas.region(facade.texture());
+		
+		RenderSystem.setShaderTexture(0, region.texture());
         final var bufferbuilder = tesselator.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX_COLOR);
-        bufferbuilder.addVertex(lastMatrix, BOX_COORDS[i][0].x, BOX_COORDS[i][0].y, BOX_COORDS[i][0].z).setUv(uv.topLeft().u(), uv.topLeft().v()).setColor(rgba.red(), rgba.green(), rgba.blue(), rgba.alpha());
-        bufferbuilder.addVertex(lastMatrix, BOX_COORDS[i][1].x, BOX_COORDS[i][1].y, BOX_COORDS[i][1].z).setUv(uv.bottomLeft().u(), uv.bottomLeft().v()).setColor(rgba.red(), rgba.green(), rgba.blue(), rgba.alpha());
-        bufferbuilder.addVertex(lastMatrix, BOX_COORDS[i][2].x, BOX_COORDS[i][2].y, BOX_COORDS[i][2].z).setUv(uv.bottomRight().u(), uv.bottomRight().v()).setColor(rgba.red(), rgba.green(), rgba.blue(), rgba.alpha());
-        bufferbuilder.addVertex(lastMatrix, BOX_COORDS[i][3].x, BOX_COORDS[i][3].y, BOX_COORDS[i][3].z).setUv(uv.topRight().u(), uv.topRight().v()).setColor(rgba.red(), rgba.green(), rgba.blue(), rgba.alpha());
+        bufferbuilder.addVertex(lastMatrix, BOX_COORDS[i][0].x, BOX_COORDS[i][0].y, BOX_COORDS[i][0].z).setUv(region.u(uv.topLeft().u()), region.v(uv.topLeft().v())).setColor(rgba.red(), rgba.green(), rgba.blue(), rgba.alpha());
+        bufferbuilder.addVertex(lastMatrix, BOX_COORDS[i][1].x, BOX_COORDS[i][1].y, BOX_COORDS[i][1].z).setUv(region.u(uv.bottomLeft().u()), region.v(uv.bottomLeft().v())).setColor(rgba.red(), rgba.green(), rgba.blue(), rgba.alpha());
+        bufferbuilder.addVertex(lastMatrix, BOX_COORDS[i][2].x, BOX_COORDS[i][2].y, BOX_COORDS[i][2].z).setUv(region.u(uv.bottomRight().u()), region.v(uv.bottomRight().v())).setColor(rgba.red(), rgba.green(), rgba.blue(), rgba.alpha());
+        bufferbuilder.addVertex(lastMatrix, BOX_COORDS[i][3].x, BOX_COORDS[i][3].y, BOX_COORDS[i][3].z).setUv(region.u(uv.topRight().u()), region.v(uv.topRight().v())).setColor(rgba.red(), rgba.green(), rgba.blue(), rgba.alpha());
         BufferUploader.drawWithShader(bufferbuilder.build());
 	}
 	
@@ -153,7 +160,7 @@ public class Skybox
 		private final ResourceLocation texture;
 		private final UV.Quad uv;
 		private final Color.IntRGBA rgba;
-	    
+	
 	    public static final Codec<SkyboxFacade> CODEC = RecordCodecBuilder.create(instance -> instance.group(
 				ResourceLocation.CODEC.fieldOf("texture").forGetter(SkyboxFacade::texture),
 				UV.Quad.CODEC.fieldOf("uv").forGetter(SkyboxFacade::uv),
@@ -14,6 +14,7 @@ import net.povstalec.stellarview.client.resourcepack.objects.OrbitingObject;
 import net.povstalec.stellarview.client.resourcepack.objects.SpaceObject;
 import net.povstalec.stellarview.client.resourcepack.objects.StarField;
 import net.povstalec.stellarview.client.resourcepack.objects.distinct.Sol;
+import net.povstalec.stellarview.common.config.GeneralConfig;
 import net.povstalec.stellarview.common.config.OverworldConfig;
 import net.povstalec.stellarview.common.util.AxisRotation;
 import net.povstalec.stellarview.common.util.SpaceCoords;
@@ -31,6 +32,8 @@ public final class Space
 	
 	private static final List<StarField> STAR_FIELDS = new ArrayList<StarField>();
 	
+	private static final SkyScene SCENE = new SkyScene();
+	
 	@Nullable
 	private static Sol sol = null;
 	@Nullable
@@ -46,8 +49,14 @@ public final class Space
 		solCoords = null;
 		solAxisRotation = null;
 		
+		for(StarField starField : STAR_FIELDS)
+		{
+			starField.close();
+		}
+		
 		SPACE_OBJECTS.clear();
 		STAR_FIELDS.clear();
+		SCENE.clear();
 	}
 	
 	public static void addSpaceObject(SpaceObject spaceObject)
@@ -64,15 +73,53 @@ public final class Space
 		}
 	}
 	
+	/**
+	 * Logs the bounding sphere of every top level subtree, a subtree with an infinite radius is always evaluated since it can never be culled as a whole
+	 */
+	public static void logBounds()
+	{
+		if(!StellarView.LOGGER.isDebugEnabled())
+			return;
+		
+		int subtrees = 0;
+		int unbounded = 0;
+		for(SpaceObject spaceObject : SPACE_OBJECTS)
+		{
+			double radius = spaceObject.boundingRadius(0);
+			if(radius <= 0)
+				continue;
+			
+			subtrees++;
+			if(Double.isInfinite(radius))
+				unbounded++;
+			
+			StellarView.LOGGER.debug("Everything below " + spaceObject + " stays within " + radius + " km and can be drawn up to " + spaceObject.boundingReach() + " km away");
+		}
+		
+		StellarView.LOGGER.debug(unbounded + " out of " + subtrees + " top level subtrees can't be culled as a whole");
+	}
+	
+	/**
+	 * @return Sky Scene of the frame currently being rendered
+	 */
+	public static SkyScene getScene()
+	{
+		return SCENE;
+	}
+	
 	public static void render(ViewCenter viewCenter, SpaceObject masterParent, ClientLevel level, Camera camera, float partialTicks, Matrix4f modelViewMatrix, Matrix4f projectionMatrix, boolean isFoggy, Runnable setupFog, Tesselator tesselator)
 	{
+		// Everything is evaluated before the first draw call, the objects only read their results while rendering
+		SCENE.begin(viewCenter, !GeneralConfig.disable_view_center_rotation.get(), level.getDayTime(), partialTicks, level.getStarBrightness(partialTicks), StellarView.lightSourceDimming(level, camera), StellarView.rainDimming(level, partialTicks));
+		SCENE.evaluate(viewCenter, SPACE_OBJECTS, masterParent, NULL_VECTOR);
+		
 		for(SpaceObject spaceObject : SPACE_OBJECTS)
 		{
 			if(spaceObject != masterParent) // Makes sure the master parent (usually galaxy) is rendered last, that way stars from other galaxies don't get rendered over planets
-				spaceObject.render(viewCenter, level, partialTicks, modelViewMatrix, camera, projectionMatrix, isFoggy, setupFog, tesselator, NULL_VECTOR, new AxisRotation(0, 0, 0));
+				spaceObject.render(viewCenter, level, partialTicks, modelViewMatrix, camera, projectionMatrix, isFoggy, setupFog, tesselator, NULL_VECTOR, SpaceObject.NO_ROTATION);
 		}
 		
-		masterParent.render(viewCenter, level, partialTicks, modelViewMatrix, camera, projectionMatrix, isFoggy, setupFog, tesselator, NULL_VECTOR, new AxisRotation(0, 0, 0));
+		masterParent.render(viewCenter, level, partialTicks, modelViewMatrix, camera, projectionMatrix, isFoggy, setupFog, tesselator, NULL_VECTOR, SpaceObject.NO_ROTATION);
 	}
 	
 	
@@ -82,6 +129,11 @@ public final class Space
 		STAR_FIELDS.add(starField);
 	}
 	
+	public static List<StarField> getStarFields()
+	{
+		return STAR_FIELDS;
+	}
+	
 	public static void resetStarFields()
 	{
 		for(StarField starField : STAR_FIELDS)
@@ -90,6 +142,21 @@ public final class Space
 		}
 	}
 	
+	/**
+	 * Regenerates only the Star Fields whose Stars depend on something that has changed, the rest keep their Star Buffers
+	 */
+	public static void updateStarFields()
+	{
+		int updated = 0;
+		for(StarField starField : STAR_FIELDS)
+		{
+			if(starField.update())
+				updated++;
+		}
+		
+		StellarView.LOGGER.debug("Regenerating " + updated + " out of " + STAR_FIELDS.size() + " Star Fields");
+	}
+	
 	
 	
 	public static void addSol(Sol solStar)
@@ -103,8 +170,8 @@ public final class Space
 		StellarView.LOGGER.debug("Setting Sol as a distinct Space Object");
 		
 		sol = solStar;
-		solCoords = solStar.getCoords().copy();
-		solAxisRotation = solStar.getAxisRotation().copy();
+		solCoords = solStar.getLocalCoords().copy();
+		solAxisRotation = solStar.getLocalAxisRotation().copy();
 		
 		updateSol();
 	}
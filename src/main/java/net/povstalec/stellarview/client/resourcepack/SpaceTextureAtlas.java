@@ -0,0 +1,303 @@
+package net.povstalec.stellarview.client.resourcepack;
+
+import com.mojang.blaze3d.platform.NativeImage;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.texture.DynamicTexture;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.Resource;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.util.Mth;
+import net.povstalec.stellarview.StellarView;
+import net.povstalec.stellarview.client.resourcepack.effects.MeteorEffect;
+import net.povstalec.stellarview.client.resourcepack.objects.SpaceObject;
+import net.povstalec.stellarview.client.resourcepack.objects.TexturedObject;
+import net.povstalec.stellarview.common.util.TextureLayer;
+import net.povstalec.stellarview.common.util.UV;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Single texture that all textures of the loaded Space Objects, Meteors and Skyboxes get stitched into during a resourcepack reload,
+ * so that drawing them doesn't require binding a different texture every time
+ */
+public final class SpaceTextureAtlas
+{
+	public static final ResourceLocation LOCATION = ResourceLocation.fromNamespaceAndPath(StellarView.MODID, "textures/atlas/space.png");
+	
+	private static final int MIN_SIZE = 256;
+	private static final int MAX_SIZE = 4096;
+	private static final int PADDING = 1; // Copies of the edge pixels around each texture, so that sampling right at the edge can't reach the neighbouring texture
+	
+	private static final HashMap<ResourceLocation, Region> REGIONS = new HashMap<>();
+	
+	/**
+	 * @param texture Texture as referenced by a Texture Layer or Skybox
+	 * @return Region of the atlas containing the texture, or a Region covering the whole original texture if it isn't part of the atlas
+	 */
+	public static Region region(ResourceLocation texture)
+	{
+		Region region = REGIONS.get(texture);
+		if(region == null)
+		{
+			region = new Region(texture, 0, 0, 1, 1);
+			REGIONS.put(texture, region);
+		}
+		
+		return region;
+	}
+	
+	/**
+	 * Stitches every texture referenced by the loaded objects into the atlas (called from the resourcepack reload on the render thread)
+	 */
+	public static void stitch(ResourceManager manager, Collection<SpaceObject> spaceObjects, Collection<ViewCenter> viewCenters)
+	{
+		long startTime = System.nanoTime();
+		
+		REGIONS.clear();
+		
+		// Textures that are only ever drawn with UVs inside 0 to 1, anything else relies on the texture repeating and has to stay on its own
+		Set<ResourceLocation> textures = new HashSet<>();
+		Set<ResourceLocation> repeatingTextures = new HashSet<>();
+		
+		for(SpaceObject spaceObject : spaceObjects)
+		{
+			if(spaceObject instanceof TexturedObject texturedObject)
+				addTextureLayers(texturedObject.getTextureLayers(), textures, repeatingTextures);
+		}
+		
+		for(ViewCenter viewCenter : viewCenters)
+		{
+			addMeteorEffect(viewCenter.getShootingStar(), textures, repeatingTextures);
+			addMeteorEffect(viewCenter.getMeteorShower(), textures, repeatingTextures);
+			
+			if(viewCenter.getSkyboxes().isPresent())
+			{
+				for(Skybox skybox : viewCenter.getSkyboxes().get())
+				{
+					for(Skybox.SkyboxFacade facade : skybox.facades())
+					{
+						addTexture(facade.texture(), facade.uv(), textures, repeatingTextures);
+					}
+				}
+			}
+		}
+		
+		textures.removeAll(repeatingTextures);
+		
+		List<Entry> entries = new ArrayList<>();
+		try
+		{
+			for(ResourceLocation texture : textures)
+			{
+				NativeImage image = loadImage(manager, texture);
+				if(image != null)
+					entries.add(new Entry(texture, image));
+			}
+			
+			// Tallest first, which keeps the rows of the atlas from wasting much space
+			entries.sort((first, second) -> Integer.compare(second.image.getHeight(), first.image.getHeight()));
+			
+			int size = MIN_SIZE;
+			while(pack(entries, size) < entries.size() && size < MAX_SIZE)
+			{
+				size *= 2;
+			}
+			
+			int packed = pack(entries, size);
+			if(packed == 0)
+			{
+				Minecraft.getInstance().getTextureManager().release(LOCATION);
+				return;
+			}
+			
+			NativeImage atlas = new NativeImage(size, size, true);
+			for(Entry entry : entries)
+			{
+				if(entry.x < 0)
+					continue;
+				
+				copyPadded(entry.image, atlas, entry.x, entry.y);
+				
+				REGIONS.put(entry.texture, new Region(LOCATION,
+						(float) entry.x / size, (float) entry.y / size,
+						(float) (entry.x + entry.image.getWidth()) / size, (float) (entry.y + entry.image.getHeight()) / size));
+			}
+			
+			// Replaces and closes the previous atlas
+			Minecraft.getInstance().getTextureManager().register(LOCATION, new DynamicTexture(atlas));
+			
+			StellarView.LOGGER.debug("Stitched " + packed + " of " + entries.size() + " textures into a " + size + "x" + size + " atlas in " + (System.nanoTime() - startTime) / 1000 + " \u00b5s");
+		}
+		finally
+		{
+			entries.forEach(entry -> entry.image.close());
+		}
+	}
+	
+	private static void addMeteorEffect(MeteorEffect meteorEffect, Set<ResourceLocation> textures, Set<ResourceLocation> repeatingTextures)
+	{
+		for(MeteorEffect.MeteorType meteorType : meteorEffect.getMeteorTypes())
+		{
+			addTextureLayers(meteorType.getTextureLayers(), textures, repeatingTextures);
+		}
+	}
+	
+	private static void addTextureLayers(List<TextureLayer> textureLayers, Set<ResourceLocation> textures, Set<ResourceLocation> repeatingTextures)
+	{
+		for(TextureLayer textureLayer : textureLayers)
+		{
+			addTexture(textureLayer.texture(), textureLayer.uv(), textures, repeatingTextures);
+		}
+	}
+	
+	private static void addTexture(ResourceLocation texture, UV.Quad uv, Set<ResourceLocation> textures, Set<ResourceLocation> repeatingTextures)
+	{
+		textures.add(texture);
+		
+		if(!uv.isWithinTexture())
+			repeatingTextures.add(texture);
+	}
+	
+	private static NativeImage loadImage(ResourceManager manager, ResourceLocation texture)
+	{
+		Optional<Resource> resource = manager.getResource(texture);
+		if(resource.isEmpty())
+		{
+			StellarView.LOGGER.warn("Failed to find texture " + texture + " for the atlas");
+			return null;
+		}
+		
+		try(InputStream stream = resource.get().open())
+		{
+			return NativeImage.read(stream);
+		}
+		catch(IOException e)
+		{
+			StellarView.LOGGER.error("Failed to read texture " + texture + " for the atlas", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * Places the entries in rows, entries that don't fit are left with a negative position
+	 * @return Number of entries that fit into the atlas
+	 */
+	private static int pack(List<Entry> entries, int size)
+	{
+		int packed = 0;
+		int x = 0;
+		int y = 0;
+		int rowHeight = 0;
+		
+		for(Entry entry : entries)
+		{
+			int width = entry.image.getWidth() + PADDING * 2;
+			int height = entry.image.getHeight() + PADDING * 2;
+			
+			if(x + width > size)
+			{
+				x = 0;
+				y += rowHeight;
+				rowHeight = 0;
+			}
+			
+			if(width > size || y + height > size)
+			{
+				entry.x = -1;
+				entry.y = -1;
+				continue;
+			}
+			
+			entry.x = x + PADDING;
+			entry.y = y + PADDING;
+			
+			x += width;
+			rowHeight = Math.max(rowHeight, height);
+			packed++;
+		}
+		
+		return packed;
+	}
+	
+	private static void copyPadded(NativeImage image, NativeImage atlas, int atlasX, int atlasY)
+	{
+		int width = image.getWidth();
+		int height = image.getHeight();
+		
+		for(int y = -PADDING; y < height + PADDING; y++)
+		{
+			int sourceY = Mth.clamp(y, 0, height - 1);
+			for(int x = -PADDING; x < width + PADDING; x++)
+			{
+				int sourceX = Mth.clamp(x, 0, width - 1);
+				atlas.setPixelRGBA(atlasX + x, atlasY + y, image.getPixelRGBA(sourceX, sourceY));
+			}
+		}
+	}
+	
+	
+	
+	private static class Entry
+	{
+		private final ResourceLocation texture;
+		private final NativeImage image;
+		
+		private int x;
+		private int y;
+		
+		private Entry(ResourceLocation texture, NativeImage image)
+		{
+			this.texture = texture;
+			this.image = image;
+		}
+	}
+	
+	/**
+	 * Part of a texture that a texture's own UVs get mapped onto
+	 */
+	public static class Region
+	{
+		private final ResourceLocation texture;
+		
+		private final float uStart;
+		private final float vStart;
+		private final float uEnd;
+		private final float vEnd;
+		
+		public Region(ResourceLocation texture, float uStart, float vStart, float uEnd, float vEnd)
+		{
+			this.texture = texture;
+			
+			this.uStart = uStart;
+			this.vStart = vStart;
+			this.uEnd = uEnd;
+			this.vEnd = vEnd;
+		}
+		
+		/**
+		 * @return Texture that needs to be bound when drawing this Region
+		 */
+		public ResourceLocation texture()
+		{
+			return texture;
+		}
+		
+		public float u(float u)
+		{
+			return uStart + u * (uEnd - uStart);
+		}
+		
+		public float v(float v)
+		{
+			return vStart + v * (vEnd - vStart);
+		}
+	}
+}
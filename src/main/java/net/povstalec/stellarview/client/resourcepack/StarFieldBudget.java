@@ -0,0 +1,119 @@
+package net.povstalec.stellarview.client.resourcepack;
+
+import net.povstalec.stellarview.StellarView;
+import net.povstalec.stellarview.client.resourcepack.objects.StarField;
+import net.povstalec.stellarview.common.config.GeneralConfig;
+import net.povstalec.stellarview.common.util.GpuResources;
+import net.povstalec.stellarview.common.util.StarArena;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Keeps the video memory used by Star Buffers under the budget from the config.
+ * When the Stars take up more than that, the Star Fields that have gone the longest without being seen give up their buffers,
+ * which get rebuilt from the Star data they keep once they come back into view
+ */
+public final class StarFieldBudget
+{
+	private static final long BYTES_PER_MB = 1024L * 1024L;
+	
+	// Star Fields seen this recently are never evicted, so looking around doesn't make them rebuild over and over
+	private static final int EVICTION_GRACE_FRAMES = 60;
+	
+	private static long frame = 0;
+	private static int evictions = 0;
+	
+	/**
+	 * @return Number of the sky frame currently being rendered, Star Fields remember the last one they were visible in
+	 */
+	public static long frame()
+	{
+		return frame;
+	}
+	
+	public static long budgetBytes()
+	{
+		return GeneralConfig.star_vram_budget.get() * BYTES_PER_MB;
+	}
+	
+	/**
+	 * @return Number of bytes held by the Star Buffers of all Star Fields, including the space of the Star Arena no Star Buffer uses
+	 */
+	public static long usedBytes()
+	{
+		long bytes = StarArena.unusedBytes();
+		for(StarField starField : Space.getStarFields())
+		{
+			bytes += starField.gpuBytes();
+		}
+		
+		return bytes;
+	}
+	
+	/**
+	 * Starts a new sky frame and evicts the least recently visible Star Fields if the Stars are over budget (must be called on the render thread)
+	 */
+	public static void beginFrame()
+	{
+		frame++;
+		
+		long budget = budgetBytes();
+		long used = usedBytes();
+		if(used <= budget)
+			return;
+		
+		List<StarField> candidates = new ArrayList<StarField>();
+		for(StarField starField : Space.getStarFields())
+		{
+			if(starField.canEvict() && starField.getLastVisibleFrame() < frame - EVICTION_GRACE_FRAMES)
+				candidates.add(starField);
+		}
+		
+		candidates.sort(Comparator.comparingLong(StarField::getLastVisibleFrame));
+		
+		int evicted = 0;
+		for(StarField starField : candidates)
+		{
+			if(used <= budget)
+				break;
+			
+			// Shared Star Buffers only give their memory back once the Star Arena shrinks, so the usage is measured again instead of subtracted
+			starField.evict();
+			used = usedBytes();
+			evicted++;
+		}
+		
+		if(evicted > 0)
+		{
+			evictions += evicted;
+			StellarView.LOGGER.debug("Evicted " + evicted + " Star Fields, Stars now use " + used + " out of " + budget + " bytes of video memory");
+		}
+	}
+	
+	/**
+	 * @return Lines shown on the right side of the debug screen
+	 */
+	public static List<String> debugLines()
+	{
+		int resident = 0;
+		int rebuilding = 0;
+		for(StarField starField : Space.getStarFields())
+		{
+			if(starField.gpuBytes() > 0)
+				resident++;
+			else if(starField.getBufferState() == StarField.BufferState.PENDING)
+				rebuilding++;
+		}
+		
+		List<String> lines = new ArrayList<String>();
+		lines.add("");
+		lines.add("[StellarView]");
+		lines.add(String.format("Star VRAM: %.1f / %d MB", (double) usedBytes() / BYTES_PER_MB, GeneralConfig.star_vram_budget.get()));
+		lines.add("Star Fields: " + resident + "/" + Space.getStarFields().size() + " resident, " + rebuilding + " building, " + evictions + " evicted");
+		lines.add(String.format("GPU Resources: %d, %.1f MB", GpuResources.liveCount(), (double) GpuResources.liveBytes() / BYTES_PER_MB));
+		
+		return lines;
+	}
+}
@@ -33,6 +33,16 @@ public class StarInfo
 		}
 	}
 	
+	public List<StarLike.StarType> getStarTypes()
+	{
+		return starTypes;
+	}
+	
+	public int getTotalWeight()
+	{
+		return totalWeight;
+	}
+	
 	public StarLike.StarType getRandomStarType(long seed)
 	{
 		Random random = new Random(seed);
@@ -49,4 +59,23 @@ public class StarInfo
 		
 		return starTypes.get(i);
 	}
+	
+	/**
+	 * @param roll Random number in the range [0, 1)
+	 * @return Star Type picked by the roll according to the weights of Star Types
+	 */
+	public StarLike.StarType getStarType(float roll)
+	{
+		int i = 0;
+		
+		for(int weight = (int) (roll * totalWeight); i < starTypes.size() - 1; i++)
+		{
+			weight -= starTypes.get(i).getWeight();
+			
+			if(weight <= 0)
+				break;
+		}
+		
+		return starTypes.get(i);
+	}
 }
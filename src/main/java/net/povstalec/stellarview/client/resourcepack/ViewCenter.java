@@ -19,11 +19,14 @@ import net.minecraft.world.phys.Vec3;
 import net.povstalec.stellarview.StellarView;
 import net.povstalec.stellarview.client.render.level.util.StellarViewFogEffects;
 import net.povstalec.stellarview.client.render.level.util.StellarViewSkyEffects;
+import net.povstalec.stellarview.client.render.shader.SkyFrameUniforms;
 import net.povstalec.stellarview.client.resourcepack.effects.MeteorEffect;
 import net.povstalec.stellarview.client.resourcepack.objects.OrbitingObject;
 import net.povstalec.stellarview.client.resourcepack.objects.SpaceObject;
+import net.povstalec.stellarview.client.resourcepack.objects.StarLike;
 import net.povstalec.stellarview.common.config.GeneralConfig;
 import net.povstalec.stellarview.common.util.AxisRotation;
+import net.povstalec.stellarview.common.util.BillboardBatch;
 import net.povstalec.stellarview.common.util.SpaceCoords;
 import org.joml.Matrix4f;
 import org.joml.Vector3f;
@@ -54,7 +57,7 @@ public class ViewCenter
 	@Nullable
 	private VertexBuffer darkBuffer;
 	
-	private SpaceCoords coords;
+	private final SpaceCoords coords = new SpaceCoords(); // Changed in place every frame
 	private AxisRotation axisRotation;
 	private long rotationPeriod;
 	
@@ -122,9 +125,9 @@ public class ViewCenter
 		this.createVoid = createVoid;
 		
 		if(createHorizon)
-			skyBuffer = StellarViewSkyEffects.createLightSky();
+			skyBuffer = StellarViewSkyEffects.createLightSky(this);
 		if(createVoid)
-			darkBuffer = StellarViewSkyEffects.createDarkSky();
+			darkBuffer = StellarViewSkyEffects.createDarkSky(this);
 		
 		this.starsAlwaysVisible = starsAlwaysVisible;
 		this.zRotationMultiplier = zRotationMultiplier;
@@ -178,17 +181,17 @@ public class ViewCenter
 	
 	public void addCoords(SpaceCoords other)
 	{
-		this.coords = this.coords.add(other);
+		this.coords.addInto(other, this.coords);
 	}
 	
 	public void addCoords(Vector3f vector)
 	{
-		this.coords = this.coords.add(vector);
+		this.coords.addInto(vector, this.coords);
 	}
 	
 	public void subCoords(SpaceCoords other)
 	{
-		this.coords = this.coords.sub(other);
+		this.coords.subInto(other, this.coords);
 	}
 	
 	public AxisRotation getAxisRotation()
@@ -248,6 +251,15 @@ public class ViewCenter
 		return 10;
 	}
 	
+	@Override
+	public String toString()
+	{
+		if(viewCenterKey != null)
+			return "View Center of " + viewCenterKey.location();
+		
+		return "View Center";
+	}
+	
 	public boolean objectEquals(SpaceObject spaceObject)
 	{
 		if(this.viewCenterObject != null)
@@ -291,7 +303,7 @@ public class ViewCenter
 		if(viewCenterObject == null)
 			return false;
 		
-		coords = viewCenterObject.getCoords();
+		coords.set(viewCenterObject.getCoords());
 
 		final var transformedModelView = new Matrix4f(modelViewMatrix);
 		
@@ -310,7 +322,18 @@ public class ViewCenter
 			transformedModelView.rotate(Axis.ZP.rotation((float) getZRotation(level, camera, partialTicks)));
 		}
 		
+		// Star Fields that haven't been seen in a while give up their buffers if the Stars take more video memory than allowed
+		StarFieldBudget.beginFrame();
+		
+		// Everything drawn from here on reads the frame's matrices and Star brightness from the Sky Frame uniform block
+		Matrix4f starModelView = new Matrix4f(transformedModelView).rotate(SpaceCoords.getQuaternionf(level, this, partialTicks));
+		SkyFrameUniforms.update(projectionMatrix, RenderSystem.getModelViewMatrix(), starModelView, StarLike.getStarBrightness(this, level, camera, partialTicks));
+		
+		// Texture layers get collected and drawn together, anything else drawn in between flushes them first
+		BillboardBatch batch = BillboardBatch.get();
+		batch.begin();
 		viewCenterObject.renderFrom(this, level, partialTicks, transformedModelView, camera, projectionMatrix, StellarViewFogEffects.isFoggy(minecraft, camera), setupFog, tesselator);
+		batch.end();
 
 		RenderSystem.setShader(GameRenderer::getPositionTexShader);
 		renderSkyEvents(level, camera, partialTicks, modelViewMatrix, tesselator);
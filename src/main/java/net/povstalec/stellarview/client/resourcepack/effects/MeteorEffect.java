@@ -12,6 +12,7 @@ import com.mojang.serialization.codecs.RecordCodecBuilder;
 import net.minecraft.client.Camera;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.util.Mth;
+import net.povstalec.stellarview.client.resourcepack.SpaceTextureAtlas;
 import net.povstalec.stellarview.client.resourcepack.ViewCenter;
 import net.povstalec.stellarview.common.config.GeneralConfig;
 import net.povstalec.stellarview.common.util.*;
@@ -110,7 +111,7 @@ public abstract class MeteorEffect
 		transformedModelView.rotate(Axis.YP.rotationDegrees(yRotation));
         transformedModelView.rotate(Axis.ZP.rotationDegrees(zRotation));
         transformedModelView.rotate(Axis.XP.rotationDegrees(xRotation));
-		
+
 		meteorType.render(tesselator, transformedModelView, SPHERICAL_START, rgba(viewCenter, level, camera, level.getDayTime(), partialTicks), level.getDayTime(), mulSize, addRotation);
 	}
 	
@@ -161,23 +162,25 @@ public abstract class MeteorEffect
 			Vector3f corner10 = StellarCoordinates.placeOnSphere(size, -size, sphericalCoords, rotation);
 			Vector3f corner11 = StellarCoordinates.placeOnSphere(size, size, sphericalCoords, rotation);
 			Vector3f corner01 = StellarCoordinates.placeOnSphere(-size, size, sphericalCoords, rotation);
-		
-		
+			
+			
 			if(textureLayer.shoulBlend())
 				RenderSystem.blendFuncSeparate(GlStateManager.SourceFactor.SRC_ALPHA, GlStateManager.DestFactor.ONE, GlStateManager.SourceFactor.ONE, GlStateManager.DestFactor.ZERO);
 			
 			RenderSystem.setShaderColor(rgba.red() * textureLayer.rgba().red() / 255F, rgba.green() * textureLayer.rgba().green() / 255F, rgba.blue() * textureLayer.rgba().blue() / 255F, rgba.alpha() * textureLayer.rgba().alpha() / 255F);
 			
-			RenderSystem.setShaderTexture(0, textureLayer.texture());
+			SpaceTextureAtlas.Region region = SpaceTextureAtlas.region(textureLayer.texture());
+			
+			RenderSystem.setShaderTexture(0, region.texture());
 	        final var bufferbuilder = tesselator.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX);
-	        
-	        bufferbuilder.addVertex(lastMatrix, corner00.x, corner00.y, corner00.z).setUv(textureLayer.uv().topRight().u(ticks), textureLayer.uv().topRight().v(ticks));
-	        bufferbuilder.addVertex(lastMatrix, corner10.x, corner10.y, corner10.z).setUv(textureLayer.uv().bottomRight().u(ticks), textureLayer.uv().bottomRight().v(ticks));
-	        bufferbuilder.addVertex(lastMatrix, corner11.x, corner11.y, corner11.z).setUv(textureLayer.uv().bottomLeft().u(ticks), textureLayer.uv().bottomLeft().v(ticks));
-	        bufferbuilder.addVertex(lastMatrix, corner01.x, corner01.y, corner01.z).setUv(textureLayer.uv().topLeft().u(ticks), textureLayer.uv().topLeft().v(ticks));
-	        
+	
+	        bufferbuilder.addVertex(lastMatrix, corner00.x, corner00.y, corner00.z).setUv(region.u(textureLayer.uv().topRight().u(ticks)), region.v(textureLayer.uv().topRight().v(ticks)));
+	        bufferbuilder.addVertex(lastMatrix, corner10.x, corner10.y, corner10.z).setUv(region.u(textureLayer.uv().bottomRight().u(ticks)), region.v(textureLayer.uv().bottomRight().v(ticks)));
+	        bufferbuilder.addVertex(lastMatrix, corner11.x, corner11.y, corner11.z).setUv(region.u(textureLayer.uv().bottomLeft().u(ticks)), region.v(textureLayer.uv().bottomLeft().v(ticks)));
+	        bufferbuilder.addVertex(lastMatrix, corner01.x, corner01.y, corner01.z).setUv(region.u(textureLayer.uv().topLeft().u(ticks)), region.v(textureLayer.uv().topLeft().v(ticks)));
+	
 	        BufferUploader.drawWithShader(bufferbuilder.buildOrThrow());
-	        
+	
 	        RenderSystem.defaultBlendFunc();
 		}
 		
@@ -220,7 +223,7 @@ public abstract class MeteorEffect
 			
 			return viewCenter.overrideShootingStarRarity();
 		}
-
+		
 		@Override
 		public final void render(ViewCenter viewCenter, ClientLevel level, Camera camera, float partialTicks, Matrix4f modelViewMatrix, Tesselator tesselator)
 		{
@@ -229,7 +232,7 @@ public abstract class MeteorEffect
 			
 			long tickSeed = level.getDayTime() / TICKS;
 			int specificTime = (int) (level.getDayTime() % TICKS);
-
+			
 			Random randomizer = new Random(tickSeed);
 			
 			int randomStart = randomizer.nextInt(0, TICKS - DURATION);
@@ -245,12 +248,12 @@ public abstract class MeteorEffect
 				float xRotation = (float) (random.nextInt(0, 45) + Math.PI * Mth.lerp(partialTicks, position - 1, position));
 				float yRotation = random.nextInt(0, 360);
 				float zRotation = random.nextInt(-70, 70);
-
+				
 				MeteorType meteorType = getRandomMeteorType(tickSeed);
 				
 				float rotation = (float) (Math.PI * position / 4);
 				float size = (float) (Math.sin(Math.PI * position / DURATION));
-
+				
 				this.render(viewCenter, level, camera, partialTicks, modelViewMatrix, tesselator, xRotation, yRotation, zRotation, meteorType, size, rotation);
 			}
 		}
@@ -306,12 +309,12 @@ public abstract class MeteorEffect
 				float xRotation = (float) (random.nextInt(0, 45) + Math.PI * Mth.lerp(partialTicks, position - 1, position));
 				float yRotation = random.nextInt(0, 360);
 				float zRotation = random.nextInt(-70, 70);
-
+				
 				MeteorType meteorType = getRandomMeteorType(dailySeed);
 				
 				float rotation = (float) (Math.PI * position / 4);
 				float size = (float) (Math.sin(Math.PI * position / DURATION));
-
+				
 				this.render(viewCenter, level, camera, partialTicks, modelViewMatrix, tesselator, xRotation, yRotation, zRotation, meteorType, size, rotation);
 			}
 		}
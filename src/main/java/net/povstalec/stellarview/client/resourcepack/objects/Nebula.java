@@ -7,6 +7,7 @@ import com.mojang.serialization.codecs.RecordCodecBuilder;
 import net.minecraft.client.Camera;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.resources.ResourceKey;
+import net.povstalec.stellarview.client.resourcepack.Space;
 import net.povstalec.stellarview.client.resourcepack.ViewCenter;
 import net.povstalec.stellarview.common.util.*;
 import org.joml.Matrix4f;
@@ -116,6 +117,6 @@ public class Nebula extends TexturedObject
 		
 		renderOnSphere(textureLayer.rgba(), nebulaRGBA, textureLayer.texture(), textureLayer.uv(),
 				level, camera, tesselator, lastMatrix, sphericalCoords,
-				ticks, distance, partialTicks, dayBrightness(viewCenter, size, ticks, level, camera, partialTicks), size, (float) textureLayer.rotation(), textureLayer.shoulBlend());
+				ticks, distance, partialTicks, Space.getScene().dayBrightness(viewCenter, size), size, (float) textureLayer.rotation(), textureLayer.shoulBlend());
 	}
 }
@@ -74,6 +74,29 @@ public class OrbitingObject extends TexturedObject
 		}
 	}
 	
+	@Override
+	protected double orbitExtent(double parentDistance)
+	{
+		if(orbitInfo == null)
+			return 0;
+		
+		// Clamped orbits grow with the distance of the parent
+		if(orbitInfo.orbitClampNumber() > 0 && parentDistance > orbitInfo.orbitClampNumber())
+		{
+			double scale = orbitInfo.apoapsis() / orbitInfo.orbitClampNumber();
+			double extent = scale * parentDistance;
+			
+			// This object is at least (1 - scale) * parentDistance away from the view center, so once the parent is far enough away nothing below it can be drawn anymore
+			// and the orbit only needs to be bounded up to that distance
+			if(scale < 1)
+				extent = Math.min(extent, scale * (boundingReach() + childrenRadius()) / (1 - scale));
+			
+			return Math.max(orbitInfo.apoapsis(), extent);
+		}
+		
+		return orbitInfo.apoapsis();
+	}
+	
 	@Override
 	public Vector3f getPosition(ViewCenter viewCenter, AxisRotation axisRotation, long ticks, float partialTicks)
 	{
@@ -15,6 +15,7 @@ import net.minecraft.core.Registry;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.resources.ResourceLocation;
 import net.povstalec.stellarview.StellarView;
+import net.povstalec.stellarview.client.resourcepack.SkyScene;
 import net.povstalec.stellarview.client.resourcepack.ViewCenter;
 import net.povstalec.stellarview.common.config.GeneralConfig;
 import net.povstalec.stellarview.common.util.*;
@@ -30,6 +31,7 @@ import java.util.Optional;
 public abstract class SpaceObject
 {
 	public static final float DEFAULT_DISTANCE = 100.0F;
+	public static final AxisRotation NO_ROTATION = new AxisRotation(0, 0, 0);
 	
 	public static final ResourceLocation SPACE_OBJECT_LOCATION = ResourceLocation.fromNamespaceAndPath(StellarView.MODID, "space_object");
 	public static final ResourceKey<Registry<SpaceObject>> REGISTRY_KEY = ResourceKey.createRegistryKey(SPACE_OBJECT_LOCATION);
@@ -43,8 +45,23 @@ public abstract class SpaceObject
 	
 	protected ArrayList<SpaceObject> children = new ArrayList<SpaceObject>();
 	
-	protected SpaceCoords coords; // Absolute coordinates of the center (not necessarily the object itself, since it can be orbiting some other object for example)
-	protected AxisRotation axisRotation;
+	protected SpaceCoords localCoords; // Coordinates of the center relative to the parent (not necessarily the object itself, since it can be orbiting some other object for example)
+	protected AxisRotation localAxisRotation; // Rotation relative to the parent
+	
+	// Absolute coordinates and rotation, only worked out again once the local ones or the ones of a parent have changed
+	private SpaceCoords coords;
+	private AxisRotation axisRotation;
+	private boolean transformDirty = true; // Local coordinates or rotation have changed since the absolute ones were worked out
+	private int transformVersion = 0; // Increases every time the absolute coordinates or rotation change, so children can tell theirs are outdated
+	private int parentTransformVersion = -1; // Version of the parent the absolute coordinates and rotation were worked out from
+	private int checkedTransformEpoch = -1; // Transform epoch in which the absolute coordinates and rotation were last checked
+	
+	private static int transformEpoch = 0; // Increases every time any Space Object is moved or gets a parent
+	
+	// Bounding sphere of the subtree, worked out again once the subtree or the position of something in it changes
+	private boolean boundsDirty = true;
+	private double childrenRadius; // Distance from the position of this object in km that everything below it stays within
+	private double reach; // Farthest distance from the view center in km at which anything in the subtree can still be drawn
 	
 	protected FadeOutHandler fadeOutHandler;
 	
@@ -57,20 +74,29 @@ public abstract class SpaceObject
 				this.parentKey = parentKey.get();
 		
 		if(coords.left().isPresent())
-			this.coords = coords.left().get();
+			this.localCoords = coords.left().get();
 		else
-			this.coords = coords.right().get().toGalactic().toSpaceCoords();
+			this.localCoords = coords.right().get().toGalactic().toSpaceCoords();
 		
-		this.axisRotation = axisRotation;
+		this.localAxisRotation = axisRotation;
 		
 		this.fadeOutHandler = fadeOutHandler;
 	}
 	
+	/**
+	 * @return Absolute coordinates of the center
+	 */
 	public SpaceCoords getCoords()
 	{
+		updateTransform();
 		return this.coords;
 	}
 	
+	public SpaceCoords getLocalCoords()
+	{
+		return this.localCoords;
+	}
+	
 	public Vector3f getPosition(ViewCenter viewCenter, AxisRotation axisRotation, long ticks, float partialTicks)
 	{
 		return new Vector3f();
@@ -81,11 +107,62 @@ public abstract class SpaceObject
 		return new Vector3f();
 	}
 	
+	/**
+	 * @return Absolute rotation
+	 */
 	public AxisRotation getAxisRotation()
 	{
+		updateTransform();
 		return axisRotation;
 	}
 	
+	public AxisRotation getLocalAxisRotation()
+	{
+		return localAxisRotation;
+	}
+	
+	/**
+	 * Works out the absolute coordinates and rotation again if the local ones or the ones of any parent have changed since the last time,
+	 * so moving an object only affects the objects below it once they're actually used.
+	 * Only ever resolved on the render thread, work done on other threads gets copies of the absolute transform taken on the render thread
+	 */
+	private void updateTransform()
+	{
+		// Nothing has been moved since the last check, so neither this object nor any of its parents can be outdated
+		if(checkedTransformEpoch == transformEpoch)
+			return;
+		
+		RenderSystem.assertOnRenderThread();
+		
+		if(parent != null)
+		{
+			parent.updateTransform();
+			if(parent.transformVersion != parentTransformVersion)
+				transformDirty = true;
+		}
+		
+		checkedTransformEpoch = transformEpoch;
+		
+		if(!transformDirty)
+			return;
+		
+		if(parent != null)
+		{
+			this.coords = localCoords.add(parent.coords);
+			this.axisRotation = localAxisRotation.add(parent.axisRotation);
+			this.parentTransformVersion = parent.transformVersion;
+		}
+		else
+		{
+			// Copies, so nothing done to the absolute coordinates or rotation can end up moving the object relative to its parent
+			this.coords = localCoords.copy();
+			this.axisRotation = localAxisRotation.copy();
+		}
+		
+		transformVersion++;
+		transformDirty = false;
+	}
+	
 	public Optional<ResourceKey<SpaceObject>> getParentKey()
 	{
 		return Optional.ofNullable(parentKey);
@@ -111,43 +188,17 @@ public abstract class SpaceObject
 		return 1 / distance;
 	}
 	
-	public static float dayBrightness(ViewCenter viewCenter, float size, long ticks, ClientLevel level, Camera camera, float partialTicks)
-	{
-		if(viewCenter.starsAlwaysVisible())
-			return GeneralConfig.bright_stars.get() ? 0.5F * StellarView.lightSourceDimming(level, camera) : 0.5F;
-		
-		float brightness = level.getStarBrightness(partialTicks) * 2;
-		
-		if(GeneralConfig.bright_stars.get())
-			brightness = brightness * StellarView.lightSourceDimming(level, camera);
-		
-		if(brightness < viewCenter.dayMaxBrightness && size > viewCenter.dayMinVisibleSize)
-		{
-			float aboveSize = size >= viewCenter.dayMaxVisibleSize ? viewCenter.dayVisibleSizeRange : size - viewCenter.dayMinVisibleSize;
-			float brightnessPercentage = aboveSize / viewCenter.dayVisibleSizeRange;
-			
-			brightness = brightnessPercentage * viewCenter.dayMaxBrightness;
-		}
-		
-		return brightness * StellarView.rainDimming(level, partialTicks);
-	}
-	
+	/**
+	 * Moves the object relative to its parent, the objects below it pick up the change the next time their coordinates or rotation are used
+	 */
 	public void setPosAndRotation(SpaceCoords coords, AxisRotation axisRotation)
 	{
-		removeCoordsAndRotationFromChildren(getCoords(), getAxisRotation());
-		
-		if(this.parent != null)
-		{
-			this.coords = coords.add(this.parent.getCoords());
-			this.axisRotation = axisRotation.add(this.parent.getAxisRotation());
-		}
-		else
-		{
-			this.coords = coords;
-			this.axisRotation = axisRotation;
-		}
+		this.localCoords = coords;
+		this.localAxisRotation = axisRotation;
+		this.transformDirty = true;
+		transformEpoch++;
 		
-		addCoordsAndRotationToChildren(this.coords, this.axisRotation);
+		invalidateBounds();
 	}
 	
 	public void addChild(SpaceObject child)
@@ -160,37 +211,107 @@ public abstract class SpaceObject
 		
 		this.children.add(child);
 		child.parent = this;
-		child.coords = child.coords.add(this.coords);
+		child.transformDirty = true;
+		transformEpoch++;
 		
-		child.axisRotation = child.axisRotation.add(this.axisRotation);
-		
-		child.addCoordsAndRotationToChildren(this.coords, this.axisRotation);
+		invalidateBounds();
+	}
+	
+	//============================================================================================
+	//**************************************Bounding spheres**************************************
+	//============================================================================================
+	
+	/**
+	 * @return Farthest distance from the view center in km at which this object itself can be drawn
+	 */
+	protected double drawDistance()
+	{
+		return Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * @param parentDistance Distance of the parent from the view center in km, infinite if it isn't known
+	 * @return Farthest distance in km this object can move away from its coordinates while orbiting
+	 */
+	protected double orbitExtent(double parentDistance)
+	{
+		return 0;
+	}
+	
+	/**
+	 * @param parentDistance Distance of the parent from the view center in km
+	 * @return Radius in km of a sphere around the coordinates of this object, offset by the position of the parent, that this object and everything below it stays within
+	 */
+	public double boundingRadius(double parentDistance)
+	{
+		updateBounds();
+		return orbitExtent(parentDistance) + childrenRadius;
+	}
+	
+	/**
+	 * @return Distance from the position of this object in km that everything below it stays within
+	 */
+	protected double childrenRadius()
+	{
+		updateBounds();
+		return childrenRadius;
 	}
 	
-	protected void addCoordsAndRotationToChildren(SpaceCoords coords, AxisRotation axisRotation)
+	/**
+	 * @return Farthest distance from the view center in km at which anything in the subtree can still be drawn
+	 */
+	public double boundingReach()
 	{
-		for(SpaceObject childOfChild : this.children)
+		updateBounds();
+		return reach;
+	}
+	
+	private void invalidateBounds()
+	{
+		for(SpaceObject object = this; object != null && !object.boundsDirty; object = object.parent)
 		{
-			childOfChild.coords = childOfChild.coords.add(coords);
-			childOfChild.axisRotation = childOfChild.axisRotation.add(axisRotation);
-			
-			childOfChild.addCoordsAndRotationToChildren(coords, axisRotation);
+			object.boundsDirty = true;
 		}
 	}
 	
-	protected void removeCoordsAndRotationFromChildren(SpaceCoords coords, AxisRotation axisRotation)
+	private void updateBounds()
 	{
-		for(SpaceObject childOfChild : this.children)
+		if(!boundsDirty)
+			return;
+		
+		double radius = 0;
+		double reach = drawDistance();
+		
+		for(SpaceObject child : children)
 		{
-			childOfChild.coords = childOfChild.coords.sub(coords);
-			childOfChild.axisRotation = childOfChild.axisRotation.sub(axisRotation);
+			child.updateBounds();
 			
-			childOfChild.removeCoordsAndRotationFromChildren(coords, axisRotation);
+			// The distances of the parents of children are only known once they're evaluated, so their orbits are assumed to be as large as they can get
+			radius = Math.max(radius, child.localCoords.distanceToCenter() + child.orbitExtent(Double.POSITIVE_INFINITY) + child.childrenRadius);
+			reach = Math.max(reach, child.reach);
 		}
+		
+		this.childrenRadius = radius;
+		this.reach = reach;
+		this.boundsDirty = false;
 	}
 	
 	
 	
+	/**
+	 * Fills in the slots of this object and its children for the current frame, the positions are worked out here so that rendering only needs to read them from the Sky Scene.
+	 * Objects that aren't drawn as textures don't take up a slot and pass the position of their parent on to their children
+	 * @param parentVector Orbit offset of the parent
+	 * @param parentRotation Axis rotation of the parent
+	 */
+	public void evaluate(SkyScene scene, ViewCenter viewCenter, Vector3f parentVector, AxisRotation parentRotation)
+	{
+		for(SpaceObject child : children)
+		{
+			child.evaluate(scene, viewCenter, parentVector, NO_ROTATION);
+		}
+	}
+	
 	public abstract void render(ViewCenter viewCenter, ClientLevel level, float partialTicks, Matrix4f modelViewMatrix, Camera camera,
 			Matrix4f projectionMatrix, boolean isFoggy, Runnable setupFog, Tesselator tesselator,
 			Vector3f parentVector, AxisRotation parentRotation);
@@ -4,35 +4,76 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.*;
 import com.mojang.datafixers.util.Either;
 import com.mojang.serialization.Codec;
+import com.mojang.serialization.DataResult;
+import com.mojang.serialization.JsonOps;
 import com.mojang.serialization.codecs.RecordCodecBuilder;
+import net.minecraft.Util;
 import net.minecraft.client.Camera;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.client.renderer.FogRenderer;
 import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.util.RandomSource;
+import net.povstalec.stellarview.StellarView;
+import net.povstalec.stellarview.client.render.shader.StarShaderInstance;
 import net.povstalec.stellarview.client.render.shader.StellarViewShaders;
 import net.povstalec.stellarview.client.render.shader.StellarViewVertexFormat;
+import net.povstalec.stellarview.client.resourcepack.StarFieldBudget;
 import net.povstalec.stellarview.client.resourcepack.StarInfo;
 import net.povstalec.stellarview.client.resourcepack.ViewCenter;
 import net.povstalec.stellarview.common.config.GeneralConfig;
 import net.povstalec.stellarview.common.util.*;
+import org.joml.FrustumIntersection;
 import org.joml.Matrix4f;
+import org.joml.Quaterniond;
 import org.joml.Quaternionf;
 import org.joml.Vector3d;
 import org.joml.Vector3f;
 
 import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.IntStream;
 
 public class StarField extends SpaceObject
 {
 	@Nullable
 	protected StarBuffer starBuffer;
 	protected StarData starData;
-
+	@Nullable
+	protected SkyTiles skyTiles;
+	@Nullable
+	protected StarOctree octree;
+	@Nullable
+	protected StarBuffer impostorBuffer;
+	@Nullable
+	protected CompletableFuture<StarMesh> pendingMesh;
+	protected boolean outdated = true;
+	@Nullable
+	protected byte[] buildKey; // Everything the current Star Buffer was (or is being) built from
+	protected final StarRanges visibleStars = new StarRanges();
+	protected final StarRanges visibleImpostors = new StarRanges();
+	protected long lastVisibleFrame = -1;
+	protected boolean evicted = false; // Star Buffers have been freed to stay under the budget and get rebuilt once the Star Field is visible again
+	protected int failedBuilds = 0; // Star Buffer builds that have failed in a row
+	protected long retryFrame = -1; // Sky frame before which the Star Buffers aren't built again after a failure, see StarFieldBudget#frame()
+	@Nullable
+	protected ProceduralStars proceduralStars; // Only set while the Stars are derived in the vertex shader instead of being generated
+	@Nullable
+	protected Vector3f bakeReference; // Position the Star Buffers have been projected from, set only if they hold baked Stars
+	protected float bakeTolerance; // Distance the view center can move away from the bake reference before the Stars get baked again
+	protected final SpaceCoords difference = new SpaceCoords(); // Position of the view center relative to this Star Field, written in place every frame
+	
 	protected StarInfo starInfo;
 	
 	protected final long seed;
@@ -49,18 +90,26 @@ public class StarField extends SpaceObject
 	
 	protected final int totalStars;
 	
+	public static final int GENERATION_CHUNK_SIZE = 4096;
+	public static final int STARS_PER_CHUNK = 16384; // 65536 vertices, which means every chunk can be drawn with 16-bit indices
+	public static final int PROCEDURAL_SAMPLES = 256;
+	public static final float MAX_BAKED_STAR_SHIFT = 1.0E-4F; // Radians the nearest baked Star may move across the sky before the Stars get baked again, about a tenth of a pixel
+	public static final float MIN_BAKE_TOLERANCE = 1.0E-6F; // Light years the view center can always move before the Stars get baked again, so a Star right next to it doesn't make them bake every frame
+	public static final int FAILED_BUILD_DELAY_FRAMES = 60; // Sky frames before a failed Star Buffer gets built again, doubles with every failure in a row
+	public static final int MAX_FAILED_BUILD_DELAY_FRAMES = 3840;
+	
 	public static final Codec<StarField> CODEC = RecordCodecBuilder.create(instance -> instance.group(
 			RESOURCE_KEY_CODEC.optionalFieldOf("parent").forGetter(StarField::getParentKey),
 			Codec.either(SpaceCoords.CODEC, StellarCoordinates.Equatorial.CODEC).fieldOf("coords").forGetter(object -> Either.left(object.getCoords())),
 			AxisRotation.CODEC.fieldOf("axis_rotation").forGetter(StarField::getAxisRotation),
-
+			
 			SpaceObject.FadeOutHandler.CODEC.optionalFieldOf("fade_out_handler", SpaceObject.FadeOutHandler.DEFAULT_STAR_FIELD_HANDLER).forGetter(StarField::getFadeOutHandler),
-
+			
 			StarInfo.CODEC.optionalFieldOf("star_info", StarInfo.DEFAULT_STAR_INFO).forGetter(StarField::getStarInfo),
 			Codec.LONG.fieldOf("seed").forGetter(StarField::getSeed),
 			Codec.INT.fieldOf("diameter_ly").forGetter(StarField::getDiameter),
 			
-			Codec.intRange(1, 30000).fieldOf("stars").forGetter(StarField::getStars),
+			Codec.intRange(1, StarData.MAX_STARS).fieldOf("stars").forGetter(StarField::getStars),
 			Codec.BOOL.optionalFieldOf("clump_stars_in_center", true).forGetter(StarField::clumpStarsInCenter),
 			
 			Codec.DOUBLE.optionalFieldOf("x_stretch", 1.0).forGetter(StarField::xStretch),
@@ -68,7 +117,30 @@ public class StarField extends SpaceObject
 			Codec.DOUBLE.optionalFieldOf("z_stretch", 1.0).forGetter(StarField::zStretch),
 			
 			SpiralArm.CODEC.listOf().optionalFieldOf("spiral_arms", new ArrayList<SpiralArm>()).forGetter(starField -> starField.spiralArms)
-			).apply(instance, StarField::new));
+			).apply(instance, StarField::new)).validate(StarField::validateStars);
+	
+	/**
+	 * Star Fields are generated, stored and uploaded in single arrays and buffers, so the Stars of the disc and all the Spiral Arms together can't go over {@link StarData#MAX_STARS}
+	 */
+	private static DataResult<StarField> validateStars(StarField starField)
+	{
+		long totalStars = starField.stars;
+		for(SpiralArm arm : starField.spiralArms)
+		{
+			if(arm.armStars() < 0)
+				return DataResult.error(() -> "Spiral Arm has " + arm.armStars() + " Stars, the number of Stars can't be negative");
+			
+			totalStars += arm.armStars();
+		}
+		
+		if(totalStars > StarData.MAX_STARS)
+		{
+			long stars = totalStars;
+			return DataResult.error(() -> "Star Field has " + stars + " Stars including its Spiral Arms, but at most " + StarData.MAX_STARS + " Stars are supported");
+		}
+		
+		return DataResult.success(starField);
+	}
 	
 	public StarField(Optional<ResourceKey<SpaceObject>> parent, Either<SpaceCoords, StellarCoordinates.Equatorial> coords, AxisRotation axisRotation,
 			FadeOutHandler fadeOutHandler, StarInfo starInfo, long seed, int diameter, int numberOfStars, boolean clumpStarsInCenter,
@@ -88,7 +160,7 @@ public class StarField extends SpaceObject
 		this.zStretch = zStretch;
 		
 		this.spiralArms = new ArrayList<SpiralArm>(spiralArms);
-
+		
 		// Calculate the total amount of stars
 		int totalStars = stars;
 		for(SpiralArm arm : this.spiralArms)
@@ -160,54 +232,504 @@ public class StarField extends SpaceObject
 	
 	public boolean requiresSetup()
 	{
-		return starBuffer == null;
+		return outdated && pendingMesh == null && !awaitingRetry();
 	}
 	
+	/**
+	 * @return True if the last Star Buffer build has failed and it's too early to try again
+	 */
+	protected boolean awaitingRetry()
+	{
+		return StarFieldBudget.frame() < retryFrame;
+	}
+	
+	/**
+	 * Marks the Star Buffer as outdated, the current Star Buffer keeps rendering until the new one has been uploaded
+	 */
 	public void reset()
 	{
+		discardPendingMesh();
+		outdated = true;
+		
+		// Whatever made the last build fail may have changed, so the next one is started right away
+		failedBuilds = 0;
+		retryFrame = -1;
+	}
+	
+	/**
+	 * Frees the Star Buffers and throws away any Stars that are still being built, called when the universe gets unloaded
+	 */
+	public void close()
+	{
+		discardPendingMesh();
+		
+		if(starBuffer != null)
+		{
+			starBuffer.close();
+			starBuffer = null;
+		}
+		
+		if(impostorBuffer != null)
+		{
+			impostorBuffer.close();
+			impostorBuffer = null;
+		}
+		
+		if(proceduralStars != null)
+		{
+			proceduralStars.close();
+			proceduralStars = null;
+		}
+		
+		bakeReference = null;
+		evicted = false;
+	}
+	
+	/**
+	 * @return Number of bytes the Star Buffers of this Star Field hold in video memory
+	 */
+	public long gpuBytes()
+	{
+		long bytes = 0;
+		if(starBuffer != null)
+			bytes += GpuResources.getBytes(starBuffer);
+		if(impostorBuffer != null)
+			bytes += GpuResources.getBytes(impostorBuffer);
+		
+		return bytes;
+	}
+	
+	/**
+	 * @return Number of the sky frame this Star Field last had any Stars in view, see {@link StarFieldBudget#frame()}
+	 */
+	public long getLastVisibleFrame()
+	{
+		return lastVisibleFrame;
+	}
+	
+	/**
+	 * @return True if the Star Buffers can be freed and later rebuilt from the Star data this Star Field keeps
+	 */
+	public boolean canEvict()
+	{
+		return starBuffer != null && skyTiles != null && pendingMesh == null && !outdated;
+	}
+	
+	/**
+	 * Frees the Star Buffers but keeps the Star data and Sky Tiles, so visibility can still be checked and the buffers rebuilt without generating the Stars again
+	 */
+	public void evict()
+	{
+		if(!canEvict())
+			return;
+		
+		starBuffer.close();
 		starBuffer = null;
+		
+		if(impostorBuffer != null)
+		{
+			impostorBuffer.close();
+			impostorBuffer = null;
+		}
+		
+		evicted = true;
 	}
 	
-	protected void generateStars(BufferBuilder bufferBuilder, RandomSource randomsource)
+	/**
+	 * Starts building the Star Buffers again from the kept Star data on a worker thread,
+	 * either because they have been evicted or because baked Stars have to be projected from a new position
+	 * @param relativeCoords Position of the view center relative to this Star Field, baked Stars get projected from there
+	 */
+	protected void restoreBuffer(SpaceCoords relativeCoords)
 	{
-		for(int i = 0; i < stars; i++)
+		if(pendingMesh != null || awaitingRetry())
+			return;
+		
+		StarData starData = this.starData;
+		SkyTiles tiles = this.skyTiles;
+		StarOctree starOctree = this.octree;
+		boolean instanced = useInstancing();
+		boolean compact = useCompactStars(instanced);
+		Vector3f bakeReference = useBakedStars() ? new Vector3f(relativeCoords.x().ly(), relativeCoords.y().ly(), relativeCoords.z().ly()) : null;
+		
+		pendingMesh = CompletableFuture.supplyAsync(() ->
 		{
-			// This generates random coordinates for the Star close to the camera
-			double distance = clumpStarsInCenter ? randomsource.nextDouble() : Math.cbrt(randomsource.nextDouble());
-			double theta = randomsource.nextDouble() * 2F * Math.PI;
-			double phi = Math.acos(2F * randomsource.nextDouble() - 1F); // This prevents the formation of that weird streak that normally happens
+			StarMesh starMesh = buildMesh(starData, instanced, compact, bakeReference).setSkyTiles(tiles);
+			if(starOctree != null)
+				starMesh.setOctree(starOctree, buildMesh(starOctree.impostors(), instanced, compact, bakeReference));
 			
-			Vector3d cartesian = new SphericalCoords(distance * diameter, theta, phi).toCartesianD();
+			return starMesh;
+		}, Util.backgroundExecutor());
+	}
+	
+	/**
+	 * Regenerates the Stars only if anything they are generated from has changed since they were last built,
+	 * such as the axis rotation inherited from a parent or the config options that affect generation
+	 * @return True if the Star Field is going to be regenerated
+	 */
+	public boolean update()
+	{
+		// Procedural Stars only need their parameters uploaded again, which is cheap enough to do on every update
+		if(proceduralStars != null)
+		{
+			proceduralStars.close();
+			proceduralStars = null;
+		}
+		
+		if(buildKey == null || Arrays.equals(buildKey, buildKey(generationKey(), useInstancing(), useCompactStars(useInstancing()), GeneralConfig.star_level_of_detail.get(), GeneralConfig.shared_star_buffer.get(), useBakedStars())))
+			return false;
+		
+		reset();
+		return true;
+	}
+	
+	/**
+	 * @return State of the Star Buffer, useful for measuring how long Star Fields take to build
+	 */
+	public BufferState getBufferState()
+	{
+		if(pendingMesh != null)
+			return pendingMesh.isDone() ? BufferState.READY : BufferState.PENDING;
+		
+		return starBuffer != null ? BufferState.UPLOADED : BufferState.EMPTY;
+	}
+	
+	protected Vector3d starPosition(Quaterniond rotation, double distanceRandom, double thetaRandom, double phiRandom)
+	{
+		// This generates random coordinates for the Star close to the camera
+		double distance = clumpStarsInCenter ? distanceRandom : Math.cbrt(distanceRandom);
+		double theta = thetaRandom * 2F * Math.PI;
+		double phi = Math.acos(2F * phiRandom - 1F); // This prevents the formation of that weird streak that normally happens
+		
+		Vector3d cartesian = new SphericalCoords(distance * diameter, theta, phi).toCartesianD();
+		
+		cartesian.x *= xStretch;
+		cartesian.y *= yStretch;
+		cartesian.z *= zStretch;
+		
+		rotation.transform(cartesian);
+		
+		return cartesian;
+	}
+	
+	/**
+	 * @param rotation Axis rotation of the Star Field
+	 * @param random Random sequence of the Star, see {@link StarRandom#setStar(long, int)}
+	 * @param index Index of the Star, Spiral Arm Stars come after the Stars of the disc
+	 * @return Position the Star gets with hashed generation
+	 */
+	protected Vector3d hashedStarPosition(Quaterniond rotation, StarRandom random, int index, double sizeMultiplier)
+	{
+		if(index < stars)
+			return starPosition(rotation, random.nextFloat(), random.nextFloat(), random.nextFloat());
+		
+		int i = index - stars;
+		for(SpiralArm arm : spiralArms)
+		{
+			if(i < arm.armStars())
+				return arm.starPosition(rotation, i, sizeMultiplier, random.nextFloat(), random.nextFloat(), random.nextFloat());
 			
-			cartesian.x *= xStretch;
-			cartesian.y *= yStretch;
-			cartesian.z *= zStretch;
+			i -= arm.armStars();
+		}
+		
+		throw new IllegalArgumentException("Star index " + index + " is out of range for " + this);
+	}
+	
+	protected void generateStars(Quaterniond rotation, StarData starData, RandomSource randomsource)
+	{
+		for(int i = 0; i < stars; i++)
+		{
+			Vector3d cartesian = starPosition(rotation, randomsource.nextDouble(), randomsource.nextDouble(), randomsource.nextDouble());
 			
-			axisRotation.quaterniond().transform(cartesian);
-
-			starData.newStar(starInfo, bufferBuilder, randomsource, cartesian.x, cartesian.y, cartesian.z, i);
+			starData.newStar(starInfo, randomsource, cartesian.x, cartesian.y, cartesian.z, i);
 		}
 	}
 	
-	protected MeshData generateStarBuffer(Tesselator tesselator)
+	protected void generateStar(Quaterniond rotation, StarData starData, StarRandom random, int i)
 	{
-		RandomSource randomsource = RandomSource.create(seed);
-		final var bufferBuilder = tesselator.begin(VertexFormat.Mode.QUADS, StellarViewVertexFormat.STAR_POS_COLOR_LY.get());
-		
-		double sizeMultiplier = diameter / 30D;
+		Vector3d cartesian = starPosition(rotation, random.nextFloat(), random.nextFloat(), random.nextFloat());
 		
-		starData = new StarData(totalStars);
+		starData.newStar(starInfo, random, cartesian.x, cartesian.y, cartesian.z, i);
+	}
+	
+	/**
+	 * Generates Stars in chunks of the index range on the common ForkJoin pool.
+	 * Each Star gets its own random sequence based on the seed and its index, so the result doesn't depend on the number of threads.
+	 * @param offset Index of the first Star
+	 * @param count Number of Stars to generate
+	 * @param generator Generates a single Star from its random sequence and its index relative to the offset
+	 */
+	protected void generateInChunks(int offset, int count, HashedStarGenerator generator)
+	{
+		int chunks = (count + GENERATION_CHUNK_SIZE - 1) / GENERATION_CHUNK_SIZE;
 		
-		generateStars(bufferBuilder, randomsource);
+		IntStream.range(0, chunks).parallel().forEach(chunk ->
+		{
+			StarRandom random = new StarRandom();
+			
+			int end = Math.min(count, (chunk + 1) * GENERATION_CHUNK_SIZE);
+			for(int i = chunk * GENERATION_CHUNK_SIZE; i < end; i++)
+			{
+				generator.generateStar(random.setStar(seed, offset + i), i);
+			}
+		});
+	}
+	
+	protected void generateHashedStars(Quaterniond rotation, StarData starData, double sizeMultiplier)
+	{
+		generateInChunks(0, stars, (random, i) -> generateStar(rotation, starData, random, i));
 		
 		int numberOfStars = stars;
-		for(SpiralArm arm : spiralArms) //Draw each arm
+		for(SpiralArm arm : spiralArms)
 		{
-			arm.generateStars(bufferBuilder, axisRotation, starData, starInfo, randomsource, numberOfStars, sizeMultiplier);
+			final int armOffset = numberOfStars;
+			generateInChunks(armOffset, arm.armStars(), (random, i) -> arm.generateStar(rotation, starData, starInfo, random, armOffset, i, sizeMultiplier));
 			numberOfStars += arm.armStars();
 		}
+	}
+	
+	/**
+	 * @param rotation Axis rotation of the Star Field, read on the render thread when the build was started
+	 * @param parallel Whether the Stars get generated with hashed generation on multiple threads
+	 */
+	protected StarData generateStarData(Quaterniond rotation, boolean parallel)
+	{
+		StarData starData = new StarData(totalStars);
+		double sizeMultiplier = diameter / 30D;
+		
+		if(parallel)
+			generateHashedStars(rotation, starData, sizeMultiplier);
+		else
+		{
+			RandomSource randomsource = RandomSource.create(seed);
+			
+			generateStars(rotation, starData, randomsource);
+			
+			int numberOfStars = stars;
+			for(SpiralArm arm : spiralArms) //Draw each arm
+			{
+				arm.generateStars(rotation, starData, starInfo, randomsource, numberOfStars, sizeMultiplier);
+				numberOfStars += arm.armStars();
+			}
+		}
 		
-		return bufferBuilder.build();
+		return starData;
+	}
+	
+	/**
+	 * @return Key of the Star cache, derived from every parameter that influences the generated Stars
+	 */
+	protected byte[] generationKey()
+	{
+		return generationKey(getAxisRotation(), GeneralConfig.parallel_star_generation.get());
+	}
+	
+	/**
+	 * @return Key of the Star cache for Stars generated with the axis rotation and generation mode
+	 */
+	protected byte[] generationKey(AxisRotation axisRotation, boolean parallel)
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		try(DataOutputStream output = new DataOutputStream(bytes))
+		{
+			output.writeBoolean(parallel);
+			
+			output.writeLong(seed);
+			output.writeInt(diameter);
+			output.writeInt(stars);
+			output.writeBoolean(clumpStarsInCenter);
+			
+			output.writeDouble(xStretch);
+			output.writeDouble(yStretch);
+			output.writeDouble(zStretch);
+			
+			output.writeDouble(axisRotation.xAxis());
+			output.writeDouble(axisRotation.yAxis());
+			output.writeDouble(axisRotation.zAxis());
+			
+			output.write(SpiralArm.CODEC.listOf().encodeStart(JsonOps.INSTANCE, spiralArms).getOrThrow().toString().getBytes(StandardCharsets.UTF_8));
+			output.write(StarInfo.CODEC.encodeStart(JsonOps.INSTANCE, starInfo).getOrThrow().toString().getBytes(StandardCharsets.UTF_8));
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		
+		return StarDataCache.key(bytes.toByteArray());
+	}
+	
+	protected static byte[] buildKey(byte[] generationKey, boolean instanced, boolean compact, boolean levelOfDetail, boolean shared, boolean baked)
+	{
+		byte[] buildKey = Arrays.copyOf(generationKey, generationKey.length + 5);
+		buildKey[generationKey.length] = (byte) (instanced ? 1 : 0);
+		buildKey[generationKey.length + 1] = (byte) (compact ? 1 : 0);
+		buildKey[generationKey.length + 2] = (byte) (levelOfDetail ? 1 : 0);
+		buildKey[generationKey.length + 3] = (byte) (shared ? 1 : 0);
+		buildKey[generationKey.length + 4] = (byte) (baked ? 1 : 0);
+		
+		return buildKey;
+	}
+	
+	/**
+	 * OpenGL capabilities can only be checked on the render thread, so this has to be decided before handing the work off
+	 */
+	protected static boolean useInstancing()
+	{
+		return GeneralConfig.instanced_stars.get() && !useBakedStars() && StarBuffer.supportsInstancing();
+	}
+	
+	/**
+	 * Baked Stars are regular Stars whose vertexes have already been projected onto the sky, see {@link StarMesh#buildBaked(StarData, int, Vector3f)}
+	 */
+	protected static boolean useBakedStars()
+	{
+		return GeneralConfig.static_star_projection.get();
+	}
+	
+	/**
+	 * Compact records are only available for instanced Stars, regular Stars keep their four full vertexes
+	 */
+	protected static boolean useCompactStars(boolean instanced)
+	{
+		return instanced && GeneralConfig.compact_stars.get();
+	}
+	
+	/**
+	 * Only regular Stars can go into the shared Star Arena, instanced records and baked vertexes keep a buffer of their own
+	 */
+	protected static boolean useSharedBuffer(StarMesh starMesh)
+	{
+		return GeneralConfig.shared_star_buffer.get() && !starMesh.isInstanced() && !starMesh.isBaked();
+	}
+	
+	/**
+	 * Generates the Star data (or loads it from the Star cache) and builds the vertexes, doesn't touch any GL state so it can run on any thread
+	 * @param generationKey Key of the parameters the Stars are generated from, see {@link #generationKey(AxisRotation, boolean)}
+	 * @param rotation Copy of the axis rotation the generation key was made from
+	 * @param parallel Generation mode the generation key was made from
+	 * @param cache Whether the Stars get loaded from and saved to the Star cache
+	 * @param cacheLimit Number of bytes the Star cache may take up on disk
+	 * @param instanced Whether to build one instance record per Star instead of four vertexes
+	 * @param compact Whether the instance records get quantized, see {@link StarQuantization}
+	 * @param levelOfDetail Whether to build an octree with impostors for distant groups of Stars
+	 * @param baked Whether the vertexes get projected onto the sky as seen from the reference
+	 * @param reference Position of the view center relative to this Star Field, Stars are sorted into Sky Tiles as seen from there
+	 * @return Star Mesh ready to be uploaded on the render thread
+	 */
+	protected StarMesh buildStarMesh(byte[] generationKey, Quaterniond rotation, boolean parallel, boolean cache, long cacheLimit, boolean instanced, boolean compact, boolean levelOfDetail, boolean baked, Vector3f reference)
+	{
+		long startTime = System.nanoTime();
+		
+		byte[] cacheKey = cache ? generationKey : null;
+		StarData starData = cacheKey != null ? StarDataCache.load(cacheKey, totalStars) : null;
+		
+		if(starData != null)
+			StellarView.LOGGER.debug("Loaded " + totalStars + " Stars for " + this + " from cache in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+		else
+		{
+			starData = generateStarData(rotation, parallel);
+			
+			if(cacheKey != null)
+				StarDataCache.save(cacheKey, starData, cacheLimit);
+			
+			StellarView.LOGGER.debug("Generated " + totalStars + " Stars for " + this + " in " + (System.nanoTime() - startTime) / 1000000 + " ms, retaining " + starData.heapSize() + " bytes of Star data");
+		}
+		
+		SkyTiles tiles = new SkyTiles(starData, reference.x, reference.y, reference.z);
+		starData = tiles.sort(starData);
+		
+		Vector3f bakeReference = baked ? reference : null;
+		
+		if(!levelOfDetail)
+			return buildMesh(starData, instanced, compact, bakeReference).setSkyTiles(tiles);
+		
+		StarOctree starOctree = new StarOctree(starData, tiles);
+		
+		StellarView.LOGGER.debug("Built octree with " + starOctree.nodeCount() + " nodes for " + this);
+		
+		return buildMesh(starOctree.starData(), instanced, compact, bakeReference).setSkyTiles(tiles).setOctree(starOctree, buildMesh(starOctree.impostors(), instanced, compact, bakeReference));
+	}
+	
+	private static StarMesh buildMesh(StarData starData, boolean instanced, boolean compact, @Nullable Vector3f bakeReference)
+	{
+		if(bakeReference != null)
+			return StarMesh.buildBaked(starData, STARS_PER_CHUNK, bakeReference);
+		
+		if(compact)
+			return StarMesh.buildCompact(starData);
+		
+		return instanced ? StarMesh.buildInstanced(starData) : StarMesh.build(starData, STARS_PER_CHUNK);
+	}
+	
+	protected void discardPendingMesh()
+	{
+		if(pendingMesh == null)
+			return;
+		
+		// The worker can't be interrupted, so whatever it ends up building gets freed right away
+		pendingMesh.thenAccept(StarMesh::close);
+		pendingMesh = null;
+	}
+	
+	/**
+	 * Uploads the pending Star Mesh if it has finished building, replacing the previous Star Buffer
+	 */
+	protected void uploadPendingMesh()
+	{
+		if(pendingMesh == null || !pendingMesh.isDone())
+			return;
+		
+		StarMesh starMesh;
+		try
+		{
+			starMesh = pendingMesh.join();
+		}
+		catch(CompletionException | CancellationException e)
+		{
+			pendingMesh = null;
+			
+			// The Star Buffers stay outdated (or evicted), but aren't built again until the delay is over, so a build that keeps failing doesn't get started and logged on every frame
+			failedBuilds++;
+			int delay = Math.min(FAILED_BUILD_DELAY_FRAMES << Math.min(failedBuilds - 1, 16), MAX_FAILED_BUILD_DELAY_FRAMES);
+			retryFrame = StarFieldBudget.frame() + delay;
+			
+			StellarView.LOGGER.error("Failed to generate Stars for " + this + ", trying again in " + delay + " frames", e);
+			return;
+		}
+		
+		pendingMesh = null;
+		outdated = false;
+		failedBuilds = 0;
+		retryFrame = -1;
+		
+		if(starBuffer != null)
+			starBuffer.close();
+		
+		if(impostorBuffer != null)
+		{
+			impostorBuffer.close();
+			impostorBuffer = null;
+		}
+		
+		long startTime = System.nanoTime();
+		
+		if(starMesh.impostorMesh() != null)
+		{
+			impostorBuffer = new StarBuffer(this, useSharedBuffer(starMesh.impostorMesh()));
+			starMesh.impostorMesh().upload(impostorBuffer);
+		}
+		
+		starBuffer = new StarBuffer(this, useSharedBuffer(starMesh));
+		starMesh.upload(starBuffer);
+		starData = starMesh.starData();
+		skyTiles = starMesh.skyTiles();
+		octree = starMesh.octree();
+		bakeReference = starMesh.bakeReference();
+		bakeTolerance = Math.max(starMesh.nearestStar() * MAX_BAKED_STAR_SHIFT, MIN_BAKE_TOLERANCE);
+		evicted = false;
+		
+		StellarView.LOGGER.debug("Uploaded " + totalStars + " Stars for " + this + " in " + starMesh.chunks() + " chunks in " + (System.nanoTime() - startTime) / 1000 + " \u00b5s");
 	}
 	
 	protected MeshData getStarBuffer(Tesselator tesselator)
@@ -226,35 +748,105 @@ public class StarField extends SpaceObject
 		if(starBuffer != null)
 			starBuffer.close();
 		
-		starBuffer = new StarBuffer();
-		Tesselator tesselator = Tesselator.getInstance();
+		starBuffer = new StarBuffer(this);
 		RenderSystem.setShader(GameRenderer::getPositionShader);
 		
-		MeshData mesh = getStarBuffer(tesselator);
-		
-		starBuffer.bind();
-		starBuffer.upload(mesh);
-		VertexBuffer.unbind();
+		StarMesh.build(starData, STARS_PER_CHUNK).upload(starBuffer);
 		
 		return this;
 	}
 	
+	/**
+	 * Starts building the Star Buffer on a worker thread, the result gets uploaded by {@link #uploadPendingMesh()} once it's ready
+	 */
 	public StarField setupBuffer(SpaceCoords relativeCoords)
 	{
-		if(starBuffer != null)
-			starBuffer.close();
+		discardPendingMesh();
 		
-		starBuffer = new StarBuffer();
-		Tesselator tesselator = Tesselator.getInstance();
-		RenderSystem.setShader(GameRenderer::getPositionShader);
+		// Everything the Stars depend on is read here, the worker never touches state that can change on the render thread
+		// The rotation and generation mode are read once, so the worker generates exactly the Stars the key describes
+		AxisRotation axisRotation = getAxisRotation();
+		Quaterniond rotation = new Quaterniond(axisRotation.quaterniond());
+		boolean parallel = GeneralConfig.parallel_star_generation.get();
+		boolean cache = GeneralConfig.cache_star_fields.get();
+		long cacheLimit = GeneralConfig.star_cache_size.get() * StarDataCache.BYTES_PER_MB;
+		byte[] generationKey = generationKey(axisRotation, parallel);
+		boolean instanced = useInstancing();
+		boolean compact = useCompactStars(instanced);
+		boolean levelOfDetail = GeneralConfig.star_level_of_detail.get();
+		boolean baked = useBakedStars();
+		buildKey = buildKey(generationKey, instanced, compact, levelOfDetail, GeneralConfig.shared_star_buffer.get(), baked);
+		Vector3f reference = new Vector3f(relativeCoords.x().ly(), relativeCoords.y().ly(), relativeCoords.z().ly());
+		pendingMesh = CompletableFuture.supplyAsync(() -> buildStarMesh(generationKey, rotation, parallel, cache, cacheLimit, instanced, compact, levelOfDetail, baked, reference), Util.backgroundExecutor());
+		
+		return this;
+	}
+	
+	/**
+	 * @return True if the Stars should be derived in the vertex shader, Star Fields with too many Spiral Arms or Star Types keep generating their Stars
+	 */
+	protected boolean useProceduralStars()
+	{
+		return GeneralConfig.procedural_stars.get() && ProceduralStars.supports(this);
+	}
+	
+	/**
+	 * Frees everything built for regular Stars and sets up the parameters the procedural Star shader derives the Stars from
+	 */
+	protected void setupProceduralStars()
+	{
+		if(proceduralStars != null)
+			return;
 		
-		MeshData mesh = generateStarBuffer(tesselator);
+		close();
+		reset();
+		starData = null;
+		skyTiles = null;
+		octree = null;
 		
-		starBuffer.bind();
-		starBuffer.upload(mesh);
-		VertexBuffer.unbind();
+		proceduralStars = new ProceduralStars(this);
 		
-		return this;
+		if(StellarView.LOGGER.isDebugEnabled())
+			logProceduralDeviation(proceduralStars);
+	}
+	
+	/**
+	 * Compares the CPU reference of the procedural Star shader with hashed generation for a sample of Stars,
+	 * any difference beyond float precision means the shader no longer matches the generator
+	 */
+	protected void logProceduralDeviation(ProceduralStars procedural)
+	{
+		double sizeMultiplier = diameter / 30D;
+		StarRandom random = new StarRandom();
+		int step = Math.max(1, totalStars / PROCEDURAL_SAMPLES);
+		Quaterniond rotation = getAxisRotation().quaterniond();
+		
+		double maxDeviation = 0;
+		int samples = 0;
+		for(int index = 0; index < totalStars; index += step)
+		{
+			Vector3d expected = hashedStarPosition(rotation, random.setStar(seed, index), index, sizeMultiplier);
+			// The first Star of each Spiral Arm gets an infinite spread, which the shader and the generator both turn into an unusable position
+			if(!expected.isFinite())
+				continue;
+			
+			Vector3f actual = procedural.referencePosition(index);
+			maxDeviation = Math.max(maxDeviation, expected.distance(actual.x, actual.y, actual.z));
+			samples++;
+		}
+		
+		StellarView.LOGGER.debug("Procedural Stars of " + this + " are up to " + maxDeviation + " ly away from generated Stars across " + samples + " samples");
+	}
+	
+	protected static StarShaderInstance starShader(StarBuffer starBuffer)
+	{
+		if(starBuffer.isBaked())
+			return StellarViewShaders.starBakedShader();
+		
+		if(starBuffer.isCompact())
+			return StellarViewShaders.starCompactShader();
+		
+		return starBuffer.isInstanced() ? StellarViewShaders.starInstancedShader() : StellarViewShaders.starShader();
 	}
 	
 	@Override
@@ -263,29 +855,113 @@ public class StarField extends SpaceObject
 			Vector3f parentVector, AxisRotation parentRotation)
 	{
 		//System.out.println(this + " " + viewCenter.getCoords());
-		SpaceCoords difference = viewCenter.getCoords().sub(getCoords());
+		SpaceCoords difference = viewCenter.getCoords().subInto(getCoords(), this.difference);
 		
-		if(requiresSetup())
-			setupBuffer(difference);
-		//else
-		//	setStarBuffer(difference); // This could be viable with fewer stars
+		boolean procedural = useProceduralStars();
+		if(procedural)
+			setupProceduralStars();
+		else
+		{
+			if(proceduralStars != null)
+			{
+				proceduralStars.close();
+				proceduralStars = null;
+			}
+			
+			if(requiresSetup())
+				setupBuffer(difference);
+			//else
+			//	setStarBuffer(difference); // This could be viable with fewer stars
+			
+			uploadPendingMesh();
+			
+			// Baked Stars only get projected again once the view center has moved far enough for the nearest Star to shift
+			if(bakeReference != null && !evicted && bakeReference.distance(difference.x().ly(), difference.y().ly(), difference.z().ly()) > bakeTolerance)
+				restoreBuffer(difference);
+		}
 		
 		float starBrightness = StarLike.getStarBrightness(viewCenter, level, camera, partialTicks);
 		
-		if(!GeneralConfig.disable_stars.get() && starBrightness > 0.0F)
+		if(procedural && !GeneralConfig.disable_stars.get() && starBrightness > 0.0F)
+		{
+			// Texture layers behind the Star Field have to be drawn before the Stars
+			BillboardBatch.get().flush();
+			FogRenderer.setupNoFog();
+			
+			// Without Sky Tiles the faintest Stars can't be picked out, so density leaves out a random share of the Stars in the shader
+			proceduralStars.drawWithShader(difference, StellarViewShaders.starProceduralShader(), GeneralConfig.star_density.get() / 100F);
+			lastVisibleFrame = StarFieldBudget.frame();
+			
+			setupFog.run();
+		}
+		else if(!procedural && (starBuffer != null || evicted) && !GeneralConfig.disable_stars.get() && starBrightness > 0.0F)
 		{
+			// Texture layers behind the Star Field have to be drawn before the Stars
+			BillboardBatch.get().flush();
+			
 			final var transformedModelView = new Matrix4f(modelViewMatrix);
 			
 			//stack.translate(0, 0, 0);
-			RenderSystem.setShaderColor(1, 1, 1, starBrightness);
+			// The brightness and matrices the shader uses come from the Sky Frame uniform block, transformedModelView is only needed for culling here
 			//RenderSystem.setShaderTexture(0, new ResourceLocation("textures/environment/sun.png"));
 			FogRenderer.setupNoFog();
 			
 			Quaternionf q = SpaceCoords.getQuaternionf(level, viewCenter, partialTicks);
 			
 			transformedModelView.rotate(q);
-			this.starBuffer.bind();
-			this.starBuffer.drawWithShader(transformedModelView, projectionMatrix, difference, StellarViewShaders.starShader());
+			
+			if(skyTiles != null)
+			{
+				// Only the Sky Tiles that intersect the view frustum get drawn
+				FrustumIntersection frustum = new FrustumIntersection(new Matrix4f(projectionMatrix).mul(transformedModelView));
+				visibleStars.clear();
+				visibleImpostors.clear();
+				
+				// Stars are sorted by magnitude inside each tile, so dropping the faintest ones just shortens the ranges
+				float density = GeneralConfig.star_density.get() / 100F;
+				int bands = skyTiles.visibleBands(density, starBrightness);
+				float lastBandShare = skyTiles.lastBandShare(density, bands);
+				
+				if(octree != null)
+					octree.visibleRanges(skyTiles, frustum, difference.x().ly(), difference.y().ly(), difference.z().ly(), bands, lastBandShare, visibleStars, visibleImpostors);
+				else
+					skyTiles.visibleRanges(frustum, difference.x().ly(), difference.y().ly(), difference.z().ly(), bands, lastBandShare, visibleStars);
+				
+				if(!visibleStars.isEmpty() || !visibleImpostors.isEmpty())
+				{
+					lastVisibleFrame = StarFieldBudget.frame();
+					
+					// Evicted Star Fields don't get drawn until their buffers have been rebuilt
+					if(evicted)
+						restoreBuffer(difference);
+				}
+				
+				if(starBuffer != null)
+				{
+					StarShaderInstance shader = starShader(starBuffer);
+					
+					if(!visibleStars.isEmpty())
+					{
+						this.starBuffer.bind();
+						this.starBuffer.drawWithShader(difference, shader, visibleStars.ranges(), visibleStars.count());
+					}
+					
+					// Distant octants that have been merged into single points
+					if(impostorBuffer != null && !visibleImpostors.isEmpty())
+					{
+						this.impostorBuffer.bind();
+						this.impostorBuffer.drawWithShader(difference, shader, visibleImpostors.ranges(), visibleImpostors.count());
+					}
+				}
+			}
+			else if(starBuffer != null)
+			{
+				lastVisibleFrame = StarFieldBudget.frame();
+				
+				StarShaderInstance shader = starShader(starBuffer);
+				this.starBuffer.bind();
+				this.starBuffer.drawWithShader(difference, shader);
+			}
 			//this.starBuffer.drawWithShader(transformedModelView, projectionMatrix, GameRenderer.getPositionColorTexShader());
 			VertexBuffer.unbind();
 			
@@ -298,6 +974,14 @@ public class StarField extends SpaceObject
 		}
 	}
 	
+	public enum BufferState
+	{
+		EMPTY, // Nothing has been built yet
+		PENDING, // Star Mesh is being built on a worker thread
+		READY, // Star Mesh has been built and is waiting for upload
+		UPLOADED // Star Buffer is up to date
+	}
+	
 	public static class SpiralArm
 	{
 		protected final int armStars;
@@ -349,36 +1033,56 @@ public class StarField extends SpaceObject
 			return clumpStarsInCenter;
 		}
 		
-		protected void generateStars(BufferBuilder bufferBuilder, AxisRotation axisRotation, StarData starData, StarInfo starInfo, RandomSource randomsource, int numberOfStars, double sizeMultiplier)
+		protected Vector3d starPosition(Quaterniond rotation, int i, double sizeMultiplier, double distanceRandom, double thetaRandom, double phiRandom)
+		{
+			// Milky Way is 90 000 ly across
+			
+			double progress = (double) i / armStars;
+			
+			double phi = armLength * Math.PI * progress - armRotation;
+			double r = StellarCoordinates.spiralR(5, phi, armRotation);
+			
+			// This generates random coordinates for the Star close to the camera
+			double distance = clumpStarsInCenter ? distanceRandom : Math.cbrt(distanceRandom);
+			double theta = thetaRandom * 2F * Math.PI;
+			double sphericalphi = Math.acos(2F * phiRandom - 1F); // This prevents the formation of that weird streak that normally happens
+			
+			Vector3d cartesian = new SphericalCoords(distance * armThickness, theta, sphericalphi).toCartesianD();
+			
+			double x =  r * Math.cos(phi) + cartesian.x * armThickness / (progress * 1.5);
+			double z =  r * Math.sin(phi) + cartesian.z * armThickness / (progress * 1.5);
+			double y =  cartesian.y * armThickness / (progress * 1.5);
+			
+			cartesian.x = x * sizeMultiplier;
+			cartesian.y = y * sizeMultiplier;
+			cartesian.z = z * sizeMultiplier;
+			
+			rotation.transform(cartesian);
+			
+			return cartesian;
+		}
+		
+		protected void generateStars(Quaterniond rotation, StarData starData, StarInfo starInfo, RandomSource randomsource, int numberOfStars, double sizeMultiplier)
 		{
 			for(int i = 0; i < armStars; i++)
 			{
-				// Milky Way is 90 000 ly across
-				
-				double progress = (double) i / armStars;
-				
-				double phi = armLength * Math.PI * progress - armRotation;
-				double r = StellarCoordinates.spiralR(5, phi, armRotation);
-
-				// This generates random coordinates for the Star close to the camera
-				double distance = clumpStarsInCenter ? randomsource.nextDouble() : Math.cbrt(randomsource.nextDouble());
-				double theta = randomsource.nextDouble() * 2F * Math.PI;
-				double sphericalphi = Math.acos(2F * randomsource.nextDouble() - 1F); // This prevents the formation of that weird streak that normally happens
-
-				Vector3d cartesian = new SphericalCoords(distance * armThickness, theta, sphericalphi).toCartesianD();
-				
-				double x =  r * Math.cos(phi) + cartesian.x * armThickness / (progress * 1.5);
-				double z =  r * Math.sin(phi) + cartesian.z * armThickness / (progress * 1.5);
-				double y =  cartesian.y * armThickness / (progress * 1.5);
-				
-				cartesian.x = x * sizeMultiplier;
-				cartesian.y = y * sizeMultiplier;
-				cartesian.z = z * sizeMultiplier;
+				Vector3d cartesian = starPosition(rotation, i, sizeMultiplier, randomsource.nextDouble(), randomsource.nextDouble(), randomsource.nextDouble());
 				
-				axisRotation.quaterniond().transform(cartesian);
-				
-				starData.newStar(starInfo, bufferBuilder, randomsource, cartesian.x, cartesian.y, cartesian.z, numberOfStars + i);
+				starData.newStar(starInfo, randomsource, cartesian.x, cartesian.y, cartesian.z, numberOfStars + i);
 			}
 		}
+		
+		protected void generateStar(Quaterniond rotation, StarData starData, StarInfo starInfo, StarRandom random, int numberOfStars, int i, double sizeMultiplier)
+		{
+			Vector3d cartesian = starPosition(rotation, i, sizeMultiplier, random.nextFloat(), random.nextFloat(), random.nextFloat());
+			
+			starData.newStar(starInfo, random, cartesian.x, cartesian.y, cartesian.z, numberOfStars + i);
+		}
+	}
+	
+	@FunctionalInterface
+	protected interface HashedStarGenerator
+	{
+		void generateStar(StarRandom random, int i);
 	}
 }
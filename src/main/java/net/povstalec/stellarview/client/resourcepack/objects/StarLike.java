@@ -8,6 +8,7 @@ import net.minecraft.client.Camera;
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.resources.ResourceKey;
 import net.povstalec.stellarview.StellarView;
+import net.povstalec.stellarview.client.resourcepack.Space;
 import net.povstalec.stellarview.client.resourcepack.ViewCenter;
 import net.povstalec.stellarview.common.config.GeneralConfig;
 import net.povstalec.stellarview.common.util.*;
@@ -106,7 +107,7 @@ public abstract class StarLike extends OrbitingObject
 		
 		renderOnSphere(textureLayer.rgba(), starRGBA, textureLayer.texture(), textureLayer.uv(),
 				level, camera, tesselator, lastMatrix, sphericalCoords,
-				ticks, distance, partialTicks, dayBrightness(viewCenter, size, ticks, level, camera, partialTicks), size, (float) textureLayer.rotation(), textureLayer.shoulBlend());
+				ticks, distance, partialTicks, Space.getScene().dayBrightness(viewCenter, size), size, (float) textureLayer.rotation(), textureLayer.shoulBlend());
 	}
 	
 	
@@ -191,6 +192,29 @@ public abstract class StarLike extends OrbitingObject
 			return weight;
 		}
 		
+		public float getMinSize()
+		{
+			return minSize;
+		}
+		
+		public float getMaxSize()
+		{
+			return maxSize;
+		}
+		
+		public short getMinBrightness()
+		{
+			return minBrightness;
+		}
+		
+		/**
+		 * @return Upper bound of the brightness range, exclusive unless it's the same as the lower bound
+		 */
+		public short getMaxBrightness()
+		{
+			return maxBrightness;
+		}
+		
 		public float randomSize(long seed)
 		{
 			if(minSize == maxSize)
@@ -210,5 +234,29 @@ public abstract class StarLike extends OrbitingObject
 			
 			return (short) random.nextInt(minBrightness, maxBrightness);
 		}
+		
+		/**
+		 * @param roll Random number in the range [0, 1), using the same roll as {@link #brightness(float)} keeps size and brightness correlated
+		 * @return Star size picked from the size range by the roll
+		 */
+		public float size(float roll)
+		{
+			if(minSize == maxSize)
+				return maxSize;
+			
+			return minSize + roll * (maxSize - minSize);
+		}
+		
+		/**
+		 * @param roll Random number in the range [0, 1)
+		 * @return Star brightness picked from the brightness range by the roll
+		 */
+		public short brightness(float roll)
+		{
+			if(minBrightness == maxBrightness)
+				return maxBrightness;
+			
+			return (short) (minBrightness + (int) (roll * (maxBrightness - minBrightness)));
+		}
 	}
 }
@@ -12,7 +12,11 @@ import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.client.renderer.GameRenderer;
 import net.minecraft.resources.ResourceKey;
 import net.minecraft.resources.ResourceLocation;
+import net.povstalec.stellarview.client.resourcepack.SkyScene;
+import net.povstalec.stellarview.client.resourcepack.Space;
+import net.povstalec.stellarview.client.resourcepack.SpaceTextureAtlas;
 import net.povstalec.stellarview.client.resourcepack.ViewCenter;
+import net.povstalec.stellarview.common.config.GeneralConfig;
 import net.povstalec.stellarview.common.util.*;
 import org.joml.Matrix4f;
 import org.joml.Quaterniond;
@@ -26,6 +30,8 @@ public abstract class TexturedObject extends SpaceObject
 {
 	protected ArrayList<TextureLayer> textureLayers;
 	
+	protected int sceneIndex = -1; // Slot of this object in the Sky Scene of the last frame it was evaluated in
+	
 	public TexturedObject(Optional<ResourceKey<SpaceObject>> parent, Either<SpaceCoords, StellarCoordinates.Equatorial> coords,
 			AxisRotation axisRotation, List<TextureLayer> textureLayers, FadeOutHandler fadeOutHandler)
 	{
@@ -57,20 +63,37 @@ public abstract class TexturedObject extends SpaceObject
 		quaternionX.transform(corner11);
 		quaternionX.transform(corner01);
 		
+		float red = rgba.red() * secondaryRGBA.red();
+		float green = rgba.green() * secondaryRGBA.green();
+		float blue = rgba.blue() * secondaryRGBA.blue();
+		float alpha = brightness * rgba.alpha() * secondaryRGBA.alpha();
+		
+		SpaceTextureAtlas.Region region = SpaceTextureAtlas.region(texture);
+		
+		if(GeneralConfig.batched_texture_layers.get())
+		{
+			BillboardBatch batch = BillboardBatch.get();
+			if(batch.isActive())
+			{
+				batch.add(lastMatrix, corner00, corner10, corner11, corner01, uv, ticks, region, red, green, blue, alpha, shouldBlend);
+				return;
+			}
+		}
+		
 		if(shouldBlend)
 			RenderSystem.blendFuncSeparate(GlStateManager.SourceFactor.SRC_ALPHA, GlStateManager.DestFactor.ONE, GlStateManager.SourceFactor.ONE, GlStateManager.DestFactor.ZERO);
 		else
 			RenderSystem.defaultBlendFunc();
 		
-		RenderSystem.setShaderColor(rgba.red() * secondaryRGBA.red(), rgba.green() * secondaryRGBA.green(), rgba.blue() * secondaryRGBA.blue(), brightness * rgba.alpha() * secondaryRGBA.alpha());
+		RenderSystem.setShaderColor(red, green, blue, alpha);
 		
-		RenderSystem.setShaderTexture(0, texture);
+		RenderSystem.setShaderTexture(0, region.texture());
 		final var bufferbuilder = tesselator.begin(VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX);
 		
-		bufferbuilder.addVertex(lastMatrix, corner00.x, corner00.y, corner00.z).setUv(uv.topRight().u(ticks), uv.topRight().v(ticks));
-		bufferbuilder.addVertex(lastMatrix, corner10.x, corner10.y, corner10.z).setUv(uv.bottomRight().u(ticks), uv.bottomRight().v(ticks));
-		bufferbuilder.addVertex(lastMatrix, corner11.x, corner11.y, corner11.z).setUv(uv.bottomLeft().u(ticks), uv.bottomLeft().v(ticks));
-		bufferbuilder.addVertex(lastMatrix, corner01.x, corner01.y, corner01.z).setUv(uv.topLeft().u(ticks), uv.topLeft().v(ticks));
+		bufferbuilder.addVertex(lastMatrix, corner00.x, corner00.y, corner00.z).setUv(region.u(uv.topRight().u(ticks)), region.v(uv.topRight().v(ticks)));
+		bufferbuilder.addVertex(lastMatrix, corner10.x, corner10.y, corner10.z).setUv(region.u(uv.bottomRight().u(ticks)), region.v(uv.bottomRight().v(ticks)));
+		bufferbuilder.addVertex(lastMatrix, corner11.x, corner11.y, corner11.z).setUv(region.u(uv.bottomLeft().u(ticks)), region.v(uv.bottomLeft().v(ticks)));
+		bufferbuilder.addVertex(lastMatrix, corner01.x, corner01.y, corner01.z).setUv(region.u(uv.topLeft().u(ticks)), region.v(uv.topLeft().v(ticks)));
 		
 		BufferUploader.drawWithShader(bufferbuilder.buildOrThrow());
 		
@@ -105,13 +128,13 @@ public abstract class TexturedObject extends SpaceObject
 		
 		renderOnSphere(textureLayer.rgba(), Color.FloatRGBA.DEFAULT, textureLayer.texture(), textureLayer.uv(),
 				level, camera, tesselator, lastMatrix, sphericalCoords,
-				ticks, distance, partialTicks, dayBrightness(viewCenter, size, ticks, level, camera, partialTicks), size, (float) textureLayer.rotation(), textureLayer.shoulBlend());
+				ticks, distance, partialTicks, Space.getScene().dayBrightness(viewCenter, size), size, (float) textureLayer.rotation(), textureLayer.shoulBlend());
 	}
 	
 	protected void renderTextureLayers(ViewCenter viewCenter, ClientLevel level, Camera camera, Tesselator tesselator, Matrix4f lastMatrix, SphericalCoords sphericalCoords, long ticks, double distance, float partialTicks)
 	{
 		RenderSystem.setShader(GameRenderer::getPositionTexShader);
-
+		
 		for(TextureLayer textureLayer : textureLayers)
 		{
 			renderTextureLayer(textureLayer, viewCenter, level, camera, tesselator, lastMatrix, sphericalCoords, ticks, distance, partialTicks);
@@ -119,44 +142,74 @@ public abstract class TexturedObject extends SpaceObject
 	}
 	
 	
+	@Override
+	protected double drawDistance()
+	{
+		return getFadeOutHandler().getFadeOutEndDistance().toKm();
+	}
+	
+	@Override
+	public void evaluate(SkyScene scene, ViewCenter viewCenter, Vector3f parentVector, AxisRotation parentRotation)
+	{
+		// Nothing in this subtree can be drawn if even the closest point of its bounding sphere is beyond the distance everything in it fades out at
+		double centerDistance = scene.distance(getCoords(), parentVector, viewCenter.getCoords());
+		if(centerDistance - boundingRadius(parent != null ? parent.lastDistance : 0) >= boundingReach())
+		{
+			lastDistance = centerDistance;
+			scene.cull();
+			return;
+		}
+		
+		Vector3f positionVector = getPosition(viewCenter, parentRotation, scene.ticks(), scene.partialTicks()).add(parentVector); // Handles orbits 'n stuff
+		
+		// The parent vector gets added to the current coords by the scene
+		sceneIndex = scene.add(this, getCoords(), positionVector, getFadeOutHandler(), viewCenter.getCoords(), viewCenter.objectEquals(this));
+		
+		// Children are evaluated after this, so their orbits can use the distance from the current frame
+		lastDistance = scene.distance(sceneIndex);
+		
+		if(scene.childrenVisible(sceneIndex))
+		{
+			for(SpaceObject child : children)
+			{
+				child.evaluate(scene, viewCenter, positionVector, getAxisRotation());
+			}
+		}
+	}
+	
 	public void render(ViewCenter viewCenter, ClientLevel level, float partialTicks, Matrix4f modelViewMatrix, Camera camera,
 			Matrix4f projectionMatrix, boolean isFoggy, Runnable setupFog, Tesselator tesselator,
 			Vector3f parentVector, AxisRotation parentRotation)
 	{
-		long ticks = level.getDayTime();
+		SkyScene scene = Space.getScene();
+		if(!scene.isEvaluated(sceneIndex, this))
+			return;
 		
-		Vector3f positionVector = getPosition(viewCenter, parentRotation, ticks, partialTicks).add(parentVector); // Handles orbits 'n stuff
-
-		// Add parent vector to current coords
-		SpaceCoords coords = getCoords().add(positionVector);
-
-		// Subtract coords of this from View Center coords to get relative coords
-		SphericalCoords sphericalCoords = coords.skyPosition(level, viewCenter, partialTicks);
+		long ticks = scene.ticks();
 		
-		lastDistance = sphericalCoords.r;
-		sphericalCoords.r = DEFAULT_DISTANCE;
+		SphericalCoords sphericalCoords = scene.skyPosition(sceneIndex, DEFAULT_DISTANCE);
 		
-		if(getFadeOutHandler().getMaxChildRenderDistance().toKm() > lastDistance)
+		if(scene.childrenVisible(sceneIndex))
 		{
 			for(SpaceObject child : children)
 			{
 				// Render child behind the parent
 				if(child.lastDistance >= this.lastDistance)
-					child.render(viewCenter, level, partialTicks, modelViewMatrix, camera, projectionMatrix, isFoggy, setupFog, tesselator, positionVector, this.axisRotation);
+					child.render(viewCenter, level, partialTicks, modelViewMatrix, camera, projectionMatrix, isFoggy, setupFog, tesselator, parentVector, getAxisRotation());
 			}
 		}
 		
 		// If the object isn't the same we're viewing everything from and it isn't too far away, render it
-		if(!viewCenter.objectEquals(this) && getFadeOutHandler().getFadeOutEndDistance().toKm() > lastDistance)
+		if(scene.isVisible(sceneIndex))
 			renderTextureLayers(viewCenter, level, camera, tesselator, modelViewMatrix, sphericalCoords, ticks, lastDistance, partialTicks);
 		
-		if(getFadeOutHandler().getMaxChildRenderDistance().toKm() > lastDistance)
+		if(scene.childrenVisible(sceneIndex))
 		{
 			for(SpaceObject child : children)
 			{
 				// Render child in front of the parent
 				if(child.lastDistance < this.lastDistance)
-					child.render(viewCenter, level, partialTicks, modelViewMatrix, camera, projectionMatrix, isFoggy, setupFog, tesselator, positionVector, this.axisRotation);
+					child.render(viewCenter, level, partialTicks, modelViewMatrix, camera, projectionMatrix, isFoggy, setupFog, tesselator, parentVector, getAxisRotation());
 			}
 		}
 	}
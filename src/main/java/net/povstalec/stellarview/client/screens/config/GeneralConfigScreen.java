@@ -6,6 +6,7 @@ import net.minecraft.client.gui.screens.Screen;
 import net.minecraft.network.chat.CommonComponents;
 import net.minecraft.network.chat.Component;
 import net.povstalec.stellarview.client.screens.config.ConfigList.BooleanConfigEntry;
+import net.povstalec.stellarview.client.screens.config.ConfigList.SliderConfigEntry;
 import net.povstalec.stellarview.common.config.GeneralConfig;
 
 import javax.annotation.Nullable;
@@ -47,6 +48,34 @@ public class GeneralConfigScreen extends Screen
 		this.configList.add(new BooleanConfigEntry(Component.translatable("gui.stellarview.bright_stars"), 
 				this.width, GeneralConfig.bright_stars));
 		
+		this.configList.add(new BooleanConfigEntry(Component.translatable("gui.stellarview.parallel_star_generation"), 
+				this.width, GeneralConfig.parallel_star_generation));
+		this.configList.add(new BooleanConfigEntry(Component.translatable("gui.stellarview.cache_star_fields"), 
+				this.width, GeneralConfig.cache_star_fields));
+		this.configList.add(new SliderConfigEntry(Component.translatable("gui.stellarview.star_cache_size").append(Component.literal(": ")),
+				Component.literal(" MB"),
+				this.width, GeneralConfig.star_cache_size));
+		this.configList.add(new BooleanConfigEntry(Component.translatable("gui.stellarview.instanced_stars"), 
+				this.width, GeneralConfig.instanced_stars));
+		this.configList.add(new BooleanConfigEntry(Component.translatable("gui.stellarview.compact_stars"), 
+				this.width, GeneralConfig.compact_stars));
+		this.configList.add(new BooleanConfigEntry(Component.translatable("gui.stellarview.shared_star_buffer"), 
+				this.width, GeneralConfig.shared_star_buffer));
+		this.configList.add(new BooleanConfigEntry(Component.translatable("gui.stellarview.procedural_stars"), 
+				this.width, GeneralConfig.procedural_stars));
+		this.configList.add(new BooleanConfigEntry(Component.translatable("gui.stellarview.static_star_projection"), 
+				this.width, GeneralConfig.static_star_projection));
+		this.configList.add(new BooleanConfigEntry(Component.translatable("gui.stellarview.star_level_of_detail"), 
+				this.width, GeneralConfig.star_level_of_detail));
+		this.configList.add(new SliderConfigEntry(Component.translatable("gui.stellarview.star_density").append(Component.literal(": ")),
+				Component.literal("\u0025"),
+				this.width, GeneralConfig.star_density));
+		this.configList.add(new BooleanConfigEntry(Component.translatable("gui.stellarview.batched_texture_layers"), 
+				this.width, GeneralConfig.batched_texture_layers));
+		this.configList.add(new SliderConfigEntry(Component.translatable("gui.stellarview.star_vram_budget").append(Component.literal(": ")),
+				Component.literal(" MB"),
+				this.width, GeneralConfig.star_vram_budget));
+		
 		this.addWidget(this.configList);
 
 		this.addRenderableWidget(Button.builder(CommonComponents.GUI_BACK, 
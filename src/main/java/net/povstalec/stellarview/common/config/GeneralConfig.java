@@ -11,6 +11,19 @@ public class GeneralConfig
 	public static StellarViewConfigValue.BooleanValue disable_stars;
 	public static StellarViewConfigValue.BooleanValue bright_stars;
 	
+	public static StellarViewConfigValue.BooleanValue parallel_star_generation;
+	public static StellarViewConfigValue.BooleanValue cache_star_fields;
+	public static StellarViewConfigValue.IntValue star_cache_size;
+	public static StellarViewConfigValue.BooleanValue instanced_stars;
+	public static StellarViewConfigValue.BooleanValue compact_stars;
+	public static StellarViewConfigValue.BooleanValue shared_star_buffer;
+	public static StellarViewConfigValue.BooleanValue procedural_stars;
+	public static StellarViewConfigValue.BooleanValue static_star_projection;
+	public static StellarViewConfigValue.BooleanValue star_level_of_detail;
+	public static StellarViewConfigValue.IntValue star_density;
+	public static StellarViewConfigValue.BooleanValue batched_texture_layers;
+	public static StellarViewConfigValue.IntValue star_vram_budget;
+	
 	public static void init(ModConfigSpec.Builder client)
 	{
 
@@ -27,5 +40,55 @@ public class GeneralConfig
 		bright_stars = new StellarViewConfigValue.BooleanValue(client, "client.bright_stars", 
 				true, 
 				"Makes Stars brighter");
+		
+		
+		
+		parallel_star_generation = new StellarViewConfigValue.BooleanValue(client, "client.parallel_star_generation", 
+				false, 
+				"Generates Stars on multiple threads, where each Star is randomized from the seed and its index. Star Fields will look different than with sequential generation, but always the same regardless of the number of threads");
+		
+		cache_star_fields = new StellarViewConfigValue.BooleanValue(client, "client.cache_star_fields", 
+				true, 
+				"Saves generated Stars to the stellarview/star_cache folder, so Star Fields don't need to be generated again after restarting the game or reloading resources");
+		
+		star_cache_size = new StellarViewConfigValue.IntValue(client, "client.star_cache_size", 
+				512, 16, 65536, 
+				"Megabytes the cached Stars may take up on disk, once there are more the Star Fields that have gone the longest without being loaded are deleted from the cache");
+		
+		instanced_stars = new StellarViewConfigValue.BooleanValue(client, "client.instanced_stars", 
+				false, 
+				"Uploads a single record per Star and draws Stars with instancing instead of four vertexes per Star, using roughly a quarter of the video memory. Requires OpenGL 3.3, falls back to regular Stars otherwise");
+		
+		compact_stars = new StellarViewConfigValue.BooleanValue(client, "client.compact_stars", 
+				false, 
+				"Stores instanced Stars in 16 bytes instead of 28 by rounding their positions to 65536 steps across each Star Field, which can visibly move Stars very close to the viewer in large Star Fields");
+		
+		shared_star_buffer = new StellarViewConfigValue.BooleanValue(client, "client.shared_star_buffer", 
+				false, 
+				"Places the regular Stars of all Star Fields into one large vertex buffer, so drawing different Star Fields doesn't require switching buffers. Instanced Stars keep their own buffers");
+		
+		procedural_stars = new StellarViewConfigValue.BooleanValue(client, "client.procedural_stars", 
+				false, 
+				"Derives every Star from its index in the vertex shader instead of generating and uploading Stars, so Star Fields need no vertex buffers and no generation time. Stars are placed like with parallel Star generation, but Star density only drops the last Stars of each Star Field and there is no level of detail");
+		
+		static_star_projection = new StellarViewConfigValue.BooleanValue(client, "client.static_star_projection", 
+				false, 
+				"Projects regular Stars onto the sky on the CPU once and draws them with a pass-through shader, projecting them again only once the view center has moved far enough for the nearest Star to visibly shift. Uses regular Stars instead of instanced ones");
+		
+		star_level_of_detail = new StellarViewConfigValue.BooleanValue(client, "client.star_level_of_detail", 
+				true, 
+				"Groups the Stars of each Star Field into an octree, skipping distant groups that would be invisible and drawing groups that are about a pixel across as a single point");
+		
+		star_density = new StellarViewConfigValue.IntValue(client, "client.star_density", 
+				100, 5, 100, 
+				"Percentage of the Stars of each Star Field that get drawn, the faintest Stars are left out first");
+		
+		batched_texture_layers = new StellarViewConfigValue.BooleanValue(client, "client.batched_texture_layers", 
+				true, 
+				"Collects the texture layers of planets, moons, stars and nebulae into a single vertex buffer each frame and draws them together instead of one at a time");
+		
+		star_vram_budget = new StellarViewConfigValue.IntValue(client, "client.star_vram_budget", 
+				1024, 64, 8192, 
+				"Megabytes of video memory the Stars of all Star Fields may use, Star Fields that haven't been seen in a while free their buffers when there are more and rebuild them once they come back into view");
 	}
 }
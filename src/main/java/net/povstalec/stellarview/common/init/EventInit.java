@@ -4,8 +4,10 @@ import net.minecraft.client.Minecraft;
 import net.neoforged.api.distmarker.Dist;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.client.event.CustomizeGuiOverlayEvent;
 import net.neoforged.neoforge.client.event.InputEvent;
 import net.povstalec.stellarview.StellarView;
+import net.povstalec.stellarview.client.resourcepack.StarFieldBudget;
 import net.povstalec.stellarview.client.screens.config.ConfigScreen;
 import net.povstalec.stellarview.common.util.KeyBindings;
 
@@ -20,4 +22,10 @@ public class EventInit
 		if(KeyBindings.OPEN_CONFIG_KEY.consumeClick())
 			minecraft.setScreen(new ConfigScreen(null));
 	}
+
+    @SubscribeEvent
+	public static void onDebugText(CustomizeGuiOverlayEvent.DebugText event)
+	{
+		event.getRight().addAll(StarFieldBudget.debugLines());
+	}
 }
@@ -0,0 +1,305 @@
+package net.povstalec.stellarview.common.util;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.BufferBuilder;
+import com.mojang.blaze3d.vertex.BufferUploader;
+import com.mojang.blaze3d.vertex.ByteBufferBuilder;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.MeshData;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import net.minecraft.client.renderer.ShaderInstance;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.util.Mth;
+import net.povstalec.stellarview.client.render.shader.StellarViewShaders;
+import net.povstalec.stellarview.client.resourcepack.SpaceTextureAtlas;
+import org.joml.Matrix4f;
+import org.joml.Vector3f;
+import org.lwjgl.opengl.GL11C;
+import org.lwjgl.opengl.GL15C;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Collects the textured quads of every texture layer rendered during a frame and draws them from a single dynamic vertex buffer.
+ * Quads that use the default blend function are drawn in the order they were added, since they cover whatever was drawn before them.
+ * Additive quads don't depend on their order, so consecutive additive quads get grouped by texture to save on draw calls
+ */
+public class BillboardBatch implements AutoCloseable
+{
+	private static final int VERTICES_PER_QUAD = 4;
+	private static final int INDICES_PER_QUAD = 6;
+	private static final int FLOATS_PER_VERTEX = 5; // Position and UV, the color is the same for the whole quad
+	private static final int FLOATS_PER_QUAD = VERTICES_PER_QUAD * FLOATS_PER_VERTEX;
+	
+	@Nullable
+	private static BillboardBatch batch;
+	
+	private final ByteBufferBuilder byteBufferBuilder = new ByteBufferBuilder(256 * VERTICES_PER_QUAD * DefaultVertexFormat.POSITION_TEX_COLOR.getVertexSize());
+	
+	private int vertexBufferId;
+	private int arrayObjectId;
+	private boolean formatSetup = false;
+	
+	private boolean active = false;
+	private int quads = 0;
+	private float[] vertices = new float[64 * FLOATS_PER_QUAD];
+	private int[] colors = new int[64];
+	private ResourceLocation[] textures = new ResourceLocation[64];
+	private boolean[] additive = new boolean[64];
+	
+	// Order in which the quads end up in the vertex buffer
+	private int[] order = new int[64];
+	private boolean[] placed = new boolean[64];
+	
+	private BillboardBatch()
+	{
+		RenderSystem.assertOnRenderThread();
+		this.vertexBufferId = GlStateManager._glGenBuffers();
+		this.arrayObjectId = GlStateManager._glGenVertexArrays();
+	}
+	
+	/**
+	 * @return The Billboard Batch shared by all texture layers (must be called on the render thread)
+	 */
+	public static BillboardBatch get()
+	{
+		if(batch == null)
+			batch = GpuResources.track(new BillboardBatch(), "Billboard Batch", GpuResources.Scope.PERSISTENT);
+		
+		return batch;
+	}
+	
+	/**
+	 * Starts collecting quads, until {@link #end()} is called every quad added with {@link #add(Matrix4f, Vector3f, Vector3f, Vector3f, Vector3f, UV.Quad, long, SpaceTextureAtlas.Region, float, float, float, float, boolean)}
+	 * gets drawn as part of the batch
+	 */
+	public void begin()
+	{
+		this.active = true;
+		this.quads = 0;
+	}
+	
+	public boolean isActive()
+	{
+		return this.active;
+	}
+	
+	/**
+	 * Adds a single quad to the batch
+	 * @param lastMatrix Pose the corners are transformed by
+	 * @param region Region of the texture the UVs get mapped onto
+	 * @param shouldBlend True if the quad is blended additively, false if it uses the default blend function
+	 */
+	public void add(Matrix4f lastMatrix, Vector3f corner00, Vector3f corner10, Vector3f corner11, Vector3f corner01, UV.Quad uv, long ticks,
+			SpaceTextureAtlas.Region region, float red, float green, float blue, float alpha, boolean shouldBlend)
+	{
+		if(this.quads == this.colors.length)
+			grow();
+		
+		int offset = this.quads * FLOATS_PER_QUAD;
+		offset = addVertex(lastMatrix, corner00, region.u(uv.topRight().u(ticks)), region.v(uv.topRight().v(ticks)), offset);
+		offset = addVertex(lastMatrix, corner10, region.u(uv.bottomRight().u(ticks)), region.v(uv.bottomRight().v(ticks)), offset);
+		offset = addVertex(lastMatrix, corner11, region.u(uv.bottomLeft().u(ticks)), region.v(uv.bottomLeft().v(ticks)), offset);
+		addVertex(lastMatrix, corner01, region.u(uv.topLeft().u(ticks)), region.v(uv.topLeft().v(ticks)), offset);
+		
+		this.colors[this.quads] = packColor(red, green, blue, alpha);
+		this.textures[this.quads] = region.texture();
+		this.additive[this.quads] = shouldBlend;
+		this.quads++;
+	}
+	
+	private int addVertex(Matrix4f lastMatrix, Vector3f corner, float u, float v, int offset)
+	{
+		// Same transformation as BufferBuilder.addVertex(Matrix4f, float, float, float)
+		Vector3f position = lastMatrix.transformPosition(corner.x, corner.y, corner.z, new Vector3f());
+		
+		this.vertices[offset] = position.x;
+		this.vertices[offset + 1] = position.y;
+		this.vertices[offset + 2] = position.z;
+		this.vertices[offset + 3] = u;
+		this.vertices[offset + 4] = v;
+		
+		return offset + FLOATS_PER_VERTEX;
+	}
+	
+	private static int packColor(float red, float green, float blue, float alpha)
+	{
+		return (int) (Mth.clamp(alpha, 0F, 1F) * 255) << 24 | (int) (Mth.clamp(red, 0F, 1F) * 255) << 16 |
+				(int) (Mth.clamp(green, 0F, 1F) * 255) << 8 | (int) (Mth.clamp(blue, 0F, 1F) * 255);
+	}
+	
+	private void grow()
+	{
+		int capacity = this.colors.length * 2;
+		
+		this.vertices = Arrays.copyOf(this.vertices, capacity * FLOATS_PER_QUAD);
+		this.colors = Arrays.copyOf(this.colors, capacity);
+		this.textures = Arrays.copyOf(this.textures, capacity);
+		this.additive = Arrays.copyOf(this.additive, capacity);
+		this.order = new int[capacity];
+		this.placed = new boolean[capacity];
+	}
+	
+	/**
+	 * Draws all quads added so far, must be called before anything else gets drawn over them
+	 */
+	public void flush()
+	{
+		if(this.quads == 0)
+			return;
+		
+		RenderSystem.assertOnRenderThread();
+		
+		sortQuads();
+		
+		BufferBuilder bufferBuilder = new BufferBuilder(this.byteBufferBuilder, VertexFormat.Mode.QUADS, DefaultVertexFormat.POSITION_TEX_COLOR);
+		for(int i = 0; i < this.quads; i++)
+		{
+			int quad = this.order[i];
+			int offset = quad * FLOATS_PER_QUAD;
+			
+			for(int vertex = 0; vertex < VERTICES_PER_QUAD; vertex++)
+			{
+				bufferBuilder.addVertex(this.vertices[offset], this.vertices[offset + 1], this.vertices[offset + 2])
+						.setUv(this.vertices[offset + 3], this.vertices[offset + 4]).setColor(this.colors[quad]);
+				offset += FLOATS_PER_VERTEX;
+			}
+		}
+		
+		try(MeshData mesh = bufferBuilder.buildOrThrow())
+		{
+			upload(mesh);
+		}
+		
+		draw();
+		
+		this.quads = 0;
+	}
+	
+	/**
+	 * Flushes the batch and stops collecting quads, anything added afterwards gets drawn immediately
+	 */
+	public void end()
+	{
+		flush();
+		this.active = false;
+	}
+	
+	/**
+	 * Keeps quads with the default blend function where they are, but groups runs of additive quads by texture
+	 */
+	private void sortQuads()
+	{
+		Arrays.fill(this.placed, 0, this.quads, false);
+		
+		int index = 0;
+		int start = 0;
+		while(start < this.quads)
+		{
+			int end = start + 1;
+			if(this.additive[start])
+			{
+				while(end < this.quads && this.additive[end])
+				{
+					end++;
+				}
+			}
+			
+			for(int i = start; i < end; i++)
+			{
+				if(this.placed[i])
+					continue;
+				
+				for(int j = i; j < end; j++)
+				{
+					if(!this.placed[j] && this.textures[j].equals(this.textures[i]))
+					{
+						this.order[index++] = j;
+						this.placed[j] = true;
+					}
+				}
+			}
+			
+			start = end;
+		}
+	}
+	
+	private void upload(MeshData mesh)
+	{
+		BufferUploader.invalidate();
+		GlStateManager._glBindVertexArray(this.arrayObjectId);
+		GlStateManager._glBindBuffer(GL15C.GL_ARRAY_BUFFER, this.vertexBufferId);
+		
+		if(!this.formatSetup)
+		{
+			DefaultVertexFormat.POSITION_TEX_COLOR.setupBufferState();
+			this.formatSetup = true;
+		}
+		
+		// Respecifying the storage every frame lets the driver hand out fresh memory instead of waiting for the previous frame's draws
+		GpuResources.setBytes(this, mesh.vertexBuffer().remaining());
+		RenderSystem.glBufferData(GL15C.GL_ARRAY_BUFFER, mesh.vertexBuffer(), GL15C.GL_DYNAMIC_DRAW);
+		
+		// The shared sequential index buffer may have been replaced by another draw, so it's bound again every frame
+		RenderSystem.getSequentialBuffer(VertexFormat.Mode.QUADS).bind(mesh.drawState().indexCount());
+	}
+	
+	private void draw()
+	{
+		// Matrices come from the Sky Frame uniform block, so only the texture has to be set for each group
+		ShaderInstance shaderInstance = StellarViewShaders.billboardShader();
+		VertexFormat.IndexType indexType = RenderSystem.getSequentialBuffer(VertexFormat.Mode.QUADS).type();
+		
+		int start = 0;
+		while(start < this.quads)
+		{
+			int first = this.order[start];
+			int end = start + 1;
+			while(end < this.quads && this.textures[this.order[end]].equals(this.textures[first]) && this.additive[this.order[end]] == this.additive[first])
+			{
+				end++;
+			}
+			
+			RenderSystem.setShaderTexture(0, this.textures[first]);
+			shaderInstance.setSampler("Sampler0", RenderSystem.getShaderTexture(0));
+			shaderInstance.apply();
+			
+			// Set after applying the shader, which may apply the blend mode from its own definition
+			if(this.additive[first])
+				RenderSystem.blendFuncSeparate(GlStateManager.SourceFactor.SRC_ALPHA, GlStateManager.DestFactor.ONE, GlStateManager.SourceFactor.ONE, GlStateManager.DestFactor.ZERO);
+			else
+				RenderSystem.defaultBlendFunc();
+			
+			GL11C.glDrawElements(GL11C.GL_TRIANGLES, (end - start) * INDICES_PER_QUAD, indexType.asGLType, (long) start * INDICES_PER_QUAD * indexType.bytes);
+			shaderInstance.clear();
+			
+			start = end;
+		}
+		
+		RenderSystem.defaultBlendFunc();
+		BufferUploader.invalidate();
+		GlStateManager._glBindVertexArray(0);
+	}
+	
+	@Override
+	public void close()
+	{
+		GpuResources.untrack(this);
+		
+		this.byteBufferBuilder.close();
+		
+		if(this.vertexBufferId >= 0)
+		{
+			RenderSystem.glDeleteBuffers(this.vertexBufferId);
+			this.vertexBufferId = -1;
+		}
+		
+		if(this.arrayObjectId >= 0)
+		{
+			RenderSystem.glDeleteVertexArrays(this.arrayObjectId);
+			this.arrayObjectId = -1;
+		}
+	}
+}
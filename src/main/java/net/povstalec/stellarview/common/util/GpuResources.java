@@ -0,0 +1,160 @@
+package net.povstalec.stellarview.common.util;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.povstalec.stellarview.StellarView;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps track of every GL buffer and vertex array the mod allocates, along with who owns it and how many bytes it holds.
+ * Resources that belong to the loaded universe get released all at once when resourcepacks are reloaded,
+ * so nothing from the previous universe can stay behind in video memory
+ */
+public final class GpuResources
+{
+	private static final IdentityHashMap<AutoCloseable, Resource> RESOURCES = new IdentityHashMap<>();
+	
+	/**
+	 * Starts tracking a resource (must be called on the render thread)
+	 * @param resource Resource that frees its GL objects when closed
+	 * @param owner Object the resource belongs to, resources are grouped by its name in reports
+	 * @param scope Whether the resource gets released on reload
+	 * @return The resource
+	 */
+	public static <T extends AutoCloseable> T track(T resource, Object owner, Scope scope)
+	{
+		RenderSystem.assertOnRenderThreadOrInit();
+		
+		RESOURCES.put(resource, new Resource(owner.toString(), scope));
+		
+		return resource;
+	}
+	
+	/**
+	 * @param bytes Number of bytes the resource currently holds in video memory
+	 */
+	public static void setBytes(AutoCloseable resource, long bytes)
+	{
+		Resource tracked = RESOURCES.get(resource);
+		if(tracked != null)
+			tracked.bytes = bytes;
+	}
+	
+	/**
+	 * @return Number of bytes the resource holds in video memory, 0 if it isn't tracked
+	 */
+	public static long getBytes(AutoCloseable resource)
+	{
+		Resource tracked = RESOURCES.get(resource);
+		
+		return tracked != null ? tracked.bytes : 0;
+	}
+	
+	/**
+	 * Stops tracking a resource, called once it has been closed
+	 */
+	public static void untrack(AutoCloseable resource)
+	{
+		RESOURCES.remove(resource);
+	}
+	
+	/**
+	 * Closes every resource that belongs to the loaded universe (must be called on the render thread)
+	 * @return Number of resources that were still alive and got released
+	 */
+	public static int releaseUniverse()
+	{
+		RenderSystem.assertOnRenderThreadOrInit();
+		
+		List<AutoCloseable> released = new ArrayList<>();
+		long releasedBytes = 0;
+		for(Map.Entry<AutoCloseable, Resource> entry : RESOURCES.entrySet())
+		{
+			if(entry.getValue().scope == Scope.UNIVERSE)
+			{
+				released.add(entry.getKey());
+				releasedBytes += entry.getValue().bytes;
+			}
+		}
+		
+		for(AutoCloseable resource : released)
+		{
+			String owner = RESOURCES.get(resource).owner;
+			try
+			{
+				resource.close();
+			}
+			catch(Exception e)
+			{
+				StellarView.LOGGER.error("Failed to release GPU resource owned by " + owner, e);
+			}
+			
+			RESOURCES.remove(resource);
+		}
+		
+		StellarView.LOGGER.debug("Released " + released.size() + " GPU resources holding " + releasedBytes + " bytes from the previous universe, " + liveCount() + " resources holding " + liveBytes() + " bytes remain");
+		
+		return released.size();
+	}
+	
+	/**
+	 * @return Number of tracked resources that haven't been closed yet
+	 */
+	public static int liveCount()
+	{
+		return RESOURCES.size();
+	}
+	
+	/**
+	 * @return Total number of bytes held by the tracked resources
+	 */
+	public static long liveBytes()
+	{
+		long bytes = 0;
+		for(Resource resource : RESOURCES.values())
+		{
+			bytes += resource.bytes;
+		}
+		
+		return bytes;
+	}
+	
+	/**
+	 * @return Total number of bytes held by the resources of each owner, sorted by the owner's name
+	 */
+	public static Map<String, Long> bytesByOwner()
+	{
+		Map<String, Long> bytesByOwner = new TreeMap<>();
+		for(Resource resource : RESOURCES.values())
+		{
+			bytesByOwner.merge(resource.owner, resource.bytes, Long::sum);
+		}
+		
+		return bytesByOwner;
+	}
+	
+	
+	
+	public enum Scope
+	{
+		UNIVERSE, // Created for the objects of the loaded resourcepacks, released on reload
+		PERSISTENT // Shared by everything and kept for the whole session
+	}
+	
+	private static class Resource
+	{
+		private final String owner;
+		private final Scope scope;
+		private long bytes = 0;
+		
+		private Resource(String owner, Scope scope)
+		{
+			this.owner = owner;
+			this.scope = scope;
+		}
+	}
+}
@@ -0,0 +1,333 @@
+package net.povstalec.stellarview.common.util;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.BufferUploader;
+import net.minecraft.client.renderer.ShaderInstance;
+import net.povstalec.stellarview.client.render.shader.StarShaderInstance;
+import net.povstalec.stellarview.client.resourcepack.StarInfo;
+import net.povstalec.stellarview.client.resourcepack.objects.StarField;
+import net.povstalec.stellarview.client.resourcepack.objects.StarLike;
+import org.joml.Quaternionf;
+import org.joml.Vector3f;
+import org.lwjgl.opengl.GL11C;
+import org.lwjgl.opengl.GL15C;
+import org.lwjgl.opengl.GL31C;
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Star Field that is never generated on the CPU. The vertex shader (shaders/core/rendertype_star_procedural.vsh) derives every Star from its index
+ * with the same {@link StarRandom} hash and distribution as hashed Star generation, so the only thing uploaded is a small std140 uniform block
+ * with the parameters of the Star Field.
+ * <p>
+ * {@link #referencePosition(int)} follows the shader line by line in float math, so the output of the shader can be checked without a GPU
+ */
+public class ProceduralStars implements AutoCloseable
+{
+	public static final String BLOCK_NAME = "ProceduralStarField";
+	public static final int BINDING = 4;
+	
+	// Array sizes of the uniform block, Star Fields with more Spiral Arms or Star Types can't be drawn procedurally
+	public static final int MAX_SPIRAL_ARMS = 8;
+	public static final int MAX_STAR_TYPES = 16;
+	
+	private static final int VEC4_BYTES = 4 * Float.BYTES;
+	private static final int COUNTS_OFFSET = 0;
+	private static final int TYPES_OFFSET = COUNTS_OFFSET + VEC4_BYTES;
+	private static final int SHAPE_OFFSET = TYPES_OFFSET + VEC4_BYTES;
+	private static final int ROTATION_OFFSET = SHAPE_OFFSET + VEC4_BYTES;
+	private static final int ARM_SHAPES_OFFSET = ROTATION_OFFSET + VEC4_BYTES;
+	private static final int ARM_RANGES_OFFSET = ARM_SHAPES_OFFSET + MAX_SPIRAL_ARMS * VEC4_BYTES;
+	private static final int TYPE_COLORS_OFFSET = ARM_RANGES_OFFSET + MAX_SPIRAL_ARMS * VEC4_BYTES;
+	private static final int TYPE_RANGES_OFFSET = TYPE_COLORS_OFFSET + MAX_STAR_TYPES * VEC4_BYTES;
+	private static final int SIZE = TYPE_RANGES_OFFSET + MAX_STAR_TYPES * VEC4_BYTES;
+	
+	private static final float TWO_PI = (float) (Math.PI * 2.0D);
+	
+	// Counter of the Star random sequence that decides whether a Star is kept, after the position, type, size and rotation
+	private static final int KEEP_COUNTER = 6;
+	
+	private static int emptyArrayObjectId = -1;
+	private static final AutoCloseable EMPTY_ARRAY_RESOURCE = ProceduralStars::closeEmptyArray;
+	
+	private final Object owner;
+	private int bufferId = -1;
+	
+	private final long seed;
+	private final int discStars;
+	private final int totalStars;
+	private final boolean clumpStarsInCenter;
+	private final float xStretch;
+	private final float yStretch;
+	private final float zStretch;
+	private final float diameter;
+	private final float sizeMultiplier;
+	private final Quaternionf rotation;
+	
+	private final List<StarField.SpiralArm> spiralArms;
+	private final StarInfo starInfo;
+	
+	public ProceduralStars(StarField starField)
+	{
+		this.owner = starField;
+		
+		this.seed = starField.getSeed();
+		this.discStars = starField.getStars();
+		this.clumpStarsInCenter = starField.clumpStarsInCenter();
+		this.xStretch = (float) starField.xStretch();
+		this.yStretch = (float) starField.yStretch();
+		this.zStretch = (float) starField.zStretch();
+		this.diameter = starField.getDiameter();
+		this.sizeMultiplier = (float) (starField.getDiameter() / 30D);
+		this.rotation = new Quaternionf(starField.getAxisRotation().quaterniond());
+		
+		this.spiralArms = List.copyOf(starField.getSpiralArms());
+		this.starInfo = starField.getStarInfo();
+		
+		int stars = discStars;
+		for(StarField.SpiralArm arm : spiralArms)
+		{
+			stars += arm.armStars();
+		}
+		this.totalStars = stars;
+	}
+	
+	/**
+	 * @return True if all Spiral Arms and Star Types of the Star Field fit into the uniform block
+	 */
+	public static boolean supports(StarField starField)
+	{
+		return starField.getSpiralArms().size() <= MAX_SPIRAL_ARMS && starField.getStarInfo().getStarTypes().size() <= MAX_STAR_TYPES;
+	}
+	
+	/**
+	 * Points the uniform block of the shader at the binding the parameters of the drawn Star Field get bound to, shaders without the block are left alone
+	 */
+	public static void bindBlock(ShaderInstance shaderInstance)
+	{
+		RenderSystem.assertOnRenderThread();
+		
+		int blockIndex = GL31C.glGetUniformBlockIndex(shaderInstance.getId(), BLOCK_NAME);
+		if(blockIndex != GL31C.GL_INVALID_INDEX)
+			GL31C.glUniformBlockBinding(shaderInstance.getId(), blockIndex, BINDING);
+	}
+	
+	public int getTotalStars()
+	{
+		return totalStars;
+	}
+	
+	//============================================================================================
+	//*****************************************Uploading******************************************
+	//============================================================================================
+	
+	private void upload()
+	{
+		bufferId = GlStateManager._glGenBuffers();
+		GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, bufferId);
+		
+		try(MemoryStack stack = MemoryStack.stackPush())
+		{
+			ByteBuffer buffer = stack.calloc(SIZE);
+			
+			List<StarLike.StarType> starTypes = starInfo.getStarTypes();
+			
+			// Ints don't care whether the shader reads them as signed or unsigned, so the seed gets through unchanged
+			buffer.putInt(COUNTS_OFFSET, (int) seed);
+			buffer.putInt(COUNTS_OFFSET + 4, (int) (seed >>> 32));
+			buffer.putInt(COUNTS_OFFSET + 8, discStars);
+			buffer.putInt(COUNTS_OFFSET + 12, spiralArms.size());
+			
+			buffer.putInt(TYPES_OFFSET, starTypes.size());
+			buffer.putInt(TYPES_OFFSET + 4, starInfo.getTotalWeight());
+			buffer.putInt(TYPES_OFFSET + 8, clumpStarsInCenter ? 1 : 0);
+			
+			buffer.putFloat(SHAPE_OFFSET, xStretch);
+			buffer.putFloat(SHAPE_OFFSET + 4, yStretch);
+			buffer.putFloat(SHAPE_OFFSET + 8, zStretch);
+			buffer.putFloat(SHAPE_OFFSET + 12, diameter);
+			
+			rotation.get(ROTATION_OFFSET, buffer);
+			
+			int firstStar = discStars;
+			for(int i = 0; i < spiralArms.size(); i++)
+			{
+				StarField.SpiralArm arm = spiralArms.get(i);
+				
+				int offset = ARM_SHAPES_OFFSET + i * VEC4_BYTES;
+				buffer.putFloat(offset, (float) arm.armRotation());
+				buffer.putFloat(offset + 4, (float) arm.armLength());
+				buffer.putFloat(offset + 8, (float) arm.armThickness());
+				buffer.putFloat(offset + 12, arm.clumpStarsInCenter() ? 1F : 0F);
+				
+				offset = ARM_RANGES_OFFSET + i * VEC4_BYTES;
+				buffer.putInt(offset, firstStar);
+				buffer.putInt(offset + 4, arm.armStars());
+				
+				firstStar += arm.armStars();
+			}
+			
+			for(int i = 0; i < starTypes.size(); i++)
+			{
+				StarLike.StarType starType = starTypes.get(i);
+				
+				int offset = TYPE_COLORS_OFFSET + i * VEC4_BYTES;
+				buffer.putFloat(offset, starType.getRGB().red() / 255F);
+				buffer.putFloat(offset + 4, starType.getRGB().green() / 255F);
+				buffer.putFloat(offset + 8, starType.getRGB().blue() / 255F);
+				buffer.putFloat(offset + 12, starType.getWeight());
+				
+				offset = TYPE_RANGES_OFFSET + i * VEC4_BYTES;
+				buffer.putFloat(offset, starType.getMinSize());
+				buffer.putFloat(offset + 4, starType.getMaxSize());
+				buffer.putFloat(offset + 8, starType.getMinBrightness());
+				buffer.putFloat(offset + 12, starType.getMaxBrightness());
+			}
+			
+			GL15C.glBufferData(GL31C.GL_UNIFORM_BUFFER, buffer, GL15C.GL_STATIC_DRAW);
+		}
+		
+		GlStateManager._glBindBuffer(GL31C.GL_UNIFORM_BUFFER, 0);
+		GpuResources.setBytes(GpuResources.track(this, "Procedural Stars of " + owner, GpuResources.Scope.UNIVERSE), SIZE);
+	}
+	
+	//============================================================================================
+	//******************************************Drawing*******************************************
+	//============================================================================================
+	
+	/**
+	 * Draws the Stars of the Star Field, with the matrices and brightness of the current frame coming from {@link net.povstalec.stellarview.client.render.shader.SkyFrameUniforms}
+	 * @param relativeSpacePos Position of the view center relative to the Star Field
+	 * @param keepFraction Share of the Stars to draw, see {@link #isKept(int, float)}
+	 */
+	public void drawWithShader(SpaceCoords relativeSpacePos, StarShaderInstance shaderInstance, float keepFraction)
+	{
+		RenderSystem.assertOnRenderThread();
+		
+		if(keepFraction <= 0F)
+			return;
+		
+		if(bufferId < 0)
+			upload();
+		
+		if(shaderInstance.RELATIVE_SPACE_LY != null)
+			shaderInstance.RELATIVE_SPACE_LY.set((float) relativeSpacePos.x().ly(), (float) relativeSpacePos.y().ly(), (float) relativeSpacePos.z().ly());
+		
+		if(shaderInstance.RELATIVE_SPACE_KM != null)
+			shaderInstance.RELATIVE_SPACE_KM.set((float) relativeSpacePos.x().km(), (float) relativeSpacePos.y().km(), (float) relativeSpacePos.z().km());
+		
+		if(shaderInstance.STAR_KEEP_FRACTION != null)
+			shaderInstance.STAR_KEEP_FRACTION.set(keepFraction);
+		
+		// The shader has no attributes, but core profile still needs some vertex array to be bound when drawing
+		if(emptyArrayObjectId < 0)
+		{
+			emptyArrayObjectId = GlStateManager._glGenVertexArrays();
+			GpuResources.track(EMPTY_ARRAY_RESOURCE, "Procedural Stars Vertex Array", GpuResources.Scope.PERSISTENT);
+		}
+		
+		BufferUploader.invalidate();
+		GlStateManager._glBindVertexArray(emptyArrayObjectId);
+		GL31C.glBindBufferBase(GL31C.GL_UNIFORM_BUFFER, BINDING, bufferId);
+		
+		shaderInstance.apply();
+		// Each Star is an instance, the shader turns gl_InstanceID into the index of the Star and gl_VertexID into one of its corners
+		GL31C.glDrawArraysInstanced(GL11C.GL_TRIANGLE_STRIP, 0, 4, totalStars);
+		shaderInstance.clear();
+	}
+	
+	private static void closeEmptyArray()
+	{
+		GpuResources.untrack(EMPTY_ARRAY_RESOURCE);
+		
+		if(emptyArrayObjectId >= 0)
+		{
+			RenderSystem.glDeleteVertexArrays(emptyArrayObjectId);
+			emptyArrayObjectId = -1;
+		}
+	}
+	
+	@Override
+	public void close()
+	{
+		GpuResources.untrack(this);
+		
+		if(bufferId >= 0)
+		{
+			RenderSystem.glDeleteBuffers(bufferId);
+			bufferId = -1;
+		}
+	}
+	
+	//============================================================================================
+	//*****************************************Reference******************************************
+	//============================================================================================
+	
+	/**
+	 * CPU version of the density check of the procedural Star shader. Every Star gets a random number of its own that is compared to the keep fraction,
+	 * so lowering the density thins out the disc and every Spiral Arm evenly instead of leaving out whole Spiral Arms at the end of the index range
+	 * @param index Index of the Star
+	 * @param keepFraction Share of the Stars that are kept
+	 * @return True if the Star is drawn
+	 */
+	public boolean isKept(int index, float keepFraction)
+	{
+		return StarRandom.toFloat(StarRandom.starState(seed, index), KEEP_COUNTER) < keepFraction;
+	}
+	
+	/**
+	 * CPU version of the position math of the procedural Star shader, written the same way (including float precision) so both can be compared
+	 * @param index Index of the Star, Spiral Arm Stars come after the Stars of the disc just like in generated Star Fields
+	 * @return Position of the Star in light years relative to the center of the Star Field
+	 */
+	public Vector3f referencePosition(int index)
+	{
+		int state = StarRandom.starState(seed, index);
+		float distanceRandom = StarRandom.toFloat(state, 0);
+		float thetaRandom = StarRandom.toFloat(state, 1);
+		float phiRandom = StarRandom.toFloat(state, 2);
+		
+		Vector3f position;
+		if(index < discStars)
+		{
+			float distance = clumpStarsInCenter ? distanceRandom : (float) Math.cbrt(distanceRandom);
+			position = spherical(distance * diameter, thetaRandom * TWO_PI, (float) Math.acos(2F * phiRandom - 1F));
+			position.mul(xStretch, yStretch, zStretch);
+		}
+		else
+		{
+			int i = index - discStars;
+			StarField.SpiralArm arm = spiralArms.get(0);
+			for(int armIndex = 0; armIndex < spiralArms.size() - 1 && i >= arm.armStars(); armIndex++)
+			{
+				i -= arm.armStars();
+				arm = spiralArms.get(armIndex + 1);
+			}
+			
+			float armRotation = (float) arm.armRotation();
+			float armThickness = (float) arm.armThickness();
+			
+			float progress = (float) i / arm.armStars();
+			float phi = (float) arm.armLength() * (float) Math.PI * progress - armRotation;
+			float r = 5F * (phi + armRotation);
+			
+			float distance = arm.clumpStarsInCenter() ? distanceRandom : (float) Math.cbrt(distanceRandom);
+			Vector3f cartesian = spherical(distance * armThickness, thetaRandom * TWO_PI, (float) Math.acos(2F * phiRandom - 1F));
+			
+			float spread = armThickness / (progress * 1.5F);
+			position = new Vector3f(r * (float) Math.cos(phi) + cartesian.x * spread, cartesian.y * spread, r * (float) Math.sin(phi) + cartesian.z * spread);
+			position.mul(sizeMultiplier);
+		}
+		
+		return rotation.transform(position);
+	}
+	
+	private static Vector3f spherical(float r, float theta, float phi)
+	{
+		float sinPhi = (float) Math.sin(phi);
+		return new Vector3f(r * sinPhi * (float) Math.sin(theta), r * (float) Math.cos(phi), r * sinPhi * (float) Math.cos(theta));
+	}
+}
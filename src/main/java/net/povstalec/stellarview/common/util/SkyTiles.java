@@ -0,0 +1,396 @@
+package net.povstalec.stellarview.common.util;
+
+import org.joml.FrustumIntersection;
+
+import java.util.Arrays;
+
+/**
+ * Splits the sky around a reference point into cube face tiles, so that Stars can be sorted by tile and each tile
+ * drawn as a contiguous range of Stars. Only plain math is used, none of it needs a GL context.
+ * <p>
+ * Every face of the cube is divided into {@link #RESOLUTION} x {@link #RESOLUTION} tiles, tiles are numbered face by face, row by row.
+ * Each tile is bounded by a cone around its center direction, which is what gets tested against the view frustum.
+ * <p>
+ * Inside each tile the Stars are further sorted into {@link #BANDS} magnitude bands, brightest first, where each band holds
+ * roughly the same share of the Star Field. Drawing only the brightest bands is then just a shorter range for every tile.
+ */
+public final class SkyTiles
+{
+	public static final int RESOLUTION = 4;
+	public static final int FACES = 6;
+	public static final int TILES = FACES * RESOLUTION * RESOLUTION;
+	public static final int BANDS = 8;
+	public static final int SEGMENTS = TILES * BANDS;
+	
+	/**
+	 * Distance at which Stars are drawn, same as DEFAULT_DISTANCE in rendertype_star.vsh
+	 */
+	public static final float SKY_DISTANCE = 100F;
+	
+	private static final float MIN_STAR_SIZE = 0.04F; // Same as the minimum in clampStar of rendertype_star.vsh
+	
+	/**
+	 * Alpha below which a Star drawn over the daytime sky can't be made out anymore
+	 */
+	public static final float MIN_VISIBLE_ALPHA = 0.02F;
+	
+	private static final float[] TILE_CENTERS = new float[TILES * 3];
+	private static final float[] TILE_ANGLES = new float[TILES];
+	
+	static
+	{
+		float[] direction = new float[3];
+		float[] corner = new float[3];
+		
+		for(int face = 0; face < FACES; face++)
+		{
+			for(int v = 0; v < RESOLUTION; v++)
+			{
+				for(int u = 0; u < RESOLUTION; u++)
+				{
+					int tile = tileIndex(face, u, v);
+					
+					faceDirection(face, cellEdge(u) + cellSize() / 2, cellEdge(v) + cellSize() / 2, direction);
+					System.arraycopy(direction, 0, TILE_CENTERS, tile * 3, 3);
+					
+					// The corners of a tile are the points furthest away from its center
+					float minCos = 1F;
+					for(int i = 0; i < 4; i++)
+					{
+						faceDirection(face, cellEdge(u + (i & 1)), cellEdge(v + (i >> 1)), corner);
+						minCos = Math.min(minCos, direction[0] * corner[0] + direction[1] * corner[1] + direction[2] * corner[2]);
+					}
+					
+					TILE_ANGLES[tile] = (float) Math.acos(minCos);
+				}
+			}
+		}
+	}
+	
+	private final float referenceX;
+	private final float referenceY;
+	private final float referenceZ;
+	
+	private final int[] segmentStarts = new int[SEGMENTS + 1]; // Every tile is split into one segment per magnitude band
+	private final float[] bandThresholds = new float[BANDS - 1]; // Smallest magnitude of each band except the last one, descending
+	private final int[] bandStarts = new int[BANDS + 1]; // Number of Stars in all brighter bands
+	private final float[] dimmerMaxAlphas = new float[BANDS]; // Largest alpha of the band and all dimmer bands
+	private final float[] minDistances = new float[TILES]; // Distance from the reference to the closest Star of each tile
+	private final float margin; // Largest distance a corner of any Star can reach away from its center on the sky
+	
+	/**
+	 * Classifies every Star by the tile it is seen in from the reference point
+	 * @param starData Stars to classify
+	 * @param referenceX X coordinate of the reference point, in the same space as the Star coordinates
+	 * @param referenceY Y coordinate of the reference point
+	 * @param referenceZ Z coordinate of the reference point
+	 */
+	public SkyTiles(StarData starData, float referenceX, float referenceY, float referenceZ)
+	{
+		this.referenceX = referenceX;
+		this.referenceY = referenceY;
+		this.referenceZ = referenceZ;
+		
+		Arrays.fill(minDistances, Float.POSITIVE_INFINITY);
+		
+		// Band thresholds are picked so that every band holds the same share of Stars
+		int stars = starData.getStars();
+		float[] magnitudes = new float[stars];
+		for(int i = 0; i < stars; i++)
+		{
+			magnitudes[i] = magnitude(starData, i);
+		}
+		Arrays.sort(magnitudes);
+		for(int band = 0; band < BANDS - 1; band++)
+		{
+			bandThresholds[band] = stars > 0 ? magnitudes[Math.min(stars - (int) ((long) (band + 1) * stars / BANDS), stars - 1)] : 0F;
+		}
+		
+		float maxSize = MIN_STAR_SIZE;
+		for(int i = 0; i < stars; i++)
+		{
+			float x = starData.getX(i) - referenceX;
+			float y = starData.getY(i) - referenceY;
+			float z = starData.getZ(i) - referenceZ;
+			
+			int tile = tile(x, y, z);
+			int band = band(magnitude(starData, i));
+			segmentStarts[tile * BANDS + band + 1]++;
+			bandStarts[band + 1]++;
+			dimmerMaxAlphas[band] = Math.max(dimmerMaxAlphas[band], (starData.getARGB(i) >>> 24) / 255F);
+			minDistances[tile] = Math.min(minDistances[tile], (float) Math.sqrt(x * x + y * y + z * z));
+			
+			maxSize = Math.max(maxSize, starData.getSize(i));
+		}
+		
+		for(int segment = 0; segment < SEGMENTS; segment++)
+		{
+			segmentStarts[segment + 1] += segmentStarts[segment];
+		}
+		
+		for(int band = 0; band < BANDS; band++)
+		{
+			bandStarts[band + 1] += bandStarts[band];
+		}
+		
+		for(int band = BANDS - 2; band >= 0; band--)
+		{
+			dimmerMaxAlphas[band] = Math.max(dimmerMaxAlphas[band], dimmerMaxAlphas[band + 1]);
+		}
+		
+		// Height and width of a corner are both at most the size of the Star, so the corner is at most sqrt(2) times the size away
+		this.margin = maxSize * (float) Math.sqrt(2);
+	}
+	
+	/**
+	 * @param x X component of the direction
+	 * @param y Y component of the direction
+	 * @param z Z component of the direction
+	 * @return Tile the direction points into
+	 */
+	public static int tile(float x, float y, float z)
+	{
+		float absX = Math.abs(x);
+		float absY = Math.abs(y);
+		float absZ = Math.abs(z);
+		
+		if(absX >= absY && absX >= absZ)
+			return tileIndex(x >= 0 ? 0 : 1, cell(y / absX), cell(z / absX));
+		else if(absY >= absZ)
+			return tileIndex(y >= 0 ? 2 : 3, cell(x / absY), cell(z / absY));
+		else
+			return tileIndex(z >= 0 ? 4 : 5, cell(x / absZ), cell(y / absZ));
+	}
+	
+	/**
+	 * @return How much the Star stands out on the sky, brighter and larger Stars stand out more
+	 */
+	public static float magnitude(StarData starData, int i)
+	{
+		return (starData.getARGB(i) >>> 24) * starData.getSize(i);
+	}
+	
+	/**
+	 * @param magnitude Magnitude of a Star, see {@link #magnitude(StarData, int)}
+	 * @return Magnitude band of the Star, 0 being the brightest
+	 */
+	public int band(float magnitude)
+	{
+		int band = 0;
+		while(band < BANDS - 1 && magnitude < bandThresholds[band])
+		{
+			band++;
+		}
+		
+		return band;
+	}
+	
+	private static int tileIndex(int face, int u, int v)
+	{
+		return (face * RESOLUTION + v) * RESOLUTION + u;
+	}
+	
+	private static int cell(float coordinate)
+	{
+		int cell = (int) ((coordinate + 1F) * 0.5F * RESOLUTION);
+		
+		// Catches both the +1 edge and the NaN of a Star sitting right on the reference point
+		return cell >= RESOLUTION ? RESOLUTION - 1 : Math.max(cell, 0);
+	}
+	
+	private static float cellSize()
+	{
+		return 2F / RESOLUTION;
+	}
+	
+	private static float cellEdge(int cell)
+	{
+		return -1F + cell * cellSize();
+	}
+	
+	private static void faceDirection(int face, float u, float v, float[] direction)
+	{
+		float sign = (face & 1) == 0 ? 1F : -1F;
+		
+		int axis = face >> 1;
+		if(axis == 0)
+		{
+			direction[0] = sign;
+			direction[1] = u;
+			direction[2] = v;
+		}
+		else if(axis == 1)
+		{
+			direction[0] = u;
+			direction[1] = sign;
+			direction[2] = v;
+		}
+		else
+		{
+			direction[0] = u;
+			direction[1] = v;
+			direction[2] = sign;
+		}
+		
+		float length = (float) Math.sqrt(direction[0] * direction[0] + direction[1] * direction[1] + direction[2] * direction[2]);
+		direction[0] /= length;
+		direction[1] /= length;
+		direction[2] /= length;
+	}
+	
+	/**
+	 * @param starData Stars this was created from
+	 * @return Copy of the Star Data with the Stars sorted by tile and then by magnitude band, which makes every tile and every band inside it a contiguous range
+	 */
+	public StarData sort(StarData starData)
+	{
+		int[] next = Arrays.copyOf(segmentStarts, SEGMENTS);
+		int[] order = new int[starData.getStars()];
+		
+		for(int i = 0; i < starData.getStars(); i++)
+		{
+			int tile = tile(starData.getX(i) - referenceX, starData.getY(i) - referenceY, starData.getZ(i) - referenceZ);
+			order[next[tile * BANDS + band(magnitude(starData, i))]++] = i;
+		}
+		
+		return starData.reorder(order);
+	}
+	
+	public int tileStart(int tile)
+	{
+		return segmentStarts[tile * BANDS];
+	}
+	
+	public int tileEnd(int tile)
+	{
+		return segmentStarts[(tile + 1) * BANDS];
+	}
+	
+	public int segmentStart(int tile, int band)
+	{
+		return segmentStarts[tile * BANDS + band];
+	}
+	
+	public int segmentEnd(int tile, int band)
+	{
+		return segmentStarts[tile * BANDS + band + 1];
+	}
+	
+	/**
+	 * Picks how many of the brightest magnitude bands need to be drawn
+	 * @param density Share of Stars that should be drawn, from 0 to 1
+	 * @param starBrightness Brightness of the Stars, see {@link net.povstalec.stellarview.client.resourcepack.objects.StarLike#getStarBrightness}
+	 * @return Number of bands to draw, starting with the brightest one
+	 */
+	public int visibleBands(float density, float starBrightness)
+	{
+		int stars = bandStarts[BANDS];
+		
+		int bands = 0;
+		while(bands < BANDS && bandStarts[bands] < density * stars)
+		{
+			bands++;
+		}
+		
+		// During the day dimmer bands would be too faint to see anyway
+		while(bands > 0 && dimmerMaxAlphas[bands - 1] * starBrightness < MIN_VISIBLE_ALPHA)
+		{
+			bands--;
+		}
+		
+		return bands;
+	}
+	
+	/**
+	 * Works out how much of the last band picked by {@link #visibleBands(float, float)} it takes to draw the share of Stars,
+	 * so the density isn't rounded up to whole bands
+	 * @param density Share of Stars that should be drawn, from 0 to 1
+	 * @param bands Number of bands to draw
+	 * @return Share of the Stars of the last band to draw, from 0 to 1
+	 */
+	public float lastBandShare(float density, int bands)
+	{
+		if(bands == 0)
+			return 0F;
+		
+		int bandStart = bandStarts[bands - 1];
+		int bandStars = bandStarts[bands] - bandStart;
+		if(bandStars == 0)
+			return 1F;
+		
+		return Math.min(Math.max((density * bandStarts[BANDS] - bandStart) / bandStars, 0F), 1F);
+	}
+	
+	/**
+	 * @param start First Star of the range
+	 * @param end Index after the last Star of the range
+	 * @param share Share of the range to keep, from 0 to 1
+	 * @return Index after the last Star of the range once it's cut down to the share
+	 */
+	public static int trimmedEnd(int start, int end, float share)
+	{
+		return start + Math.round((end - start) * share);
+	}
+	
+	/**
+	 * Checks whether any Star of the tile could be inside the frustum.
+	 * Moving away from the reference point shifts every Star on the sky, by at most asin(drift / distance to the Star),
+	 * so the cone of the tile is widened by the shift of its closest Star
+	 * @param tile Tile to check
+	 * @param frustum Frustum in the space Stars are drawn in, the viewer is at the origin
+	 * @param drift Distance between the current viewer position and the reference point
+	 * @return True if the tile needs to be drawn
+	 */
+	public boolean isVisible(int tile, FrustumIntersection frustum, float drift)
+	{
+		if(drift >= minDistances[tile])
+			return true;
+		
+		double angle = TILE_ANGLES[tile] + Math.asin(drift / minDistances[tile]);
+		if(angle >= Math.PI / 2)
+			return true;
+		
+		// Sphere around the cap of the cone at sky distance
+		float distance = SKY_DISTANCE * (float) Math.cos(angle);
+		float radius = SKY_DISTANCE * (float) Math.sin(angle) + margin;
+		
+		int center = tile * 3;
+		return frustum.testSphere(TILE_CENTERS[center] * distance, TILE_CENTERS[center + 1] * distance, TILE_CENTERS[center + 2] * distance, radius);
+	}
+	
+	/**
+	 * @return Distance between the viewer and the reference point the Stars were classified from
+	 */
+	public float drift(float viewerX, float viewerY, float viewerZ)
+	{
+		float driftX = viewerX - referenceX;
+		float driftY = viewerY - referenceY;
+		float driftZ = viewerZ - referenceZ;
+		
+		return (float) Math.sqrt(driftX * driftX + driftY * driftY + driftZ * driftZ);
+	}
+	
+	/**
+	 * Collects the ranges of Stars which need to be drawn, neighboring tiles are merged into a single range
+	 * @param frustum Frustum in the space Stars are drawn in, the viewer is at the origin
+	 * @param viewerX X coordinate of the viewer, in the same space as the Star coordinates
+	 * @param viewerY Y coordinate of the viewer
+	 * @param viewerZ Z coordinate of the viewer
+	 * @param bands Number of the brightest magnitude bands to draw, see {@link #visibleBands(float, float)}
+	 * @param lastBandShare Share of the Stars of the last band to draw, see {@link #lastBandShare(float, int)}
+	 * @param ranges Receives the ranges of Stars to draw
+	 */
+	public void visibleRanges(FrustumIntersection frustum, float viewerX, float viewerY, float viewerZ, int bands, float lastBandShare, StarRanges ranges)
+	{
+		float drift = drift(viewerX, viewerY, viewerZ);
+		
+		for(int tile = 0; tile < TILES; tile++)
+		{
+			int start = tileStart(tile);
+			int end = bands > 0 ? trimmedEnd(segmentStart(tile, bands - 1), segmentEnd(tile, bands - 1), lastBandShare) : start;
+			
+			if(start != end && isVisible(tile, frustum, drift))
+				ranges.add(start, end);
+		}
+	}
+}
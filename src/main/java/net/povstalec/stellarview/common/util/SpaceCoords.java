@@ -75,9 +75,9 @@ public class SpaceCoords
 	 */
 	public double distanceSquared(SpaceCoords other)
 	{
-		double xDistance = this.x.sub(other.x).toKm();
-		double yDistance = this.y.sub(other.y).toKm();
-		double zDistance = this.z.sub(other.z).toKm();
+		double xDistance = this.x.subKm(other.x);
+		double yDistance = this.y.subKm(other.y);
+		double zDistance = this.z.subKm(other.z);
 		
 		return xDistance * xDistance + yDistance * yDistance + zDistance * zDistance;
 	}
@@ -101,6 +101,16 @@ public class SpaceCoords
 		return distance(NULL_COORDS);
 	}
 	
+	/**
+	 * @param origin The coordinates the position is measured from
+	 * @param dest Vector the position is written to
+	 * @return Position of these coordinates relative to the origin in km, without creating any intermediate coordinates
+	 */
+	public Vector3d relativeKm(SpaceCoords origin, Vector3d dest)
+	{
+		return dest.set(this.x.subKm(origin.x), this.y.subKm(origin.y), this.z.subKm(origin.z));
+	}
+	
 	public static Quaterniond getQuaterniond(ClientLevel level, ViewCenter viewCenter, float partialTicks)
 	{
 		Quaterniond q = new Quaterniond();
@@ -128,8 +138,7 @@ public class SpaceCoords
 	 */
 	public SphericalCoords skyPosition(ClientLevel level, ViewCenter viewCenter, float radius, float partialTicks)
 	{
-		SpaceCoords viewCenterCoords = viewCenter.getCoords();
-		Vector3d positionVector = new Vector3d(this.x.sub(viewCenterCoords.x).toKm(), this.y.sub(viewCenterCoords.y).toKm(), this.z.sub(viewCenterCoords.z).toKm());
+		Vector3d positionVector = relativeKm(viewCenter.getCoords(), new Vector3d());
 		
 		Quaterniond q = getQuaterniond(level, viewCenter, partialTicks);
 		q.transform(positionVector);
@@ -143,8 +152,7 @@ public class SpaceCoords
 	 */
 	public SphericalCoords skyPosition(ClientLevel level, ViewCenter viewCenter, float partialTicks)
 	{
-		SpaceCoords viewCenterCoords = viewCenter.getCoords();
-		Vector3d positionVector = new Vector3d(this.x.sub(viewCenterCoords.x).toKm(), this.y.sub(viewCenterCoords.y).toKm(), this.z.sub(viewCenterCoords.z).toKm());
+		Vector3d positionVector = relativeKm(viewCenter.getCoords(), new Vector3d());
 		
 		Quaterniond q = getQuaterniond(level, viewCenter, partialTicks);
 		q.transform(positionVector);
@@ -177,6 +185,77 @@ public class SpaceCoords
 		return new SpaceCoords(this.x.sub(vector.x), this.y.sub(vector.y), this.z.sub(vector.z));
 	}
 	
+	//============================================================================================
+	//*************************************In-place arithmetic************************************
+	//============================================================================================
+	
+	// The Into methods write their result into coordinates the caller keeps around as scratch space, which may also be these coordinates.
+	// Scratch coordinates have to own their distances (like the ones created by the constructors without distances or by copy()),
+	// otherwise writing into them would also change every other object sharing those distances
+	
+	/**
+	 * Sets these coordinates to the values of other coordinates
+	 * @return These coordinates
+	 */
+	public SpaceCoords set(SpaceCoords other)
+	{
+		this.x.setSteps(other.x.ly, other.x.steps);
+		this.y.setSteps(other.y.ly, other.y.steps);
+		this.z.setSteps(other.z.ly, other.z.steps);
+		
+		return this;
+	}
+	
+	/**
+	 * @return Scratch coordinates set to the sum of these and the other coordinates
+	 */
+	public SpaceCoords addInto(SpaceCoords other, SpaceCoords dest)
+	{
+		dest.x.setSteps(this.x.ly + other.x.ly, this.x.steps + other.x.steps);
+		dest.y.setSteps(this.y.ly + other.y.ly, this.y.steps + other.y.steps);
+		dest.z.setSteps(this.z.ly + other.z.ly, this.z.steps + other.z.steps);
+		
+		return dest;
+	}
+	
+	/**
+	 * @param vector Offset in km
+	 * @return Scratch coordinates set to these coordinates offset by the vector
+	 */
+	public SpaceCoords addInto(Vector3f vector, SpaceCoords dest)
+	{
+		dest.x.setSum(this.x.ly, this.x.steps, vector.x);
+		dest.y.setSum(this.y.ly, this.y.steps, vector.y);
+		dest.z.setSum(this.z.ly, this.z.steps, vector.z);
+		
+		return dest;
+	}
+	
+	/**
+	 * @return Scratch coordinates set to the difference of these and the other coordinates
+	 */
+	public SpaceCoords subInto(SpaceCoords other, SpaceCoords dest)
+	{
+		dest.x.setSteps(this.x.ly - other.x.ly, this.x.steps - other.x.steps);
+		dest.y.setSteps(this.y.ly - other.y.ly, this.y.steps - other.y.steps);
+		dest.z.setSteps(this.z.ly - other.z.ly, this.z.steps - other.z.steps);
+		
+		return dest;
+	}
+	
+	/**
+	 * @param vector Offset in km
+	 * @return Scratch coordinates set to these coordinates offset by the negated vector
+	 */
+	public SpaceCoords subInto(Vector3f vector, SpaceCoords dest)
+	{
+		dest.x.setSum(this.x.ly, this.x.steps, -vector.x);
+		dest.y.setSum(this.y.ly, this.y.steps, -vector.y);
+		dest.z.setSum(this.z.ly, this.z.steps, -vector.z);
+		
+		return dest;
+	}
+	
 	//============================================================================================
 	//************************************Getters and Setters*************************************
 	//============================================================================================
@@ -207,13 +286,23 @@ public class SpaceCoords
 		return "( x: " + x.toString() + ", y: " + y.toString() + ", z: " + z.toString() + " )";
 	}
 	
+	/**
+	 * Fixed-point distance made of whole light years and steps of 10 metres on top of them.
+	 * Adding and subtracting distances is exact no matter how far apart they are from the center, so differences between far away coordinates
+	 * are worked out exactly and only turn into a double once they're converted to kilometers.
+	 * <p>
+	 * Only whole light years are carried over from the steps, the steps keep their own sign, so the light years and the steps can have different signs
+	 */
 	public static class SpaceDistance
 	{
 		public static final String LY = "ly";
 		public static final String KM = "km";
 		
+		public static final long STEPS_PER_KM = 100;
+		public static final long STEPS_PER_LY = 946_073_047_258_120L; // KM_PER_LY * STEPS_PER_KM, which is a whole number
+		
 		private long ly; // Light Years
-		private double km; // Kilometers
+		private long steps; // Steps of 10 meters, always less than a light year away from zero
 		
 		public static final Codec<SpaceDistance> CODEC = RecordCodecBuilder.create(instance -> instance.group(
 	    		// Coordinates in Light Years
@@ -224,10 +313,7 @@ public class SpaceCoords
 		
 		public SpaceDistance(long lightYears, double kilometers)
 		{
-			this.ly = lightYears;
-			this.km = kilometers;
-			
-			handleKmOverflow();
+			setSum(lightYears, 0, kilometers);
 		}
 		
 		public SpaceDistance(long lightYears)
@@ -240,26 +326,51 @@ public class SpaceCoords
 			this(0, kilometers);
 		}
 		
-		private void handleKmOverflow()
+		private SpaceDistance() {}
+		
+		/**
+		 * Sets this distance to light years and steps, carrying whole light years over from the steps
+		 */
+		private SpaceDistance setSteps(long lightYears, long steps)
 		{
-			if(this.km >= KM_PER_LY || this.km <= -KM_PER_LY)
+			this.ly = lightYears;
+			this.steps = steps;
+			
+			if(this.steps >= STEPS_PER_LY || this.steps <= -STEPS_PER_LY)
 			{
-				long additionalLightYears = kmToLy(this.km );
-				double subKm = this.km - lyToKm(additionalLightYears);
-				
-				this.ly += additionalLightYears;
-				this.km -= subKm;
+				this.ly += this.steps / STEPS_PER_LY;
+				this.steps %= STEPS_PER_LY;
 			}
+			
+			return this;
 		}
 		
+		/**
+		 * Sets this distance to light years and steps with kilometers added on top
+		 */
+		private SpaceDistance setSum(long lightYears, long steps, double kilometers)
+		{
+			// Whole light years are split off first, so large kilometer values can't overflow the steps
+			long additionalLightYears = kmToLy(kilometers);
+			
+			return setSteps(lightYears + additionalLightYears, steps + Math.round((kilometers - lyToKm(additionalLightYears)) * STEPS_PER_KM));
+		}
+		
+		/**
+		 * @return Light year part of the distance. The kilometer part can have the opposite sign, so this is within a light year of the distance,
+		 * but isn't necessarily the distance truncated towards zero
+		 */
 		public long ly()
 		{
 			return ly;
 		}
 		
+		/**
+		 * @return Kilometer part of the distance, always less than a light year away from zero
+		 */
 		public double km()
 		{
-			return km;
+			return (double) steps / STEPS_PER_KM;
 		}
 		
 		
@@ -278,42 +389,51 @@ public class SpaceCoords
 		
 		public double toKm()
 		{
-			return km + lyToKm(ly);
+			return km() + lyToKm(ly);
 		}
 		
 		public double toLy()
 		{
-			return ly + km / KM_PER_LY;
+			return ly + km() / KM_PER_LY;
+		}
+		
+		/**
+		 * @return Difference between this and the other distance in km, the same as sub(other).toKm() without creating a distance
+		 */
+		public double subKm(SpaceDistance other)
+		{
+			// Both parts of the difference are exact, they only get rounded once they are converted to kilometers
+			return (double) (this.steps - other.steps) / STEPS_PER_KM + lyToKm(this.ly - other.ly);
 		}
 		
 		public SpaceDistance add(SpaceDistance other)
 		{
-			return new SpaceDistance(this.ly + other.ly, this.km + other.km);
+			return new SpaceDistance().setSteps(this.ly + other.ly, this.steps + other.steps);
 		}
 		
 		public SpaceDistance add(double value)
 		{
-			return new SpaceDistance(this.ly, this.km + value);
+			return new SpaceDistance().setSum(this.ly, this.steps, value);
 		}
 		
 		public SpaceDistance add(long value)
 		{
-			return new SpaceDistance(this.ly + value, this.km);
+			return new SpaceDistance().setSteps(this.ly + value, this.steps);
 		}
 		
 		public SpaceDistance sub(SpaceDistance other)
 		{
-			return new SpaceDistance(this.ly - other.ly, this.km - other.km);
+			return new SpaceDistance().setSteps(this.ly - other.ly, this.steps - other.steps);
 		}
 		
 		public SpaceDistance sub(double value)
 		{
-			return new SpaceDistance(this.ly, this.km - value);
+			return new SpaceDistance().setSum(this.ly, this.steps, -value);
 		}
 		
 		public SpaceDistance sub(long value)
 		{
-			return new SpaceDistance(this.ly - value, this.km);
+			return new SpaceDistance().setSteps(this.ly - value, this.steps);
 		}
 		
 		public SpaceDistance mul(double value, boolean roundDown)
@@ -326,13 +446,13 @@ public class SpaceCoords
 		
 		public SpaceDistance copy()
 		{
-			return new SpaceDistance(ly, km);
+			return new SpaceDistance().setSteps(ly, steps);
 		}
 		
 		@Override
 		public String toString()
 		{
-			return "[ly: " + ly + ", km: " + km + "]";
+			return "[ly: " + ly + ", km: " + km() + "]";
 		}
 	}
 }
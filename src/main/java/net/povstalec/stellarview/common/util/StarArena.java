@@ -0,0 +1,332 @@
+package net.povstalec.stellarview.common.util;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.blaze3d.vertex.BufferUploader;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import net.povstalec.stellarview.StellarView;
+import net.povstalec.stellarview.client.render.shader.StellarViewVertexFormat;
+import org.lwjgl.opengl.GL15C;
+import org.lwjgl.opengl.GL31C;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Single vertex buffer and vertex array that the regular Star vertexes of every shared Star Buffer are placed in.
+ * Each Star Buffer gets a range of vertexes it draws with a base vertex, so switching between Star Fields doesn't require binding a different vertex array.
+ * Once most of the arena is unused, the ranges still in use are packed into a smaller buffer so evicted Star Fields actually give their video memory back
+ */
+public final class StarArena implements AutoCloseable
+{
+	private static final int MIN_CAPACITY = 65536; // Vertexes, one full chunk of Stars
+	
+	@Nullable
+	private static StarArena arena;
+	
+	private final VertexFormat format;
+	private final int vertexSize;
+	
+	private int vertexBufferId = -1;
+	private int arrayObjectId;
+	
+	private int capacity = 0; // Vertexes
+	private int usedVertices = 0;
+	private final TreeMap<Integer, Integer> freeRanges = new TreeMap<Integer, Integer>(); // First vertex and length of every unused range
+	private final List<Slice> slices = new ArrayList<Slice>(); // Every range that has been handed out and not freed yet
+	
+	private StarArena(VertexFormat format)
+	{
+		RenderSystem.assertOnRenderThread();
+		this.format = format;
+		this.vertexSize = format.getVertexSize();
+		this.arrayObjectId = GlStateManager._glGenVertexArrays();
+	}
+	
+	/**
+	 * @return The Star Arena shared by all Star Fields (must be called on the render thread)
+	 */
+	public static StarArena get()
+	{
+		if(arena == null)
+			arena = GpuResources.track(new StarArena(StellarViewVertexFormat.STAR_POS_COLOR_LY.get()), "Star Arena", GpuResources.Scope.PERSISTENT);
+		
+		return arena;
+	}
+	
+	public VertexFormat getFormat()
+	{
+		return format;
+	}
+	
+	/**
+	 * Reserves a range of vertexes, growing the arena if none of the unused ranges is large enough
+	 * @param vertices Number of vertexes to reserve
+	 * @return Reserved range, has to be returned with {@link #free(Slice)} once it's no longer needed
+	 */
+	public Slice allocate(int vertices)
+	{
+		RenderSystem.assertOnRenderThread();
+		
+		Slice slice = takeFreeRange(vertices);
+		if(slice == null)
+		{
+			grow(vertices);
+			slice = takeFreeRange(vertices);
+		}
+		
+		usedVertices += vertices;
+		slices.add(slice);
+		updateBytes();
+		
+		return slice;
+	}
+	
+	@Nullable
+	private Slice takeFreeRange(int vertices)
+	{
+		for(Map.Entry<Integer, Integer> range : freeRanges.entrySet())
+		{
+			int first = range.getKey();
+			int length = range.getValue();
+			if(length < vertices)
+				continue;
+			
+			freeRanges.remove(first);
+			if(length > vertices)
+				freeRanges.put(first + vertices, length - vertices);
+			
+			return new Slice(first, vertices);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Returns a range of vertexes to the arena, the storage is released once nothing is left in the arena and shrunk once most of it is unused
+	 */
+	public void free(Slice slice)
+	{
+		RenderSystem.assertOnRenderThread();
+		
+		int first = slice.firstVertex;
+		int length = slice.vertexCount;
+		
+		// Merges the range with the unused ranges right before and after it
+		Map.Entry<Integer, Integer> previous = freeRanges.floorEntry(first);
+		if(previous != null && previous.getKey() + previous.getValue() == first)
+		{
+			freeRanges.remove(previous.getKey());
+			first = previous.getKey();
+			length += previous.getValue();
+		}
+		
+		Integer nextLength = freeRanges.remove(first + length);
+		if(nextLength != null)
+			length += nextLength;
+		
+		freeRanges.put(first, length);
+		usedVertices -= slice.vertexCount;
+		slices.remove(slice);
+		
+		if(usedVertices == 0)
+			releaseStorage();
+		else if(capacity > MIN_CAPACITY && usedVertices <= capacity / 4)
+			compact();
+		
+		updateBytes();
+	}
+	
+	/**
+	 * Copies vertexes into a reserved range
+	 * @param slice Range the vertexes belong to
+	 * @param firstVertex Vertex inside the range the first vertex gets copied to
+	 * @param vertices Vertexes laid out in the format of the arena
+	 */
+	public void upload(Slice slice, int firstVertex, ByteBuffer vertices)
+	{
+		GlStateManager._glBindBuffer(GL15C.GL_ARRAY_BUFFER, this.vertexBufferId);
+		GL15C.glBufferSubData(GL15C.GL_ARRAY_BUFFER, (long) (slice.firstVertex + firstVertex) * vertexSize, vertices);
+	}
+	
+	public void bind()
+	{
+		BufferUploader.invalidate();
+		GlStateManager._glBindVertexArray(this.arrayObjectId);
+	}
+	
+	/**
+	 * Moves the vertexes into a larger buffer, the ranges that have already been handed out keep their position
+	 */
+	private void grow(int vertices)
+	{
+		int oldCapacity = capacity;
+		int newCapacity = Math.max(MIN_CAPACITY, capacity * 2);
+		while(newCapacity - oldCapacity < vertices)
+		{
+			newCapacity *= 2;
+		}
+		
+		int newBufferId = createStorage(newCapacity);
+		
+		if(this.vertexBufferId >= 0)
+		{
+			GlStateManager._glBindBuffer(GL31C.GL_COPY_READ_BUFFER, this.vertexBufferId);
+			GL31C.glCopyBufferSubData(GL31C.GL_COPY_READ_BUFFER, GL31C.GL_COPY_WRITE_BUFFER, 0, 0, (long) oldCapacity * vertexSize);
+		}
+		
+		replaceStorage(newBufferId, newCapacity);
+		
+		// The new space joins the unused range at the end, if there is one
+		Map.Entry<Integer, Integer> last = freeRanges.lastEntry();
+		if(last != null && last.getKey() + last.getValue() == oldCapacity)
+			freeRanges.put(last.getKey(), last.getValue() + newCapacity - oldCapacity);
+		else
+			freeRanges.put(oldCapacity, newCapacity - oldCapacity);
+		
+		StellarView.LOGGER.debug("Grew Star Arena from " + (long) oldCapacity * vertexSize + " to " + (long) newCapacity * vertexSize + " bytes");
+	}
+	
+	/**
+	 * Packs the ranges still in use at the start of a smaller buffer, leaving at least as much unused space as is in use so the arena doesn't have to grow again right away.
+	 * The ranges get new first vertexes, which the Star Buffers pick up the next time they draw
+	 */
+	private void compact()
+	{
+		int oldCapacity = capacity;
+		int newCapacity = capacity;
+		while(newCapacity / 2 >= MIN_CAPACITY && newCapacity / 2 >= usedVertices * 2)
+		{
+			newCapacity /= 2;
+		}
+		
+		if(newCapacity == oldCapacity)
+			return;
+		
+		int newBufferId = createStorage(newCapacity);
+		GlStateManager._glBindBuffer(GL31C.GL_COPY_READ_BUFFER, this.vertexBufferId);
+		
+		slices.sort(Comparator.comparingInt(Slice::firstVertex));
+		int nextVertex = 0;
+		for(Slice slice : slices)
+		{
+			GL31C.glCopyBufferSubData(GL31C.GL_COPY_READ_BUFFER, GL31C.GL_COPY_WRITE_BUFFER, (long) slice.firstVertex * vertexSize, (long) nextVertex * vertexSize, (long) slice.vertexCount * vertexSize);
+			slice.firstVertex = nextVertex;
+			nextVertex += slice.vertexCount;
+		}
+		
+		replaceStorage(newBufferId, newCapacity);
+		
+		freeRanges.clear();
+		freeRanges.put(nextVertex, newCapacity - nextVertex);
+		
+		StellarView.LOGGER.debug("Shrunk Star Arena from " + (long) oldCapacity * vertexSize + " to " + (long) newCapacity * vertexSize + " bytes");
+	}
+	
+	/**
+	 * @return Id of a new vertex buffer with room for the vertexes, left bound as the copy write buffer
+	 */
+	private int createStorage(int vertices)
+	{
+		int bufferId = GlStateManager._glGenBuffers();
+		GlStateManager._glBindBuffer(GL31C.GL_COPY_WRITE_BUFFER, bufferId);
+		GL15C.glBufferData(GL31C.GL_COPY_WRITE_BUFFER, (long) vertices * vertexSize, GL15C.GL_STATIC_DRAW);
+		
+		return bufferId;
+	}
+	
+	/**
+	 * Deletes the current vertex buffer and points the vertex array at the new one
+	 */
+	private void replaceStorage(int bufferId, int vertices)
+	{
+		if(this.vertexBufferId >= 0)
+			RenderSystem.glDeleteBuffers(this.vertexBufferId);
+		
+		this.vertexBufferId = bufferId;
+		this.capacity = vertices;
+		
+		// The vertex array still points at the old buffer
+		bind();
+		GlStateManager._glBindBuffer(GL15C.GL_ARRAY_BUFFER, this.vertexBufferId);
+		format.setupBufferState();
+	}
+	
+	/**
+	 * @return Number of bytes of the arena no Star Buffer uses, the Star Buffers only account for their own ranges
+	 */
+	public static long unusedBytes()
+	{
+		return arena != null ? GpuResources.getBytes(arena) : 0;
+	}
+	
+	private void releaseStorage()
+	{
+		if(this.vertexBufferId >= 0)
+		{
+			RenderSystem.glDeleteBuffers(this.vertexBufferId);
+			this.vertexBufferId = -1;
+		}
+		
+		capacity = 0;
+		freeRanges.clear();
+		slices.clear();
+	}
+	
+	/**
+	 * The Star Buffers account for the ranges they use, the arena only accounts for the space nobody uses
+	 */
+	private void updateBytes()
+	{
+		GpuResources.setBytes(this, (long) (capacity - usedVertices) * vertexSize);
+	}
+	
+	@Override
+	public void close()
+	{
+		GpuResources.untrack(this);
+		
+		releaseStorage();
+		usedVertices = 0;
+		
+		if(this.arrayObjectId >= 0)
+		{
+			RenderSystem.glDeleteVertexArrays(this.arrayObjectId);
+			this.arrayObjectId = -1;
+		}
+		
+		arena = null;
+	}
+	
+	
+	
+	/**
+	 * Range of vertexes reserved by a single Star Buffer
+	 */
+	public static class Slice
+	{
+		private int firstVertex; // Moved by the arena when it gets compacted
+		private final int vertexCount;
+		
+		private Slice(int firstVertex, int vertexCount)
+		{
+			this.firstVertex = firstVertex;
+			this.vertexCount = vertexCount;
+		}
+		
+		public int firstVertex()
+		{
+			return firstVertex;
+		}
+		
+		public int vertexCount()
+		{
+			return vertexCount;
+		}
+	}
+}
@@ -1,22 +1,34 @@
 package net.povstalec.stellarview.common.util;
 
 import com.mojang.blaze3d.platform.GlStateManager;
-import com.mojang.blaze3d.platform.Window;
 import com.mojang.blaze3d.systems.RenderSystem;
 import com.mojang.blaze3d.vertex.BufferUploader;
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
 import com.mojang.blaze3d.vertex.MeshData;
 import com.mojang.blaze3d.vertex.VertexFormat;
-import net.minecraft.client.Minecraft;
+import com.mojang.blaze3d.vertex.VertexFormatElement;
+import net.povstalec.stellarview.client.render.shader.SkyFrameUniforms;
 import net.povstalec.stellarview.client.render.shader.StarShaderInstance;
-import org.joml.Matrix4f;
+import net.povstalec.stellarview.client.render.shader.StellarViewVertexFormat;
 import org.joml.Vector3f;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.opengl.GL;
 import org.lwjgl.opengl.GL15C;
+import org.lwjgl.opengl.GL31C;
+import org.lwjgl.opengl.GL32C;
+import org.lwjgl.opengl.GL33C;
+import org.lwjgl.system.MemoryUtil;
 
 import javax.annotation.Nullable;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.List;
 
 public class StarBuffer implements AutoCloseable
 {
+	private static final int VERTICES_PER_STAR = 4;
+	private static final int INDICES_PER_STAR = 6;
+	
 	private int vertexBufferId;
 	private int indexBufferId;
 	private int arrayObjectId;
@@ -28,12 +40,59 @@ public class StarBuffer implements AutoCloseable
 	private int indexCount;
 	private VertexFormat.Mode mode;
 	
-	public StarBuffer()
+	// Each chunk is drawn separately with its own base vertex, which lets all chunks share one sequential index buffer
+	private int[] chunkIndexCounts = new int[0];
+	private int[] chunkBaseVertices = new int[0];
+	
+	// Number of instances when every Star is uploaded as a single record, 0 when the buffer holds regular vertexes
+	private int instanceCount;
+	// Bounds the instances were quantized to, null unless the buffer holds compact records
+	@Nullable
+	private StarQuantization quantization;
+	
+	// Shared buffers keep their vertexes in the Star Arena instead of their own vertex buffer
+	@Nullable
+	private final StarArena arena;
+	@Nullable
+	private StarArena.Slice slice;
+	private boolean closed = false;
+	
+	// Draw parameters of a single multi-draw, shared by all Star Buffers and grown as needed (render thread only)
+	private static IntBuffer multiDrawCounts = MemoryUtil.memAllocInt(64);
+	private static PointerBuffer multiDrawOffsets = MemoryUtil.memAllocPointer(64);
+	private static IntBuffer multiDrawBaseVertices = MemoryUtil.memAllocInt(64);
+	
+	/**
+	 * @param owner Object the buffer gets accounted to in {@link GpuResources}, the buffer is released when the universe is reloaded
+	 */
+	public StarBuffer(Object owner)
+	{
+		this(owner, false);
+	}
+	
+	/**
+	 * @param owner Object the buffer gets accounted to in {@link GpuResources}, the buffer is released when the universe is reloaded
+	 * @param shared Whether the vertexes go into the {@link StarArena} instead of a vertex buffer of its own, only regular Stars uploaded with {@link #uploadVertices(ByteBuffer, int, int, VertexFormat)} can be shared
+	 */
+	public StarBuffer(Object owner, boolean shared)
 	{
 		RenderSystem.assertOnRenderThread();
-		this.vertexBufferId = GlStateManager._glGenBuffers();
-		this.indexBufferId = GlStateManager._glGenBuffers();
-		this.arrayObjectId = GlStateManager._glGenVertexArrays();
+		if(shared)
+		{
+			this.arena = StarArena.get();
+			this.vertexBufferId = -1;
+			this.indexBufferId = -1;
+			this.arrayObjectId = -1;
+		}
+		else
+		{
+			this.arena = null;
+			this.vertexBufferId = GlStateManager._glGenBuffers();
+			this.indexBufferId = GlStateManager._glGenBuffers();
+			this.arrayObjectId = GlStateManager._glGenVertexArrays();
+		}
+		
+		GpuResources.track(this, owner, GpuResources.Scope.UNIVERSE);
 	}
 	
 	public void upload(MeshData mesh)
@@ -44,20 +103,177 @@ public class StarBuffer implements AutoCloseable
 			try
 			{
 				final var drawState = mesh.drawState();
+				GpuResources.setBytes(this, mesh.vertexBuffer().remaining());
 				this.format = this.uploadVertexBuffer(mesh, mesh.vertexBuffer());
 				this.sequentialIndices = this.uploadIndexBuffer(mesh, mesh.indexBuffer());
 				this.indexCount = drawState.indexCount();
 				this.indexType = drawState.indexType();
 				this.mode = drawState.mode();
+				
+				this.chunkIndexCounts = new int[] {this.indexCount};
+				this.chunkBaseVertices = new int[] {0};
 			}
 			finally
 			{
 				mesh.close();
 			}
-
+			
 		}
 	}
 	
+	/**
+	 * Uploads the vertexes of regular Stars as they are, written by {@link StarData#createStarVertices(long, int)}.
+	 * Every chunk of Stars is drawn with its own base vertex, so the index type only has to cover the vertexes of a single chunk
+	 * @param vertices Vertexes of all Stars, the buffer stays owned by the caller
+	 * @param stars Number of Stars in the buffer
+	 * @param starsPerChunk Maximum number of Stars drawn by a single draw
+	 * @param vertexFormat Format the vertexes are laid out in
+	 */
+	public void uploadVertices(ByteBuffer vertices, int stars, int starsPerChunk, VertexFormat vertexFormat)
+	{
+		if(this.isInvalid() || stars == 0)
+			return;
+		
+		RenderSystem.assertOnRenderThread();
+		
+		if(this.arena != null)
+		{
+			if(!vertexFormat.equals(this.arena.getFormat()))
+				throw new IllegalStateException("Shared Star Buffers must use the vertex format of the Star Arena");
+			
+			if(this.slice != null)
+				this.arena.free(this.slice);
+			
+			this.slice = this.arena.allocate(stars * VERTICES_PER_STAR);
+			this.arena.upload(this.slice, 0, vertices);
+			
+			// Binds the sequential index buffer to the vertex array of the arena, which may have grown while allocating
+			this.arena.bind();
+		}
+		else
+		{
+			if(!vertexFormat.equals(this.format))
+			{
+				if(this.format != null)
+					this.format.clearBufferState();
+				
+				GlStateManager._glBindBuffer(GL15C.GL_ARRAY_BUFFER, this.vertexBufferId);
+				vertexFormat.setupBufferState();
+			}
+			else
+				GlStateManager._glBindBuffer(GL15C.GL_ARRAY_BUFFER, this.vertexBufferId);
+			
+			RenderSystem.glBufferData(GL15C.GL_ARRAY_BUFFER, vertices, GL15C.GL_STATIC_DRAW);
+		}
+		
+		GpuResources.setBytes(this, vertices.remaining());
+		
+		int chunks = (stars + starsPerChunk - 1) / starsPerChunk;
+		this.chunkIndexCounts = new int[chunks];
+		this.chunkBaseVertices = new int[chunks];
+		for(int chunk = 0; chunk < chunks; chunk++)
+		{
+			int start = chunk * starsPerChunk;
+			int end = Math.min(start + starsPerChunk, stars);
+			
+			this.chunkIndexCounts[chunk] = (end - start) * INDICES_PER_STAR;
+			this.chunkBaseVertices[chunk] = start * VERTICES_PER_STAR;
+		}
+		
+		this.format = vertexFormat;
+		this.mode = VertexFormat.Mode.QUADS;
+		this.indexCount = stars * INDICES_PER_STAR;
+		
+		int maxIndexCount = Math.min(stars, starsPerChunk) * INDICES_PER_STAR;
+		RenderSystem.AutoStorageIndexBuffer sequentialBuffer = RenderSystem.getSequentialBuffer(this.mode);
+		if(this.arena != null || sequentialBuffer != this.sequentialIndices || !sequentialBuffer.hasStorage(maxIndexCount))
+			sequentialBuffer.bind(maxIndexCount);
+		
+		this.sequentialIndices = sequentialBuffer;
+		this.indexType = sequentialBuffer.type();
+	}
+	
+	/**
+	 * Uploads one record per instance, each instance gets drawn as a triangle strip of 4 vertexes which the shader creates from gl_VertexID
+	 * @param instances Instance records, laid out in the specified format
+	 * @param instanceCount Number of instances in the buffer
+	 * @param instanceFormat Format of a single instance record
+	 */
+	public void uploadInstances(ByteBuffer instances, int instanceCount, VertexFormat instanceFormat)
+	{
+		if(this.isInvalid())
+			return;
+		
+		RenderSystem.assertOnRenderThread();
+		
+		if(!instanceFormat.equals(this.format))
+		{
+			if(this.format != null)
+				this.format.clearBufferState();
+			
+			GlStateManager._glBindBuffer(GL15C.GL_ARRAY_BUFFER, this.vertexBufferId);
+			instanceFormat.setupBufferState();
+			
+			// Every attribute advances once per instance instead of once per vertex
+			for(int i = 0; i < instanceFormat.getElements().size(); i++)
+			{
+				GL33C.glVertexAttribDivisor(i, 1);
+			}
+		}
+		else
+			GlStateManager._glBindBuffer(GL15C.GL_ARRAY_BUFFER, this.vertexBufferId);
+		
+		GpuResources.setBytes(this, instances.remaining());
+		RenderSystem.glBufferData(GL15C.GL_ARRAY_BUFFER, instances, GL15C.GL_STATIC_DRAW);
+		
+		this.format = instanceFormat;
+		this.quantization = null;
+		this.mode = VertexFormat.Mode.TRIANGLE_STRIP;
+		this.instanceCount = instanceCount;
+		this.indexCount = 0;
+		this.sequentialIndices = null;
+		this.chunkIndexCounts = new int[0];
+		this.chunkBaseVertices = new int[0];
+	}
+	
+	/**
+	 * Uploads one compact record per instance, the shader turns them back into light years with the quantization
+	 * @param instances Compact instance records, see {@link StarQuantization#createStarInstance(StarData, long, int)}
+	 * @param instanceCount Number of instances in the buffer
+	 * @param quantization Bounds the records were quantized to
+	 */
+	public void uploadCompactInstances(ByteBuffer instances, int instanceCount, StarQuantization quantization)
+	{
+		uploadInstances(instances, instanceCount, StellarViewVertexFormat.STAR_COMPACT_INSTANCE.get());
+		this.quantization = quantization;
+	}
+	
+	/**
+	 * @return True if the current OpenGL context is able to draw instanced Star Buffers (must be called on the render thread)
+	 */
+	public static boolean supportsInstancing()
+	{
+		return GL.getCapabilities().OpenGL33;
+	}
+	
+	public boolean isInstanced()
+	{
+		return this.instanceCount > 0;
+	}
+	
+	/**
+	 * @return True if the vertexes have already been projected onto the sky, see {@link StarMesh#buildBaked(StarData, int, Vector3f)}
+	 */
+	public boolean isBaked()
+	{
+		return DefaultVertexFormat.POSITION_COLOR.equals(this.format);
+	}
+	
+	public boolean isCompact()
+	{
+		return this.quantization != null;
+	}
+	
 	private VertexFormat uploadVertexBuffer(MeshData mesh, ByteBuffer vertexBuffer)
 	{
 		final var drawState = mesh.drawState();
@@ -105,10 +321,24 @@ public class StarBuffer implements AutoCloseable
 	
 	public void bind()
 	{
+		if(this.arena != null)
+		{
+			this.arena.bind();
+			return;
+		}
+		
 		BufferUploader.invalidate();
 		GlStateManager._glBindVertexArray(this.arrayObjectId);
 	}
 	
+	/**
+	 * @return First vertex of the Star Buffer inside the vertex buffer it's drawn from
+	 */
+	private int vertexOffset()
+	{
+		return this.slice != null ? this.slice.firstVertex() : 0;
+	}
+	
 	public static void unbind()
 	{
 		BufferUploader.invalidate();
@@ -117,7 +347,129 @@ public class StarBuffer implements AutoCloseable
 	
 	public void draw()
 	{
-		RenderSystem.drawElements(this.mode.asGLMode, this.indexCount, this.getIndexType().asGLType);
+		if(this.instanceCount > 0)
+		{
+			RenderSystem.assertOnRenderThread();
+			drawInstances(0, this.instanceCount);
+			return;
+		}
+		
+		if(this.chunkIndexCounts.length == 1 && this.chunkBaseVertices[0] + vertexOffset() == 0)
+		{
+			RenderSystem.drawElements(this.mode.asGLMode, this.indexCount, this.getIndexType().asGLType);
+			return;
+		}
+		
+		RenderSystem.assertOnRenderThread();
+		
+		beginMultiDraw();
+		for(int i = 0; i < this.chunkIndexCounts.length; i++)
+		{
+			addDraw(this.chunkIndexCounts[i], 0L, this.chunkBaseVertices[i] + vertexOffset());
+		}
+		endMultiDraw(this.mode.asGLMode, this.getIndexType().asGLType);
+	}
+	
+	/**
+	 * Draws only the specified ranges of Stars
+	 * @param starRanges Start (inclusive) and end (exclusive) index of each range of Stars
+	 * @param rangeCount Number of ranges in the array
+	 */
+	public void drawStars(int[] starRanges, int rangeCount)
+	{
+		RenderSystem.assertOnRenderThread();
+		
+		if(this.instanceCount > 0)
+		{
+			for(int range = 0; range < rangeCount; range++)
+			{
+				drawInstances(starRanges[range * 2], starRanges[range * 2 + 1] - starRanges[range * 2]);
+			}
+			return;
+		}
+		
+		VertexFormat.IndexType indexType = this.getIndexType();
+		
+		// Every part of every range gets collected and submitted with a single multi-draw
+		beginMultiDraw();
+		for(int range = 0; range < rangeCount; range++)
+		{
+			int start = starRanges[range * 2];
+			int end = starRanges[range * 2 + 1];
+			
+			// A range may cross the border between chunks, in which case each chunk draws its own part
+			for(int chunk = 0; chunk < this.chunkIndexCounts.length; chunk++)
+			{
+				int chunkStart = this.chunkBaseVertices[chunk] / VERTICES_PER_STAR;
+				int chunkEnd = chunkStart + this.chunkIndexCounts[chunk] / INDICES_PER_STAR;
+				
+				int from = Math.max(start, chunkStart);
+				int to = Math.min(end, chunkEnd);
+				
+				if(from < to)
+					addDraw((to - from) * INDICES_PER_STAR, (long) (from - chunkStart) * INDICES_PER_STAR * indexType.bytes, this.chunkBaseVertices[chunk] + vertexOffset());
+			}
+		}
+		
+		endMultiDraw(this.mode.asGLMode, indexType.asGLType);
+	}
+	
+	private static void beginMultiDraw()
+	{
+		multiDrawCounts.clear();
+		multiDrawOffsets.clear();
+		multiDrawBaseVertices.clear();
+	}
+	
+	private static void addDraw(int indexCount, long indexOffset, int baseVertex)
+	{
+		if(!multiDrawCounts.hasRemaining())
+		{
+			int capacity = multiDrawCounts.capacity() * 2;
+			multiDrawCounts = MemoryUtil.memRealloc(multiDrawCounts, capacity);
+			multiDrawOffsets = MemoryUtil.memRealloc(multiDrawOffsets, capacity);
+			multiDrawBaseVertices = MemoryUtil.memRealloc(multiDrawBaseVertices, capacity);
+		}
+		
+		multiDrawCounts.put(indexCount);
+		multiDrawOffsets.put(indexOffset);
+		multiDrawBaseVertices.put(baseVertex);
+	}
+	
+	/**
+	 * Draws everything added since {@link #beginMultiDraw()} with a single call
+	 */
+	private static void endMultiDraw(int glMode, int glType)
+	{
+		multiDrawCounts.flip();
+		multiDrawOffsets.flip();
+		multiDrawBaseVertices.flip();
+		
+		if(multiDrawCounts.hasRemaining())
+			GL32C.glMultiDrawElementsBaseVertex(glMode, multiDrawCounts, glType, multiDrawOffsets, multiDrawBaseVertices);
+	}
+	
+	/**
+	 * Points the instance attributes at the first instance, since base instances aren't available in OpenGL 3.3
+	 */
+	private void drawInstances(int first, int count)
+	{
+		int stride = this.format.getVertexSize();
+		List<VertexFormatElement> elements = this.format.getElements();
+		
+		GlStateManager._glBindBuffer(GL15C.GL_ARRAY_BUFFER, this.vertexBufferId);
+		for(int i = 0; i < elements.size(); i++)
+		{
+			VertexFormatElement element = elements.get(i);
+			element.setupBufferState(i, this.format.getOffset(element) + (long) first * stride, stride);
+		}
+		
+		GL31C.glDrawArraysInstanced(this.mode.asGLMode, 0, VERTICES_PER_STAR, count);
+	}
+	
+	public int getChunks()
+	{
+		return this.chunkIndexCounts.length;
 	}
 	
 	private VertexFormat.IndexType getIndexType()
@@ -126,7 +478,17 @@ public class StarBuffer implements AutoCloseable
 		return rendersystem$autostorageindexbuffer != null ? rendersystem$autostorageindexbuffer.type() : this.indexType;
 	}
 	
-	public void drawWithShader(Matrix4f modelViewMatrix, Matrix4f projectionMatrix, SpaceCoords relativeSpacePos, StarShaderInstance shaderInstance)
+	public void drawWithShader(SpaceCoords relativeSpacePos, StarShaderInstance shaderInstance)
+	{
+		drawWithShader(relativeSpacePos, shaderInstance, null, 0);
+	}
+	
+	/**
+	 * Draws the Stars with the matrices and brightness of the current frame, which the shader reads from {@link SkyFrameUniforms}
+	 * @param starRanges Ranges of Stars to draw, see {@link #drawStars(int[], int)}, or null to draw all Stars
+	 * @param rangeCount Number of ranges in the array
+	 */
+	public void drawWithShader(SpaceCoords relativeSpacePos, StarShaderInstance shaderInstance, @Nullable int[] starRanges, int rangeCount)
 	{
 		Vector3f relativeVectorLy = new Vector3f((float) relativeSpacePos.x().ly(), (float) relativeSpacePos.y().ly(), (float) relativeSpacePos.z().ly());
 		Vector3f relativeVectorKm = new Vector3f((float) relativeSpacePos.x().km(), (float) relativeSpacePos.y().km(), (float) relativeSpacePos.z().km());
@@ -135,71 +497,44 @@ public class StarBuffer implements AutoCloseable
 		{
 			RenderSystem.recordRenderCall(() ->
 			{
-				this._drawWithShader(new Matrix4f(modelViewMatrix), new Matrix4f(projectionMatrix), relativeVectorLy, relativeVectorKm, shaderInstance);
+				this._drawWithShader(relativeVectorLy, relativeVectorKm, shaderInstance, starRanges != null ? starRanges.clone() : null, rangeCount);
 			});
 		}
 		else
-			this._drawWithShader(modelViewMatrix, projectionMatrix, relativeVectorLy, relativeVectorKm, shaderInstance);
+			this._drawWithShader(relativeVectorLy, relativeVectorKm, shaderInstance, starRanges, rangeCount);
 	}
 	
-	private void _drawWithShader(Matrix4f modelViewMatrix, Matrix4f projectionMatrix, Vector3f relativeSpaceLy, Vector3f relativeSpaceKm, StarShaderInstance shaderInstance)
+	private void _drawWithShader(Vector3f relativeSpaceLy, Vector3f relativeSpaceKm, StarShaderInstance shaderInstance, @Nullable int[] starRanges, int rangeCount)
 	{
-		for(int i = 0; i < 12; ++i)
-		{
-			int j = RenderSystem.getShaderTexture(i);
-			shaderInstance.setSampler("Sampler" + i, j);
-		}
-		
-		if(shaderInstance.MODEL_VIEW_MATRIX != null)
-			shaderInstance.MODEL_VIEW_MATRIX.set(modelViewMatrix);
-		
-		if(shaderInstance.PROJECTION_MATRIX != null)
-			shaderInstance.PROJECTION_MATRIX.set(projectionMatrix);
-		
-		if(shaderInstance.COLOR_MODULATOR != null)
-			shaderInstance.COLOR_MODULATOR.set(RenderSystem.getShaderColor());
-		
-		if(shaderInstance.FOG_START != null)
-			shaderInstance.FOG_START.set(RenderSystem.getShaderFogStart());
-		
-		if(shaderInstance.FOG_END != null)
-			shaderInstance.FOG_END.set(RenderSystem.getShaderFogEnd());
-		
-		if(shaderInstance.FOG_COLOR != null)
-			shaderInstance.FOG_COLOR.set(RenderSystem.getShaderFogColor());
-		
-		if(shaderInstance.FOG_SHAPE != null)
-			shaderInstance.FOG_SHAPE.set(RenderSystem.getShaderFogShape().getIndex());
-		
-		if(shaderInstance.TEXTURE_MATRIX != null)
-			shaderInstance.TEXTURE_MATRIX.set(RenderSystem.getTextureMatrix());
-		
-		if(shaderInstance.GAME_TIME != null)
-			shaderInstance.GAME_TIME.set(RenderSystem.getShaderGameTime());
-		
-		if(shaderInstance.SCREEN_SIZE != null)
-		{
-			Window window = Minecraft.getInstance().getWindow();
-			shaderInstance.SCREEN_SIZE.set((float)window.getWidth(), (float)window.getHeight());
-		}
-		
-		if(shaderInstance.LINE_WIDTH != null && (this.mode == VertexFormat.Mode.LINES || this.mode == VertexFormat.Mode.LINE_STRIP))
-			shaderInstance.LINE_WIDTH.set(RenderSystem.getShaderLineWidth());
-		
+		// Everything else the shader needs is the same for the whole frame and comes from the Sky Frame uniform block
 		if(shaderInstance.RELATIVE_SPACE_LY != null)
 			shaderInstance.RELATIVE_SPACE_LY.set(relativeSpaceLy);
-
+		
 		if(shaderInstance.RELATIVE_SPACE_KM != null)
 			shaderInstance.RELATIVE_SPACE_KM.set(relativeSpaceKm);
 		
-		RenderSystem.setupShaderLights(shaderInstance);
+		if(this.quantization != null)
+			this.quantization.apply(shaderInstance);
+		
 		shaderInstance.apply();
-		this.draw();
+		if(starRanges != null)
+			this.drawStars(starRanges, rangeCount);
+		else
+			this.draw();
 		shaderInstance.clear();
 	}
 	
 	public void close()
 	{
+		GpuResources.untrack(this);
+		
+		if(this.slice != null)
+		{
+			this.arena.free(this.slice);
+			this.slice = null;
+		}
+		this.closed = true;
+		
 		if (this.vertexBufferId >= 0)
 		{
 			RenderSystem.glDeleteBuffers(this.vertexBufferId);
@@ -223,9 +558,9 @@ public class StarBuffer implements AutoCloseable
 	{
 		return this.format;
 	}
-
+	
 	public boolean isInvalid()
 	{
-		return this.arrayObjectId == -1;
+		return this.arena != null ? this.closed : this.arrayObjectId == -1;
 	}
 }
@@ -7,27 +7,200 @@ import net.povstalec.stellarview.client.resourcepack.StarInfo;
 import net.povstalec.stellarview.client.resourcepack.objects.StarLike;
 import org.lwjgl.system.MemoryUtil;
 
+import java.nio.ByteBuffer;
+
+/**
+ * Flat structure-of-arrays storage for the Stars of a Star Field.
+ * Every value is kept in a primitive array indexed by the Star index (multiplied by the number of components),
+ * so the whole Star Field only retains a handful of arrays instead of several small arrays per Star.
+ */
 public class StarData
 {
-	private double[][] starCoords;
-	private double[] starSizes;
+	public static final int POSITION_COMPONENTS = 3;
+	public static final int ROTATION_COMPONENTS = 2;
+	
+	/* Retained heap per Star:
+	 * Old layout - double[3] (40 B) + double[2] deformation (32 B) + double[2] randoms (32 B) + short[4] (24 B)
+	 * 				+ 4 references in the outer arrays (16 B) + double size (8 B) = ~152 B
+	 * New layout - 3 floats (12 B) + float size (4 B) + packed ARGB int (4 B) + 2 floats sin/cos (8 B) = 28 B
+	 */
+	public static final int BYTES_PER_STAR = (POSITION_COMPONENTS + 1 + 1 + ROTATION_COMPONENTS) * 4;
+	/**
+	 * Size of a single Star in the instanced format: position, RGBA bytes, sin, cos and size
+	 */
+	public static final int INSTANCE_BYTES = POSITION_COMPONENTS * 4 + 4 + (ROTATION_COMPONENTS + 1) * 4;
+	/**
+	 * Size of a single vertex in the regular format: position, RGBA bytes, height, width and size
+	 */
+	public static final int VERTEX_BYTES = POSITION_COMPONENTS * 4 + 4 + 3 * 4;
+	public static final int STAR_VERTEX_BYTES = 4 * VERTEX_BYTES;
+	/**
+	 * Size of a single baked vertex: position on the sky sphere and RGBA bytes, see {@link #createBakedStarVertices(long, int, float, float, float)}
+	 */
+	public static final int BAKED_VERTEX_BYTES = POSITION_COMPONENTS * 4 + 4;
+	public static final int BAKED_STAR_VERTEX_BYTES = 4 * BAKED_VERTEX_BYTES;
+	/**
+	 * Most Stars a single Star Field can have, the Stars in the largest format, see {@link #STAR_VERTEX_BYTES}, still have to fit into a single native buffer
+	 */
+	public static final int MAX_STARS = Integer.MAX_VALUE / STAR_VERTEX_BYTES;
 	
-	private double deformations[][];
+	// Radius of the sky sphere Stars are projected onto by the Star shaders
+	private static final float SKY_DISTANCE = 100F;
+	// Closest a baked Star is treated as being to the reference in light years, any closer and its direction isn't defined
+	public static final float MIN_BAKED_DISTANCE = 1.0E-6F;
 	
-	private short[][] starRGBA;
+	private final int stars;
 	
-	private double[][] randoms;
+	private final float[] starCoords; // x, y, z
+	private final float[] starSizes;
+	
+	private final int[] starARGB; // Packed color and alpha
+	
+	private final float[] rotations; // sin(random), cos(random)
 	
 	public StarData(int stars)
 	{
-		this.starCoords = new double[stars][3];
-		this.starSizes = new double[stars];
+		this.stars = stars;
 
-		this.deformations = new double[stars][2];
+		this.starCoords = new float[stars * POSITION_COMPONENTS];
+		this.starSizes = new float[stars];
 		
-		this.randoms = new double[stars][2];
+		this.starARGB = new int[stars];
 		
-		this.starRGBA = new short[stars][4];
+		this.rotations = new float[stars * ROTATION_COMPONENTS];
+	}
+	
+	public int getStars()
+	{
+		return stars;
+	}
+	
+	public float getX(int i)
+	{
+		return starCoords[i * POSITION_COMPONENTS];
+	}
+	
+	public float getY(int i)
+	{
+		return starCoords[i * POSITION_COMPONENTS + 1];
+	}
+	
+	public float getZ(int i)
+	{
+		return starCoords[i * POSITION_COMPONENTS + 2];
+	}
+	
+	public float getSize(int i)
+	{
+		return starSizes[i];
+	}
+	
+	public int getARGB(int i)
+	{
+		return starARGB[i];
+	}
+	
+	public float getSin(int i)
+	{
+		return rotations[i * ROTATION_COMPONENTS];
+	}
+	
+	public float getCos(int i)
+	{
+		return rotations[i * ROTATION_COMPONENTS + 1];
+	}
+	
+	/**
+	 * Sets a Star without any rotation, used for points that stand in for several Stars
+	 * @param i Index of the star
+	 * @param argb Packed color and alpha
+	 */
+	public void setPoint(int i, float x, float y, float z, int argb, float size)
+	{
+		int coordsIndex = i * POSITION_COMPONENTS;
+		starCoords[coordsIndex] = x;
+		starCoords[coordsIndex + 1] = y;
+		starCoords[coordsIndex + 2] = z;
+		
+		starSizes[i] = size;
+		starARGB[i] = argb;
+		
+		int rotationIndex = i * ROTATION_COMPONENTS;
+		rotations[rotationIndex] = 0F;
+		rotations[rotationIndex + 1] = 1F;
+	}
+	
+	/**
+	 * @param order Old index of the Star that ends up at each new index
+	 * @return Copy of this Star Data with the Stars in the specified order
+	 */
+	public StarData reorder(int[] order)
+	{
+		StarData starData = new StarData(stars);
+		
+		for(int i = 0; i < stars; i++)
+		{
+			int from = order[i];
+			
+			System.arraycopy(starCoords, from * POSITION_COMPONENTS, starData.starCoords, i * POSITION_COMPONENTS, POSITION_COMPONENTS);
+			starData.starSizes[i] = starSizes[from];
+			starData.starARGB[i] = starARGB[from];
+			System.arraycopy(rotations, from * ROTATION_COMPONENTS, starData.rotations, i * ROTATION_COMPONENTS, ROTATION_COMPONENTS);
+		}
+		
+		return starData;
+	}
+	
+	/**
+	 * @return Approximate number of bytes retained on the heap by the Star arrays
+	 */
+	public long heapSize()
+	{
+		return (long) stars * BYTES_PER_STAR;
+	}
+	
+	/**
+	 * Writes all Star arrays into the buffer, starting at its position
+	 * @param buffer Buffer with at least {@link #heapSize()} bytes remaining
+	 */
+	public void write(ByteBuffer buffer)
+	{
+		buffer.asFloatBuffer().put(starCoords);
+		buffer.position(buffer.position() + starCoords.length * Float.BYTES);
+		
+		buffer.asFloatBuffer().put(starSizes);
+		buffer.position(buffer.position() + starSizes.length * Float.BYTES);
+		
+		buffer.asIntBuffer().put(starARGB);
+		buffer.position(buffer.position() + starARGB.length * Integer.BYTES);
+		
+		buffer.asFloatBuffer().put(rotations);
+		buffer.position(buffer.position() + rotations.length * Float.BYTES);
+	}
+	
+	/**
+	 * Reads Star arrays previously written by {@link #write(ByteBuffer)}, starting at the position of the buffer
+	 * @param buffer Buffer with at least stars * {@link #BYTES_PER_STAR} bytes remaining
+	 * @param stars Number of Stars stored in the buffer
+	 * @return Star Data read from the buffer
+	 */
+	public static StarData read(ByteBuffer buffer, int stars)
+	{
+		StarData starData = new StarData(stars);
+		
+		buffer.asFloatBuffer().get(starData.starCoords);
+		buffer.position(buffer.position() + starData.starCoords.length * Float.BYTES);
+		
+		buffer.asFloatBuffer().get(starData.starSizes);
+		buffer.position(buffer.position() + starData.starSizes.length * Float.BYTES);
+		
+		buffer.asIntBuffer().get(starData.starARGB);
+		buffer.position(buffer.position() + starData.starARGB.length * Integer.BYTES);
+		
+		buffer.asFloatBuffer().get(starData.rotations);
+		buffer.position(buffer.position() + starData.rotations.length * Float.BYTES);
+		
+		return starData;
 	}
 	
 	public static double clampStar(double starSize, double minStarSize, double maxStarSize)
@@ -38,57 +211,89 @@ public class StarData
 		return starSize > maxStarSize ? maxStarSize : starSize;
 	}
 	
+	public static int packARGB(int red, int green, int blue, int alpha)
+	{
+		return (alpha & 0xFF) << 24 | (red & 0xFF) << 16 | (green & 0xFF) << 8 | (blue & 0xFF);
+	}
+	
 	/**
 	 * Creates information for a completely new star
-	 * @param builder BufferBuilder used for building the vertexes
 	 * @param randomSource RandomSource used for randomizing the star information
-	 * @param relativeCoords SpaceCoords that give a relative position between the observer and the star
 	 * @param x X coordinate of the star
 	 * @param y Y coordinate of the star
 	 * @param z Z coordinate of the star
 	 * @param i Index of the star
 	 */
-	public void newStar(StarInfo starInfo, BufferBuilder builder, RandomSource randomSource, double x, double y, double z, int i)
+	public void newStar(StarInfo starInfo, RandomSource randomSource, double x, double y, double z, int i)
 	{
 		long seed = randomSource.nextLong();
 		
-		// Set up position
+		StarLike.StarType starType = starInfo.getRandomStarType(seed);
 		
-		starCoords[i][0] = x;
-		starCoords[i][1] = y;
-		starCoords[i][2] = z;
+		// sin and cos are used to effectively clamp the random number between two values without actually clamping it,
+		// wwhich would result in some awkward lines as Stars would be brought to the clamped values
+		// Both affect Star size and rotation
+		double random = randomSource.nextDouble() * Math.PI * 2.0D;
 		
-		//TODO Set up deformation
-		deformations[i][0] = 1; // Height deformation
-		deformations[i][1] = 1;// Width deformation
+		setStar(i, x, y, z, starType.getRGB(), starType.randomSize(seed), starType.randomBrightness(seed), random);
+	}
+	
+	/**
+	 * Creates information for a completely new star, safe to call from multiple threads as long as each thread writes different indexes
+	 * @param random StarRandom already set to the sequence of this star
+	 * @param x X coordinate of the star
+	 * @param y Y coordinate of the star
+	 * @param z Z coordinate of the star
+	 * @param i Index of the star
+	 */
+	public void newStar(StarInfo starInfo, StarRandom random, double x, double y, double z, int i)
+	{
+		// The type gets a roll of its own, getStarType splits the roll by weight and would otherwise tie every type to a part of its size range
+		StarLike.StarType starType = starInfo.getStarType(random.nextFloat());
 		
-		StarLike.StarType starType = starInfo.getRandomStarType(seed);
-		Color.IntRGB rgb = starType.getRGB();
+		// Size and brightness share a roll, so larger Stars of a type are also brighter
+		float roll = random.nextFloat();
 		
-		// Set up size
+		setStar(i, x, y, z, starType.getRGB(), starType.size(roll), starType.brightness(roll), random.nextFloat() * Math.PI * 2.0D);
+	}
+	
+	private void setStar(int i, double x, double y, double z, Color.IntRGB rgb, float size, short alpha, double random)
+	{
+		// Set up position
 		
-		starSizes[i] = starType.randomSize(seed); // This randomizes the Star size
+		int coordsIndex = i * POSITION_COMPONENTS;
+		starCoords[coordsIndex] = (float) x;
+		starCoords[coordsIndex + 1] = (float) y;
+		starCoords[coordsIndex + 2] = (float) z;
 		
-		// Set up color and alpha
+		//TODO Set up deformation (height and width deformation are currently always 1)
 		
-		short alpha = starType.randomBrightness(seed); // 0xAA is the default
+		// Set up size
 		
-		this.starRGBA[i] = new short[] {(short) rgb.red(), (short) rgb.green(), (short) rgb.blue(), alpha};
+		starSizes[i] = size;
 		
-		// sin and cos are used to effectively clamp the random number between two values without actually clamping it,
-		// wwhich would result in some awkward lines as Stars would be brought to the clamped values
-		// Both affect Star size and rotation
-		double random = randomSource.nextDouble() * Math.PI * 2.0D;
-		randoms[i][0] = Math.sin(random); // sin random
-		randoms[i][1] = Math.cos(random); // cos random
+		// Set up color and alpha (0xAA is the default)
+		
+		starARGB[i] = packARGB(rgb.red(), rgb.green(), rgb.blue(), alpha);
 		
-		this.createStar(builder, i);
+		int rotationIndex = i * ROTATION_COMPONENTS;
+		rotations[rotationIndex] = (float) Math.sin(random); // sin random
+		rotations[rotationIndex + 1] = (float) Math.cos(random); // cos random
 	}
 	
 	public void createStar(BufferBuilder builder, int i)
 	{
-		double sinRandom = randoms[i][0];
-		double cosRandom = randoms[i][1];
+		int coordsIndex = i * POSITION_COMPONENTS;
+		float x = starCoords[coordsIndex];
+		float y = starCoords[coordsIndex + 1];
+		float z = starCoords[coordsIndex + 2];
+		
+		int rotationIndex = i * ROTATION_COMPONENTS;
+		float sinRandom = rotations[rotationIndex];
+		float cosRandom = rotations[rotationIndex + 1];
+		
+		int argb = starARGB[i];
+		float size = starSizes[i];
 		
 		// This loop creates the 4 corners of a Star
 		for(int j = 0; j < 4; ++j)
@@ -109,7 +314,7 @@ public class StarData
 			 * 2 & 2 = 010 & 010 = 010 = 2	|	x	x
 			 * 3 & 2 = 011 & 010 = 010 = 2	|	x	x
 			 * 4 & 2 = 100 & 000 = 000 = 0	|		x
-			 * 
+			 *
 			 * After you subtract 1 one from each of them, you get this:
 			 * j:	0	1	2	3
 			 * --------------------
@@ -118,8 +323,8 @@ public class StarData
 			 * Which corresponds to:
 			 * UV:	00	01	11	10
 			 */
-			double aLocation = (double) ((j & 2) - 1);
-			double bLocation = (double) ((j + 1 & 2) - 1);
+			float aLocation = (float) ((j & 2) - 1);
+			float bLocation = (float) ((j + 1 & 2) - 1);
 			
 			/* These are the values for cos(random) = sin(random)
 			 * (random is simply there to randomize the star rotation)
@@ -127,26 +332,177 @@ public class StarData
 			 * -------------------
 			 * A:	0	-2	0	2
 			 * B:	-2	0	2	0
-			 * 
+			 *
 			 * A and B are there to create a diamond effect on the Y-axis and X-axis respectively
 			 * (Pretend it's not as stretched as the slashes make it look)
 			 * Where a coordinate is written as (B,A)
-			 * 
+			 *
 			 *           (0,2)
 			 *          /\
 			 *   (-2,0)/  \(2,0)
 			 *         \  /
 			 *          \/
 			 *           (0,-2)
-			 * 
+			 *
 			 */
-			double height = deformations[i][0] * (aLocation * cosRandom - bLocation * sinRandom);
-			double width = deformations[i][1] * (bLocation * cosRandom + aLocation * sinRandom);
+			float height = aLocation * cosRandom - bLocation * sinRandom;
+			float width = bLocation * cosRandom + aLocation * sinRandom;
 
-			builder.addVertex((float) starCoords[i][0], (float) starCoords[i][1], (float) starCoords[i][2])
-					.setColor((byte) starRGBA[i][0], (byte) starRGBA[i][1], (byte) starRGBA[i][2], (byte) starRGBA[i][3]);
-			addStarHeightWidthSize(builder, (float) height, (float) width, (float) starSizes[i]);
+			builder.addVertex(x, y, z).setColor(argb);
+			addStarHeightWidthSize(builder, height, width, size);
+		}
+	}
+	
+	/**
+	 * Writes the 4 corners of a Star, laid out as {@link net.povstalec.stellarview.client.render.shader.StellarViewVertexFormat#STAR_POS_COLOR_LY}.
+	 * Produces the same bytes as {@link #createStar(BufferBuilder, int)}, without going through a Buffer Builder for every vertex
+	 * @param pointer Address the vertexes are written to, must have at least {@link #STAR_VERTEX_BYTES} bytes available
+	 * @param i Index of the star
+	 */
+	public void createStarVertices(long pointer, int i)
+	{
+		int coordsIndex = i * POSITION_COMPONENTS;
+		float x = starCoords[coordsIndex];
+		float y = starCoords[coordsIndex + 1];
+		float z = starCoords[coordsIndex + 2];
+		
+		int rotationIndex = i * ROTATION_COMPONENTS;
+		float sinRandom = rotations[rotationIndex];
+		float cosRandom = rotations[rotationIndex + 1];
+		
+		int argb = starARGB[i];
+		float size = starSizes[i];
+		
+		// Same corners as createStar
+		for(int j = 0; j < 4; ++j)
+		{
+			float aLocation = (float) ((j & 2) - 1);
+			float bLocation = (float) ((j + 1 & 2) - 1);
+			
+			long vertex = pointer + (long) j * VERTEX_BYTES;
+			MemoryUtil.memPutFloat(vertex, x);
+			MemoryUtil.memPutFloat(vertex + 4, y);
+			MemoryUtil.memPutFloat(vertex + 8, z);
+			// Color is stored as RGBA bytes, just like BufferBuilder.setColor does it
+			MemoryUtil.memPutByte(vertex + 12, (byte) (argb >> 16));
+			MemoryUtil.memPutByte(vertex + 13, (byte) (argb >> 8));
+			MemoryUtil.memPutByte(vertex + 14, (byte) argb);
+			MemoryUtil.memPutByte(vertex + 15, (byte) (argb >> 24));
+			MemoryUtil.memPutFloat(vertex + 16, aLocation * cosRandom - bLocation * sinRandom);
+			MemoryUtil.memPutFloat(vertex + 20, bLocation * cosRandom + aLocation * sinRandom);
+			MemoryUtil.memPutFloat(vertex + 24, size);
+		}
+	}
+	
+	/**
+	 * Writes the single instance record of a Star, laid out as {@link net.povstalec.stellarview.client.render.shader.StellarViewVertexFormat#STAR_INSTANCE}
+	 * @param pointer Address the record is written to, must have at least {@link #INSTANCE_BYTES} bytes available
+	 * @param i Index of the star
+	 */
+	public void createStarInstance(long pointer, int i)
+	{
+		int coordsIndex = i * POSITION_COMPONENTS;
+		MemoryUtil.memPutFloat(pointer, starCoords[coordsIndex]);
+		MemoryUtil.memPutFloat(pointer + 4, starCoords[coordsIndex + 1]);
+		MemoryUtil.memPutFloat(pointer + 8, starCoords[coordsIndex + 2]);
+		
+		// Color is stored as RGBA bytes, just like BufferBuilder.setColor does it
+		int argb = starARGB[i];
+		MemoryUtil.memPutByte(pointer + 12, (byte) (argb >> 16));
+		MemoryUtil.memPutByte(pointer + 13, (byte) (argb >> 8));
+		MemoryUtil.memPutByte(pointer + 14, (byte) argb);
+		MemoryUtil.memPutByte(pointer + 15, (byte) (argb >> 24));
+		
+		int rotationIndex = i * ROTATION_COMPONENTS;
+		MemoryUtil.memPutFloat(pointer + 16, rotations[rotationIndex]);
+		MemoryUtil.memPutFloat(pointer + 20, rotations[rotationIndex + 1]);
+		MemoryUtil.memPutFloat(pointer + 24, starSizes[i]);
+	}
+	
+	/**
+	 * Same as rendertype_star.vsh
+	 */
+	private static float clampStar(float starSize, float distance)
+	{
+		starSize -= starSize * distance / 1000000F;
+		
+		return starSize < 0.04F ? 0.04F : starSize;
+	}
+	
+	/**
+	 * Writes the 4 corners of a Star already projected onto the sky sphere as seen from the reference position, laid out as DefaultVertexFormat.POSITION_COLOR.
+	 * This is the math of rendertype_star.vsh done once on the CPU, so drawing the Star only needs a pass-through shader for as long as the reference stays put
+	 * @param pointer Address the vertexes are written to, must have at least {@link #BAKED_STAR_VERTEX_BYTES} bytes available
+	 * @param i Index of the star
+	 * @param referenceX X coordinate of the reference position in light years, relative to the Star Field
+	 * @param referenceY Y coordinate of the reference position in light years, relative to the Star Field
+	 * @param referenceZ Z coordinate of the reference position in light years, relative to the Star Field
+	 * @return Distance between the Star and the reference position in light years, never less than {@link #MIN_BAKED_DISTANCE}
+	 */
+	public float createBakedStarVertices(long pointer, int i, float referenceX, float referenceY, float referenceZ)
+	{
+		int coordsIndex = i * POSITION_COMPONENTS;
+		float x = starCoords[coordsIndex] - referenceX;
+		float y = starCoords[coordsIndex + 1] - referenceY;
+		float z = starCoords[coordsIndex + 2] - referenceZ;
+		
+		float distance = (float) Math.sqrt(x * x + y * y + z * z);
+		
+		// A Star right at the reference would have no direction to be projected in, so it's placed straight up instead
+		if(!(distance >= MIN_BAKED_DISTANCE))
+		{
+			x = 0F;
+			y = MIN_BAKED_DISTANCE;
+			z = 0F;
+			distance = MIN_BAKED_DISTANCE;
+		}
+		
+		// Stars appear dimmer the further away they are
+		int argb = starARGB[i];
+		float alpha = (argb >>> 24) / 255F;
+		alpha = Math.max(alpha - distance / 100000F, alpha * 0.1F);
+		
+		float starSize = clampStar(starSizes[i], distance);
+		
+		x /= distance;
+		y /= distance;
+		z /= distance;
+		
+		// Sines and cosines of the spherical angles of the normalized direction, which the shader gets through atan, sin and cos
+		float xzLength = (float) Math.sqrt(x * x + z * z);
+		float sinTheta = xzLength > 0F ? x / xzLength : 0F;
+		float cosTheta = xzLength > 0F ? z / xzLength : 1F;
+		float sinPhi = xzLength;
+		float cosPhi = y;
+		
+		int rotationIndex = i * ROTATION_COMPONENTS;
+		float sinRandom = rotations[rotationIndex];
+		float cosRandom = rotations[rotationIndex + 1];
+		
+		byte alphaByte = (byte) Math.round(alpha * 255F);
+		
+		// Same corners as createStarVertices
+		for(int j = 0; j < 4; ++j)
+		{
+			float aLocation = (float) ((j & 2) - 1);
+			float bLocation = (float) ((j + 1 & 2) - 1);
+			
+			float height = (aLocation * cosRandom - bLocation * sinRandom) * starSize;
+			float width = (bLocation * cosRandom + aLocation * sinRandom) * starSize;
+			
+			float heightProjectionXZ = - height * cosPhi;
+			
+			long vertex = pointer + (long) j * BAKED_VERTEX_BYTES;
+			MemoryUtil.memPutFloat(vertex, heightProjectionXZ * sinTheta - width * cosTheta + x * SKY_DISTANCE);
+			MemoryUtil.memPutFloat(vertex + 4, height * sinPhi + y * SKY_DISTANCE);
+			MemoryUtil.memPutFloat(vertex + 8, width * sinTheta + heightProjectionXZ * cosTheta + z * SKY_DISTANCE);
+			MemoryUtil.memPutByte(vertex + 12, (byte) (argb >> 16));
+			MemoryUtil.memPutByte(vertex + 13, (byte) (argb >> 8));
+			MemoryUtil.memPutByte(vertex + 14, (byte) argb);
+			MemoryUtil.memPutByte(vertex + 15, alphaByte);
 		}
+		
+		return distance;
 	}
 
 	public static void addStarHeightWidthSize(BufferBuilder builder, float height, float width, float size) {
@@ -0,0 +1,359 @@
+package net.povstalec.stellarview.common.util;
+
+import net.neoforged.fml.loading.FMLPaths;
+import net.povstalec.stellarview.StellarView;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Binary cache of generated Star Data, stored under the game directory.
+ * <p>
+ * Each file is named after a hash of the parameters that determine the Stars of a Star Field and is laid out as:
+ * magic, format version, generator version, number of Stars, key, Star Data, CRC32 of the Star Data.
+ * Files written by a different format or generator version, or failing the checksum, are deleted and regenerated.
+ * Loading a file marks it as used, once the cache grows past its size limit the files that have gone the longest without being used are deleted.
+ */
+public final class StarDataCache
+{
+	private static final int MAGIC = 0x53565346; // SVSF
+	public static final int FORMAT_VERSION = 1;
+	/**
+	 * Bump whenever Star generation changes in a way that changes the resulting Stars
+	 */
+	public static final int GENERATOR_VERSION = 2;
+	
+	public static final int KEY_BYTES = 16;
+	private static final int HEADER_BYTES = Integer.BYTES * 4 + KEY_BYTES;
+	private static final int CHECKSUM_BYTES = Long.BYTES;
+	
+	private static final String EXTENSION = ".stars";
+	
+	public static final long BYTES_PER_MB = 1024L * 1024L;
+	
+	public static Path cacheDirectory()
+	{
+		return FMLPaths.GAMEDIR.get().resolve(StellarView.MODID).resolve("star_cache");
+	}
+	
+	/**
+	 * @param parameters Every parameter that influences the generated Stars
+	 * @return Key identifying the Star Data generated from the parameters
+	 */
+	public static byte[] key(byte[] parameters)
+	{
+		try
+		{
+			return Arrays.copyOf(MessageDigest.getInstance("SHA-256").digest(parameters), KEY_BYTES);
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException("SHA-256 is not available", e);
+		}
+	}
+	
+	private static Path cacheFile(byte[] key)
+	{
+		return cacheDirectory().resolve(HexFormat.of().formatHex(key) + EXTENSION);
+	}
+	
+	private static long payloadBytes(int stars)
+	{
+		return (long) stars * StarData.BYTES_PER_STAR;
+	}
+	
+	/**
+	 * Loads cached Star Data via memory-mapped I/O
+	 * @param key Key of the Star Data
+	 * @param stars Expected number of Stars
+	 * @return Cached Star Data, or null if there is no valid cache for the key
+	 */
+	@Nullable
+	public static StarData load(byte[] key, int stars)
+	{
+		Path path = cacheFile(key);
+		
+		if(!Files.isRegularFile(path))
+			return null;
+		
+		long payloadBytes = payloadBytes(stars);
+		long fileBytes = HEADER_BYTES + payloadBytes + CHECKSUM_BYTES;
+		
+		if(fileBytes > Integer.MAX_VALUE)
+			return null;
+		
+		String invalidReason;
+		StarData starData = null;
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+		{
+			invalidReason = checkHeader(channel, key, stars, fileBytes);
+			
+			if(invalidReason == null)
+			{
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, payloadBytes + CHECKSUM_BYTES);
+				ByteBuffer payload = buffer.slice(0, (int) payloadBytes);
+				
+				CRC32 checksum = new CRC32();
+				checksum.update(payload.duplicate());
+				if(checksum.getValue() != buffer.getLong((int) payloadBytes))
+					invalidReason = "checksum mismatch";
+				else
+					starData = StarData.read(payload, stars); // Copies the Stars out of the mapped file
+			}
+		}
+		catch(IOException | RuntimeException e)
+		{
+			StellarView.LOGGER.warn("Failed to read Star cache " + path, e);
+			return null;
+		}
+		
+		// Only deleted once the channel has been closed, since Windows doesn't allow deleting files that are still open
+		if(invalidReason != null)
+			return invalidate(path, invalidReason);
+		
+		markUsed(path);
+		
+		return starData;
+	}
+	
+	/**
+	 * Reads the header into the heap, so files that turn out to be invalid never get mapped.
+	 * A mapping keeps the file in use until it's garbage collected, which would stop it from being deleted on Windows
+	 * @return Reason why the cache file can't be used, or null if its header matches the key
+	 */
+	@Nullable
+	private static String checkHeader(FileChannel channel, byte[] key, int stars, long fileBytes) throws IOException
+	{
+		if(channel.size() != fileBytes)
+			return "unexpected size";
+		
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		while(header.hasRemaining())
+		{
+			if(channel.read(header, header.position()) < 0)
+				return "unexpected size";
+		}
+		header.flip();
+		
+		if(header.getInt() != MAGIC)
+			return "not a Star cache file";
+		
+		if(header.getInt() != FORMAT_VERSION || header.getInt() != GENERATOR_VERSION)
+			return "outdated version";
+		
+		if(header.getInt() != stars)
+			return "different number of Stars";
+		
+		byte[] storedKey = new byte[KEY_BYTES];
+		header.get(storedKey);
+		if(!Arrays.equals(storedKey, key))
+			return "different key";
+		
+		return null;
+	}
+	
+	/**
+	 * Writes Star Data to the cache, replacing any previous file with the same key, then deletes the least recently used files until the cache fits into its size limit
+	 * @param key Key of the Star Data
+	 * @param starData Star Data to store
+	 * @param maxCacheBytes Number of bytes all cache files together may take up
+	 */
+	public static void save(byte[] key, StarData starData, long maxCacheBytes)
+	{
+		Path path = cacheFile(key);
+		long payload = payloadBytes(starData.getStars());
+		
+		if(HEADER_BYTES + payload + CHECKSUM_BYTES > Integer.MAX_VALUE)
+		{
+			StellarView.LOGGER.debug("Not caching " + starData.getStars() + " Stars, too many to fit into a single cache file");
+			return;
+		}
+		
+		if(HEADER_BYTES + payload + CHECKSUM_BYTES > maxCacheBytes)
+		{
+			StellarView.LOGGER.debug("Not caching " + starData.getStars() + " Stars, the cache file would be larger than the whole cache may be");
+			return;
+		}
+		
+		int payloadBytes = (int) payload;
+		
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payloadBytes + CHECKSUM_BYTES);
+		buffer.putInt(MAGIC);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.putInt(GENERATOR_VERSION);
+		buffer.putInt(starData.getStars());
+		buffer.put(key);
+		
+		starData.write(buffer);
+		
+		CRC32 checksum = new CRC32();
+		checksum.update(buffer.slice(HEADER_BYTES, payloadBytes));
+		buffer.putLong(checksum.getValue());
+		buffer.flip();
+		
+		try
+		{
+			Files.createDirectories(path.getParent());
+			
+			// Written to a temporary file first, that way a crash can't leave a half-written cache behind
+			Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+			try(FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE))
+			{
+				while(buffer.hasRemaining())
+				{
+					channel.write(buffer);
+				}
+			}
+			
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(IOException e)
+		{
+			StellarView.LOGGER.warn("Failed to write Star cache " + path, e);
+			return;
+		}
+		
+		prune(path, maxCacheBytes);
+	}
+	
+	/**
+	 * Deletes the cache files that have gone the longest without being used until all of them together fit into the size limit
+	 * @param keep File that was just written, it's never deleted
+	 * @param maxCacheBytes Number of bytes all cache files together may take up
+	 */
+	private static synchronized void prune(Path keep, long maxCacheBytes)
+	{
+		List<Path> files = new ArrayList<Path>();
+		try(Stream<Path> paths = Files.list(cacheDirectory()))
+		{
+			paths.filter(path -> path.getFileName().toString().endsWith(EXTENSION) && Files.isRegularFile(path)).forEach(files::add);
+		}
+		catch(IOException e)
+		{
+			StellarView.LOGGER.warn("Failed to list Star cache " + cacheDirectory(), e);
+			return;
+		}
+		
+		long cacheBytes = 0;
+		List<CacheFile> candidates = new ArrayList<CacheFile>();
+		for(Path path : files)
+		{
+			try
+			{
+				long size = Files.size(path);
+				cacheBytes += size;
+				if(!path.equals(keep))
+					candidates.add(new CacheFile(path, size, Files.getLastModifiedTime(path)));
+			}
+			catch(IOException e)
+			{
+				// Deleted by another thread in the meantime
+			}
+		}
+		
+		if(cacheBytes <= maxCacheBytes)
+			return;
+		
+		candidates.sort(Comparator.comparing(CacheFile::lastUsed));
+		
+		int deleted = 0;
+		for(CacheFile file : candidates)
+		{
+			if(cacheBytes <= maxCacheBytes)
+				break;
+			
+			try
+			{
+				Files.deleteIfExists(file.path());
+				cacheBytes -= file.size();
+				deleted++;
+			}
+			catch(IOException e)
+			{
+				StellarView.LOGGER.warn("Failed to delete Star cache " + file.path(), e);
+			}
+		}
+		
+		StellarView.LOGGER.debug("Deleted " + deleted + " least recently used Star cache files, the cache now takes up " + cacheBytes + " out of " + maxCacheBytes + " bytes");
+	}
+	
+	/**
+	 * Moves the modification time of the file to now, which is what the least recently used files are picked by
+	 */
+	private static void markUsed(Path path)
+	{
+		try
+		{
+			Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+		}
+		catch(IOException e)
+		{
+			StellarView.LOGGER.debug("Failed to mark Star cache " + path + " as used");
+		}
+	}
+	
+	@Nullable
+	private static StarData invalidate(Path path, String reason)
+	{
+		StellarView.LOGGER.debug("Invalidating Star cache " + path + ": " + reason);
+		
+		try
+		{
+			Files.deleteIfExists(path);
+		}
+		catch(IOException e)
+		{
+			StellarView.LOGGER.warn("Failed to delete Star cache " + path, e);
+		}
+		
+		return null;
+	}
+	
+	
+	
+	private static class CacheFile
+	{
+		private final Path path;
+		private final long size;
+		private final FileTime lastUsed;
+		
+		private CacheFile(Path path, long size, FileTime lastUsed)
+		{
+			this.path = path;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+		
+		public Path path()
+		{
+			return path;
+		}
+		
+		public long size()
+		{
+			return size;
+		}
+		
+		public FileTime lastUsed()
+		{
+			return lastUsed;
+		}
+	}
+}
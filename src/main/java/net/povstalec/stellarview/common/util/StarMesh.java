@@ -0,0 +1,266 @@
+package net.povstalec.stellarview.common.util;
+
+import com.mojang.blaze3d.vertex.DefaultVertexFormat;
+import com.mojang.blaze3d.vertex.VertexFormat;
+import net.povstalec.stellarview.client.render.shader.StellarViewVertexFormat;
+import org.joml.Vector3f;
+import org.lwjgl.system.MemoryUtil;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+
+/**
+ * Star data and vertex bytes of a Star Field, built off the render thread and waiting to be uploaded.
+ * The vertexes are written straight into a single native buffer, which gets uploaded as it is.
+ * They are drawn in chunks of a fixed number of Stars, so that no single draw reaches past what a 16-bit index can address.
+ * Instanced meshes instead hold a single record per Star, see {@link StarData#createStarInstance(long, int)}, or a compact one, see {@link StarQuantization}.
+ * Baked meshes hold vertexes that have already been projected onto the sky, see {@link #buildBaked(StarData, int, Vector3f)}
+ */
+public class StarMesh implements AutoCloseable
+{
+	private final StarData starData;
+	@Nullable
+	private ByteBuffer vertices;
+	private final int starsPerChunk;
+	@Nullable
+	private Vector3f bakeReference; // Set if the vertexes have been projected onto the sky as seen from this position
+	private float nearestStar;
+	@Nullable
+	private ByteBuffer instances;
+	@Nullable
+	private StarQuantization quantization; // Set if the instances are compact records
+	@Nullable
+	private SkyTiles skyTiles;
+	@Nullable
+	private StarOctree octree;
+	@Nullable
+	private StarMesh impostorMesh;
+	
+	public StarMesh(StarData starData, ByteBuffer vertices, int starsPerChunk)
+	{
+		this.starData = starData;
+		this.vertices = vertices;
+		this.starsPerChunk = starsPerChunk;
+		this.instances = null;
+	}
+	
+	public StarMesh(StarData starData, ByteBuffer instances)
+	{
+		this.starData = starData;
+		this.vertices = null;
+		this.starsPerChunk = 0;
+		this.instances = instances;
+	}
+	
+	public StarMesh(StarData starData, ByteBuffer instances, StarQuantization quantization)
+	{
+		this(starData, instances);
+		this.quantization = quantization;
+	}
+	
+	/**
+	 * Builds the vertexes of every Star with raw stores into a buffer of the exact size, doesn't touch any GL state so it can run on any thread
+	 * @param starData Star Data the vertexes are created from
+	 * @param starsPerChunk Maximum number of Stars drawn by a single draw
+	 * @return Star Mesh containing all Stars of the Star Data
+	 */
+	public static StarMesh build(StarData starData, int starsPerChunk)
+	{
+		VertexFormat format = StellarViewVertexFormat.STAR_POS_COLOR_LY.get();
+		if(format.getVertexSize() != StarData.VERTEX_BYTES)
+			throw new IllegalStateException("Star vertex format is " + format.getVertexSize() + " bytes, but Stars are written as " + StarData.VERTEX_BYTES + " bytes");
+		
+		int stars = starData.getStars();
+		ByteBuffer vertices = MemoryUtil.memAlloc((long) stars * StarData.STAR_VERTEX_BYTES);
+		long pointer = MemoryUtil.memAddress(vertices);
+		
+		for(int i = 0; i < stars; i++)
+		{
+			starData.createStarVertices(pointer + (long) i * StarData.STAR_VERTEX_BYTES, i);
+		}
+		
+		return new StarMesh(starData, vertices, starsPerChunk);
+	}
+	
+	/**
+	 * Builds the vertexes of every Star projected onto the sky as seen from the reference position, see {@link StarData#createBakedStarVertices(long, int, float, float, float)}
+	 * @param starData Star Data the vertexes are created from
+	 * @param starsPerChunk Maximum number of Stars drawn by a single draw
+	 * @param reference Position the Stars are seen from in light years, relative to the Star Field
+	 * @return Baked Star Mesh containing all Stars of the Star Data
+	 */
+	public static StarMesh buildBaked(StarData starData, int starsPerChunk, Vector3f reference)
+	{
+		int stars = starData.getStars();
+		ByteBuffer vertices = MemoryUtil.memAlloc((long) stars * StarData.BAKED_STAR_VERTEX_BYTES);
+		long pointer = MemoryUtil.memAddress(vertices);
+		
+		float nearestStar = Float.POSITIVE_INFINITY;
+		for(int i = 0; i < stars; i++)
+		{
+			float distance = starData.createBakedStarVertices(pointer + (long) i * StarData.BAKED_STAR_VERTEX_BYTES, i, reference.x, reference.y, reference.z);
+			nearestStar = Math.min(nearestStar, distance);
+		}
+		
+		StarMesh starMesh = new StarMesh(starData, vertices, starsPerChunk);
+		starMesh.bakeReference = new Vector3f(reference);
+		starMesh.nearestStar = nearestStar;
+		
+		return starMesh;
+	}
+	
+	/**
+	 * Builds a single instance record for every Star
+	 * @param starData Star Data the records are created from
+	 * @return Instanced Star Mesh containing all Stars of the Star Data
+	 */
+	public static StarMesh buildInstanced(StarData starData)
+	{
+		int stars = starData.getStars();
+		ByteBuffer instances = MemoryUtil.memAlloc((long) stars * StarData.INSTANCE_BYTES);
+		long pointer = MemoryUtil.memAddress(instances);
+		
+		for(int i = 0; i < stars; i++)
+		{
+			starData.createStarInstance(pointer + (long) i * StarData.INSTANCE_BYTES, i);
+		}
+		
+		return new StarMesh(starData, instances);
+	}
+	
+	/**
+	 * Builds a single compact record for every Star, quantized to the bounds of the Star Data
+	 * @param starData Star Data the records are created from
+	 * @return Compact instanced Star Mesh containing all Stars of the Star Data
+	 */
+	public static StarMesh buildCompact(StarData starData)
+	{
+		int stars = starData.getStars();
+		StarQuantization quantization = StarQuantization.of(starData);
+		ByteBuffer instances = MemoryUtil.memAlloc((long) stars * StarQuantization.COMPACT_INSTANCE_BYTES);
+		long pointer = MemoryUtil.memAddress(instances);
+		
+		for(int i = 0; i < stars; i++)
+		{
+			quantization.createStarInstance(starData, pointer + (long) i * StarQuantization.COMPACT_INSTANCE_BYTES, i);
+		}
+		
+		return new StarMesh(starData, instances, quantization);
+	}
+	
+	public StarData starData()
+	{
+		return starData;
+	}
+	
+	/**
+	 * @param skyTiles Sky Tiles the Stars of this mesh are sorted by
+	 * @return This mesh
+	 */
+	public StarMesh setSkyTiles(@Nullable SkyTiles skyTiles)
+	{
+		this.skyTiles = skyTiles;
+		
+		return this;
+	}
+	
+	@Nullable
+	public SkyTiles skyTiles()
+	{
+		return skyTiles;
+	}
+	
+	/**
+	 * @param octree Octree the Stars of this mesh are sorted by
+	 * @param impostorMesh Mesh containing the impostors of the octree
+	 * @return This mesh
+	 */
+	public StarMesh setOctree(StarOctree octree, StarMesh impostorMesh)
+	{
+		this.octree = octree;
+		this.impostorMesh = impostorMesh;
+		
+		return this;
+	}
+	
+	@Nullable
+	public StarOctree octree()
+	{
+		return octree;
+	}
+	
+	@Nullable
+	public StarMesh impostorMesh()
+	{
+		return impostorMesh;
+	}
+	
+	public boolean isInstanced()
+	{
+		return instances != null;
+	}
+	
+	public boolean isBaked()
+	{
+		return bakeReference != null;
+	}
+	
+	/**
+	 * @return Position the vertexes have been baked for, or null if they get projected by the shader every frame
+	 */
+	@Nullable
+	public Vector3f bakeReference()
+	{
+		return bakeReference;
+	}
+	
+	/**
+	 * @return Distance from the bake reference to the closest Star in light years, the Star that moves across the sky the fastest when the reference moves
+	 */
+	public float nearestStar()
+	{
+		return nearestStar;
+	}
+	
+	public int chunks()
+	{
+		return instances != null ? 1 : (starData.getStars() + starsPerChunk - 1) / starsPerChunk;
+	}
+	
+	/**
+	 * Uploads the vertexes to the Star Buffer (must be called on the render thread) and frees the native memory that held them
+	 * @param starBuffer Star Buffer the vertexes are uploaded to
+	 */
+	public void upload(StarBuffer starBuffer)
+	{
+		starBuffer.bind();
+		if(instances != null && quantization != null)
+			starBuffer.uploadCompactInstances(instances, starData.getStars(), quantization);
+		else if(instances != null)
+			starBuffer.uploadInstances(instances, starData.getStars(), StellarViewVertexFormat.STAR_INSTANCE.get());
+		else if(vertices != null)
+			starBuffer.uploadVertices(vertices, starData.getStars(), starsPerChunk, isBaked() ? DefaultVertexFormat.POSITION_COLOR : StellarViewVertexFormat.STAR_POS_COLOR_LY.get());
+		StarBuffer.unbind();
+		
+		close();
+	}
+	
+	@Override
+	public void close()
+	{
+		if(vertices != null)
+		{
+			MemoryUtil.memFree(vertices);
+			vertices = null;
+		}
+		
+		if(instances != null)
+		{
+			MemoryUtil.memFree(instances);
+			instances = null;
+		}
+		
+		if(impostorMesh != null)
+			impostorMesh.close();
+	}
+}
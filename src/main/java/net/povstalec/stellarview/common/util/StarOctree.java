@@ -0,0 +1,442 @@
+package net.povstalec.stellarview.common.util;
+
+import org.joml.FrustumIntersection;
+
+import java.util.Arrays;
+
+/**
+ * Octree over the Stars of each Sky Tile segment (one magnitude band of a tile), used for distance based level of detail.
+ * <p>
+ * Inside every segment the Stars are sorted in Morton order, which makes every octant a contiguous range of Stars.
+ * Octants far enough away that all of their Stars are drawn at the minimum alpha and size (see clampStar in rendertype_star.vsh)
+ * are either skipped when their combined light is invisible, or replaced with a single impostor point once they are about a pixel across.
+ * Nodes are stored in flat arrays, the children of a node always have consecutive indexes.
+ */
+public class StarOctree
+{
+	public static final int LEAF_STARS = 64;
+	public static final int MORTON_LEVELS = 10;
+	
+	/**
+	 * Angle (in radians) under which an octant counts as a single point, that's roughly one pixel with the default field of view at 1080p
+	 */
+	public static final float IMPOSTOR_ANGLE = 0.001F;
+	
+	// Values used by rendertype_star.vsh
+	private static final float MIN_STAR_SIZE = 0.04F;
+	private static final float ALPHA_FADE_DISTANCE = 100000F;
+	private static final float SIZE_FADE_DISTANCE = 1000000F;
+	private static final float MIN_ALPHA_MULTIPLIER = 0.1F;
+	
+	/**
+	 * Stars at minimum alpha whose alpha (0-255) adds up to less than this don't even make up a single step of alpha
+	 */
+	private static final float MIN_VISIBLE_ALPHA = 1F / MIN_ALPHA_MULTIPLIER;
+	
+	private final StarData starData;
+	private final StarData impostors;
+	
+	private final int[] segmentRoots = new int[SkyTiles.SEGMENTS];
+	
+	private int nodeCount = 0;
+	private int[] starStarts = new int[64];
+	private int[] starEnds = new int[64];
+	private int[] firstChildren = new int[64];
+	private int[] childCounts = new int[64];
+	
+	private final float[] bounds; // minX, minY, minZ, maxX, maxY, maxZ
+	private final float[] radii;
+	private final float[] fadeDistances; // Distance after which all Stars of the node are at minimum alpha and size
+	private final float[] subtreeFadeDistances; // Smallest fade distance of the node and all of its descendants
+	private final float[] alphaSums;
+	
+	/**
+	 * Sorts the Stars of every Sky Tile segment in Morton order and builds the octree over them
+	 * @param tileSorted Stars already sorted by the Sky Tiles
+	 * @param skyTiles Sky Tiles the Stars are sorted by
+	 */
+	public StarOctree(StarData tileSorted, SkyTiles skyTiles)
+	{
+		int[] order = new int[tileSorted.getStars()];
+		int[] codes = new int[tileSorted.getStars()];
+		
+		for(int tile = 0; tile < SkyTiles.TILES; tile++)
+		{
+			for(int band = 0; band < SkyTiles.BANDS; band++)
+			{
+				mortonSort(tileSorted, skyTiles.segmentStart(tile, band), skyTiles.segmentEnd(tile, band), order, codes);
+			}
+		}
+		
+		this.starData = tileSorted.reorder(order);
+		
+		for(int tile = 0; tile < SkyTiles.TILES; tile++)
+		{
+			for(int band = 0; band < SkyTiles.BANDS; band++)
+			{
+				int segment = tile * SkyTiles.BANDS + band;
+				int start = skyTiles.segmentStart(tile, band);
+				int end = skyTiles.segmentEnd(tile, band);
+				
+				if(start == end)
+				{
+					segmentRoots[segment] = -1;
+					continue;
+				}
+				
+				segmentRoots[segment] = newNode(start, end);
+				split(segmentRoots[segment], 0, codes);
+			}
+		}
+		
+		this.bounds = new float[nodeCount * 6];
+		this.radii = new float[nodeCount];
+		this.fadeDistances = new float[nodeCount];
+		this.subtreeFadeDistances = new float[nodeCount];
+		this.alphaSums = new float[nodeCount];
+		this.impostors = new StarData(nodeCount);
+		
+		aggregate();
+	}
+	
+	/**
+	 * Sorts the Stars in the range by the Morton code of their position inside the bounding box of the range
+	 */
+	private static void mortonSort(StarData starData, int start, int end, int[] order, int[] codes)
+	{
+		if(start == end)
+			return;
+		
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+		for(int i = start; i < end; i++)
+		{
+			minX = Math.min(minX, starData.getX(i));
+			minY = Math.min(minY, starData.getY(i));
+			minZ = Math.min(minZ, starData.getZ(i));
+			maxX = Math.max(maxX, starData.getX(i));
+			maxY = Math.max(maxY, starData.getY(i));
+			maxZ = Math.max(maxZ, starData.getZ(i));
+		}
+		
+		float scaleX = cellScale(minX, maxX);
+		float scaleY = cellScale(minY, maxY);
+		float scaleZ = cellScale(minZ, maxZ);
+		
+		// Upper half holds the code, lower half the Star index, so sorting the keys sorts the Stars by code
+		long[] keys = new long[end - start];
+		for(int i = start; i < end; i++)
+		{
+			int code = spreadBits(quantize(starData.getX(i), minX, scaleX)) << 2
+					| spreadBits(quantize(starData.getY(i), minY, scaleY)) << 1
+					| spreadBits(quantize(starData.getZ(i), minZ, scaleZ));
+			
+			keys[i - start] = (long) code << 32 | i;
+		}
+		
+		Arrays.sort(keys);
+		
+		for(int i = start; i < end; i++)
+		{
+			order[i] = (int) keys[i - start];
+			codes[i] = (int) (keys[i - start] >>> 32);
+		}
+	}
+	
+	private static float cellScale(float min, float max)
+	{
+		return max > min ? (1 << MORTON_LEVELS) / (max - min) : 0F;
+	}
+	
+	private static int quantize(float value, float min, float scale)
+	{
+		return Math.min((int) ((value - min) * scale), (1 << MORTON_LEVELS) - 1);
+	}
+	
+	/**
+	 * Spreads the lowest 10 bits out so that there are two zero bits between each of them
+	 */
+	private static int spreadBits(int value)
+	{
+		value &= 0x3FF;
+		value = (value | value << 16) & 0x030000FF;
+		value = (value | value << 8) & 0x0300F00F;
+		value = (value | value << 4) & 0x030C30C3;
+		value = (value | value << 2) & 0x09249249;
+		
+		return value;
+	}
+	
+	private int newNode(int start, int end)
+	{
+		if(nodeCount == starStarts.length)
+		{
+			int capacity = nodeCount * 2;
+			starStarts = Arrays.copyOf(starStarts, capacity);
+			starEnds = Arrays.copyOf(starEnds, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			childCounts = Arrays.copyOf(childCounts, capacity);
+		}
+		
+		starStarts[nodeCount] = start;
+		starEnds[nodeCount] = end;
+		firstChildren[nodeCount] = -1;
+		childCounts[nodeCount] = 0;
+		
+		return nodeCount++;
+	}
+	
+	private void split(int node, int level, int[] codes)
+	{
+		int start = starStarts[node];
+		int end = starEnds[node];
+		
+		if(end - start <= LEAF_STARS || level == MORTON_LEVELS)
+			return;
+		
+		// Stars inside a node share all higher bits, so the next 3 bits are already sorted
+		int shift = (MORTON_LEVELS - 1 - level) * 3;
+		int firstChild = nodeCount;
+		
+		for(int i = start; i < end;)
+		{
+			int octant = codes[i] >>> shift & 7;
+			int j = i + 1;
+			while(j < end && (codes[j] >>> shift & 7) == octant)
+			{
+				j++;
+			}
+			
+			newNode(i, j);
+			i = j;
+		}
+		
+		firstChildren[node] = firstChild;
+		childCounts[node] = nodeCount - firstChild;
+		
+		for(int child = firstChild; child < firstChild + childCounts[node]; child++)
+		{
+			split(child, level + 1, codes);
+		}
+	}
+	
+	/**
+	 * Fills in the bounds, fade distances and impostors of all nodes, children always come after their parent so going backwards visits them first
+	 */
+	private void aggregate()
+	{
+		float[] maxAlphas = new float[nodeCount];
+		float[] maxSizes = new float[nodeCount];
+		// Alpha weighted sums of position and color
+		double[] weighted = new double[nodeCount * 6];
+		
+		for(int node = nodeCount - 1; node >= 0; node--)
+		{
+			int boundsIndex = node * 6;
+			bounds[boundsIndex] = bounds[boundsIndex + 1] = bounds[boundsIndex + 2] = Float.POSITIVE_INFINITY;
+			bounds[boundsIndex + 3] = bounds[boundsIndex + 4] = bounds[boundsIndex + 5] = Float.NEGATIVE_INFINITY;
+			
+			if(childCounts[node] == 0)
+			{
+				for(int i = starStarts[node]; i < starEnds[node]; i++)
+				{
+					float x = starData.getX(i);
+					float y = starData.getY(i);
+					float z = starData.getZ(i);
+					int argb = starData.getARGB(i);
+					float alpha = argb >>> 24;
+					
+					includeBounds(boundsIndex, x, y, z, x, y, z);
+					maxAlphas[node] = Math.max(maxAlphas[node], alpha);
+					maxSizes[node] = Math.max(maxSizes[node], starData.getSize(i));
+					alphaSums[node] += alpha;
+					
+					int weightedIndex = node * 6;
+					weighted[weightedIndex] += alpha * x;
+					weighted[weightedIndex + 1] += alpha * y;
+					weighted[weightedIndex + 2] += alpha * z;
+					weighted[weightedIndex + 3] += alpha * (argb >> 16 & 0xFF);
+					weighted[weightedIndex + 4] += alpha * (argb >> 8 & 0xFF);
+					weighted[weightedIndex + 5] += alpha * (argb & 0xFF);
+				}
+			}
+			else
+			{
+				for(int child = firstChildren[node]; child < firstChildren[node] + childCounts[node]; child++)
+				{
+					int childBounds = child * 6;
+					includeBounds(boundsIndex, bounds[childBounds], bounds[childBounds + 1], bounds[childBounds + 2],
+							bounds[childBounds + 3], bounds[childBounds + 4], bounds[childBounds + 5]);
+					maxAlphas[node] = Math.max(maxAlphas[node], maxAlphas[child]);
+					maxSizes[node] = Math.max(maxSizes[node], maxSizes[child]);
+					alphaSums[node] += alphaSums[child];
+					
+					for(int j = 0; j < 6; j++)
+					{
+						weighted[node * 6 + j] += weighted[child * 6 + j];
+					}
+				}
+			}
+			
+			float sizeX = bounds[boundsIndex + 3] - bounds[boundsIndex];
+			float sizeY = bounds[boundsIndex + 4] - bounds[boundsIndex + 1];
+			float sizeZ = bounds[boundsIndex + 5] - bounds[boundsIndex + 2];
+			radii[node] = 0.5F * (float) Math.sqrt(sizeX * sizeX + sizeY * sizeY + sizeZ * sizeZ);
+			
+			// Shader: alpha - distance / 100000 reaches alpha * 0.1 and size - size * distance / 1000000 reaches the minimum size
+			float alphaFade = (1F - MIN_ALPHA_MULTIPLIER) * maxAlphas[node] / 255F * ALPHA_FADE_DISTANCE;
+			float sizeFade = maxSizes[node] > MIN_STAR_SIZE ? (1F - MIN_STAR_SIZE / maxSizes[node]) * SIZE_FADE_DISTANCE : 0F;
+			fadeDistances[node] = Math.max(alphaFade, sizeFade);
+			
+			subtreeFadeDistances[node] = fadeDistances[node];
+			for(int child = firstChildren[node]; child < firstChildren[node] + childCounts[node]; child++)
+			{
+				subtreeFadeDistances[node] = Math.min(subtreeFadeDistances[node], subtreeFadeDistances[child]);
+			}
+			
+			setImpostor(node, weighted, maxSizes[node]);
+		}
+	}
+	
+	private void includeBounds(int boundsIndex, float minX, float minY, float minZ, float maxX, float maxY, float maxZ)
+	{
+		bounds[boundsIndex] = Math.min(bounds[boundsIndex], minX);
+		bounds[boundsIndex + 1] = Math.min(bounds[boundsIndex + 1], minY);
+		bounds[boundsIndex + 2] = Math.min(bounds[boundsIndex + 2], minZ);
+		bounds[boundsIndex + 3] = Math.max(bounds[boundsIndex + 3], maxX);
+		bounds[boundsIndex + 4] = Math.max(bounds[boundsIndex + 4], maxY);
+		bounds[boundsIndex + 5] = Math.max(bounds[boundsIndex + 5], maxZ);
+	}
+	
+	/**
+	 * The impostor sits at the alpha weighted center of the Stars, with their alpha weighted color and their alpha added together
+	 */
+	private void setImpostor(int node, double[] weighted, float size)
+	{
+		int weightedIndex = node * 6;
+		float alphaSum = alphaSums[node];
+		
+		if(alphaSum <= 0F)
+		{
+			int boundsIndex = node * 6;
+			impostors.setPoint(node, (bounds[boundsIndex] + bounds[boundsIndex + 3]) / 2, (bounds[boundsIndex + 1] + bounds[boundsIndex + 4]) / 2,
+					(bounds[boundsIndex + 2] + bounds[boundsIndex + 5]) / 2, 0, size);
+			return;
+		}
+		
+		int argb = StarData.packARGB((int) (weighted[weightedIndex + 3] / alphaSum), (int) (weighted[weightedIndex + 4] / alphaSum),
+				(int) (weighted[weightedIndex + 5] / alphaSum), (int) Math.min(alphaSum, 255F));
+		
+		impostors.setPoint(node, (float) (weighted[weightedIndex] / alphaSum), (float) (weighted[weightedIndex + 1] / alphaSum),
+				(float) (weighted[weightedIndex + 2] / alphaSum), argb, size);
+	}
+	
+	/**
+	 * @return Stars sorted by Sky Tile and then by octant
+	 */
+	public StarData starData()
+	{
+		return starData;
+	}
+	
+	/**
+	 * @return One impostor point per node, indexed by node
+	 */
+	public StarData impostors()
+	{
+		return impostors;
+	}
+	
+	public int nodeCount()
+	{
+		return nodeCount;
+	}
+	
+	/**
+	 * @return Distance from the point to the bounding box of the node, 0 if the point is inside
+	 */
+	public float distance(int node, float x, float y, float z)
+	{
+		int boundsIndex = node * 6;
+		float dx = Math.max(Math.max(bounds[boundsIndex] - x, x - bounds[boundsIndex + 3]), 0F);
+		float dy = Math.max(Math.max(bounds[boundsIndex + 1] - y, y - bounds[boundsIndex + 4]), 0F);
+		float dz = Math.max(Math.max(bounds[boundsIndex + 2] - z, z - bounds[boundsIndex + 5]), 0F);
+		
+		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+	
+	/**
+	 * @return Distance from the point to the furthest corner of the bounding box of the node
+	 */
+	public float maxDistance(int node, float x, float y, float z)
+	{
+		int boundsIndex = node * 6;
+		float dx = Math.max(Math.abs(bounds[boundsIndex] - x), Math.abs(bounds[boundsIndex + 3] - x));
+		float dy = Math.max(Math.abs(bounds[boundsIndex + 1] - y), Math.abs(bounds[boundsIndex + 4] - y));
+		float dz = Math.max(Math.abs(bounds[boundsIndex + 2] - z), Math.abs(bounds[boundsIndex + 5] - z));
+		
+		return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+	}
+	
+	/**
+	 * Collects the Stars and impostors that need to be drawn for the viewer
+	 * @param skyTiles Sky Tiles the Stars are sorted by
+	 * @param frustum Frustum in the space Stars are drawn in, the viewer is at the origin
+	 * @param viewerX X coordinate of the viewer, in the same space as the Star coordinates
+	 * @param viewerY Y coordinate of the viewer
+	 * @param viewerZ Z coordinate of the viewer
+	 * @param bands Number of the brightest magnitude bands to draw, see {@link SkyTiles#visibleBands(float, float)}
+	 * @param lastBandShare Share of the Stars of the last band to draw, see {@link SkyTiles#lastBandShare(float, int)}
+	 * @param stars Receives the ranges of Stars to draw
+	 * @param impostorRanges Receives the ranges of impostors to draw
+	 */
+	public void visibleRanges(SkyTiles skyTiles, FrustumIntersection frustum, float viewerX, float viewerY, float viewerZ, int bands, float lastBandShare,
+			StarRanges stars, StarRanges impostorRanges)
+	{
+		float drift = skyTiles.drift(viewerX, viewerY, viewerZ);
+		
+		for(int tile = 0; tile < SkyTiles.TILES; tile++)
+		{
+			if(skyTiles.tileStart(tile) == skyTiles.tileEnd(tile) || !skyTiles.isVisible(tile, frustum, drift))
+				continue;
+			
+			for(int band = 0; band < bands; band++)
+			{
+				int root = segmentRoots[tile * SkyTiles.BANDS + band];
+				if(root >= 0)
+					collect(root, viewerX, viewerY, viewerZ, band == bands - 1 ? lastBandShare : 1F, stars, impostorRanges);
+			}
+		}
+	}
+	
+	private void collect(int node, float viewerX, float viewerY, float viewerZ, float share, StarRanges stars, StarRanges impostorRanges)
+	{
+		float distance = distance(node, viewerX, viewerY, viewerZ);
+		
+		if(distance >= fadeDistances[node])
+		{
+			// Every Star of the node is at minimum alpha and size
+			if(alphaSums[node] < MIN_VISIBLE_ALPHA)
+				return;
+			
+			if(radii[node] <= distance * IMPOSTOR_ANGLE)
+			{
+				impostorRanges.add(node, node + 1);
+				return;
+			}
+		}
+		
+		// Leaves and nodes where no descendant can reach its fade distance are drawn Star by Star,
+		// a band that is only partly drawn gets cut down leaf by leaf so the Stars left out are spread over the whole node
+		if(childCounts[node] == 0 || share >= 1F && maxDistance(node, viewerX, viewerY, viewerZ) < subtreeFadeDistances[node])
+		{
+			stars.add(starStarts[node], SkyTiles.trimmedEnd(starStarts[node], starEnds[node], share));
+			return;
+		}
+		
+		for(int child = firstChildren[node]; child < firstChildren[node] + childCounts[node]; child++)
+		{
+			collect(child, viewerX, viewerY, viewerZ, share, stars, impostorRanges);
+		}
+	}
+}
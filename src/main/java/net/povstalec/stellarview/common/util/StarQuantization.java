@@ -0,0 +1,136 @@
+package net.povstalec.stellarview.common.util;
+
+import net.minecraft.util.Mth;
+import net.povstalec.stellarview.client.render.shader.StarShaderInstance;
+import org.lwjgl.system.MemoryUtil;
+
+/**
+ * Bounds that the compact Star records of a single Star Buffer are quantized to.
+ * Every coordinate is stored as one of 65536 steps between the minimum and maximum of that axis, and the size as one of 65536 steps up to the largest size,
+ * so a record takes 16 bytes instead of the 28 bytes of a regular instance record
+ */
+public class StarQuantization
+{
+	/**
+	 * Size of a single Star in the compact format: quantized position and size, RGBA bytes, quantized sin and cos
+	 */
+	public static final int COMPACT_INSTANCE_BYTES = 4 * Short.BYTES + 4 + 2 * Short.BYTES;
+	
+	private static final int STEPS = 65535;
+	private static final int ROTATION_STEPS = Short.MAX_VALUE;
+	
+	private final float minX;
+	private final float minY;
+	private final float minZ;
+	
+	private final float stepX;
+	private final float stepY;
+	private final float stepZ;
+	private final float sizeStep;
+	
+	private StarQuantization(float minX, float minY, float minZ, float stepX, float stepY, float stepZ, float sizeStep)
+	{
+		this.minX = minX;
+		this.minY = minY;
+		this.minZ = minZ;
+		
+		this.stepX = stepX;
+		this.stepY = stepY;
+		this.stepZ = stepZ;
+		this.sizeStep = sizeStep;
+	}
+	
+	/**
+	 * @return Quantization covering the bounding box and sizes of all Stars of the Star Data
+	 */
+	public static StarQuantization of(StarData starData)
+	{
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+		float maxSize = 0F;
+		
+		for(int i = 0; i < starData.getStars(); i++)
+		{
+			minX = Math.min(minX, starData.getX(i));
+			minY = Math.min(minY, starData.getY(i));
+			minZ = Math.min(minZ, starData.getZ(i));
+			
+			maxX = Math.max(maxX, starData.getX(i));
+			maxY = Math.max(maxY, starData.getY(i));
+			maxZ = Math.max(maxZ, starData.getZ(i));
+			
+			maxSize = Math.max(maxSize, starData.getSize(i));
+		}
+		
+		if(starData.getStars() == 0)
+			return new StarQuantization(0F, 0F, 0F, 1F, 1F, 1F, 1F);
+		
+		return new StarQuantization(minX, minY, minZ, step(maxX - minX), step(maxY - minY), step(maxZ - minZ), step(maxSize));
+	}
+	
+	private static float step(float extent)
+	{
+		// Axes where every Star lies on the same plane still need a step the shader can multiply by
+		return extent > 0F ? extent / STEPS : 1F;
+	}
+	
+	private static int quantize(float value, float min, float step)
+	{
+		return Mth.clamp(Math.round((value - min) / step), 0, STEPS);
+	}
+	
+	/**
+	 * Writes the compact record of a single Star
+	 * @param pointer Address the record is written to, must have at least {@link #COMPACT_INSTANCE_BYTES} bytes available
+	 * @param i Index of the star
+	 */
+	public void createStarInstance(StarData starData, long pointer, int i)
+	{
+		MemoryUtil.memPutShort(pointer, (short) quantize(starData.getX(i), minX, stepX));
+		MemoryUtil.memPutShort(pointer + 2, (short) quantize(starData.getY(i), minY, stepY));
+		MemoryUtil.memPutShort(pointer + 4, (short) quantize(starData.getZ(i), minZ, stepZ));
+		MemoryUtil.memPutShort(pointer + 6, (short) quantize(starData.getSize(i), 0F, sizeStep));
+		
+		// Color is stored as RGBA bytes, just like BufferBuilder.setColor does it
+		int argb = starData.getARGB(i);
+		MemoryUtil.memPutByte(pointer + 8, (byte) (argb >> 16));
+		MemoryUtil.memPutByte(pointer + 9, (byte) (argb >> 8));
+		MemoryUtil.memPutByte(pointer + 10, (byte) argb);
+		MemoryUtil.memPutByte(pointer + 11, (byte) (argb >> 24));
+		
+		MemoryUtil.memPutShort(pointer + 12, (short) Math.round(starData.getSin(i) * ROTATION_STEPS));
+		MemoryUtil.memPutShort(pointer + 14, (short) Math.round(starData.getCos(i) * ROTATION_STEPS));
+	}
+	
+	/**
+	 * @return Distance between the position of the Star and the position its compact record ends up at in light years
+	 */
+	public float positionError(StarData starData, int i)
+	{
+		float x = minX + quantize(starData.getX(i), minX, stepX) * stepX - starData.getX(i);
+		float y = minY + quantize(starData.getY(i), minY, stepY) * stepY - starData.getY(i);
+		float z = minZ + quantize(starData.getZ(i), minZ, stepZ) * stepZ - starData.getZ(i);
+		
+		return (float) Math.sqrt(x * x + y * y + z * z);
+	}
+	
+	/**
+	 * @return Largest possible distance between a Star and its quantized position, half a step along each axis
+	 */
+	public float maxPositionError()
+	{
+		return 0.5F * (float) Math.sqrt(stepX * stepX + stepY * stepY + stepZ * stepZ);
+	}
+	
+	/**
+	 * Sets the uniforms the compact Star shader turns the quantized records back into light years with
+	 */
+	public void apply(StarShaderInstance shaderInstance)
+	{
+		if(shaderInstance.STAR_BOUNDS_MIN != null)
+			shaderInstance.STAR_BOUNDS_MIN.set(minX, minY, minZ);
+		
+		if(shaderInstance.STAR_BOUNDS_STEP != null)
+			shaderInstance.STAR_BOUNDS_STEP.set(stepX, stepY, stepZ, sizeStep);
+	}
+}
@@ -0,0 +1,97 @@
+package net.povstalec.stellarview.common.util;
+
+/**
+ * Counter-based random number generator for Stars.
+ * Every value is a pure function of the Star Field seed, the index of the Star and the number of values
+ * drawn for that Star so far, which means Stars can be generated in any order (or on any number of threads)
+ * and still end up exactly the same.
+ * <p>
+ * Only 32-bit integer operations are used, so the same hash can be reproduced in a shader.
+ */
+public final class StarRandom
+{
+	private static final int GOLDEN_RATIO = 0x9E3779B9;
+	private static final float FLOAT_UNIT = 0x1.0p-24F;
+	
+	private int state;
+	private int counter;
+	
+	public StarRandom()
+	{
+		this.state = 0;
+		this.counter = 0;
+	}
+	
+	public StarRandom(long seed, int index)
+	{
+		setStar(seed, index);
+	}
+	
+	/**
+	 * "lowbias32" integer hash by Chris Wellons
+	 * @param x Value to hash
+	 * @return Well distributed 32-bit hash of x
+	 */
+	public static int hash(int x)
+	{
+		x ^= x >>> 16;
+		x *= 0x7FEB352D;
+		x ^= x >>> 15;
+		x *= 0x846CA68B;
+		x ^= x >>> 16;
+		
+		return x;
+	}
+	
+	/**
+	 * @param seed Seed of the Star Field
+	 * @param index Index of the Star inside the Star Field
+	 * @return Starting state for the Star with the specified index
+	 */
+	public static int starState(long seed, int index)
+	{
+		return hash((int) seed ^ hash((int) (seed >>> 32) ^ hash(index)));
+	}
+	
+	/**
+	 * @param state Starting state of a Star
+	 * @param counter Number of values that have already been drawn for the Star
+	 * @return Float in the range [0, 1)
+	 */
+	public static float toFloat(int state, int counter)
+	{
+		return (hash(state + counter * GOLDEN_RATIO) >>> 8) * FLOAT_UNIT;
+	}
+	
+	/**
+	 * Resets this generator to the start of the sequence of the specified Star
+	 * @param seed Seed of the Star Field
+	 * @param index Index of the Star inside the Star Field
+	 * @return This generator
+	 */
+	public StarRandom setStar(long seed, int index)
+	{
+		this.state = starState(seed, index);
+		this.counter = 0;
+		
+		return this;
+	}
+	
+	public int nextInt()
+	{
+		return hash(state + counter++ * GOLDEN_RATIO);
+	}
+	
+	/**
+	 * @return Float in the range [0, 1)
+	 */
+	public float nextFloat()
+	{
+		return toFloat(state, counter++);
+	}
+	
+	public long nextLong()
+	{
+		return (long) nextInt() << 32 | (nextInt() & 0xFFFFFFFFL);
+	}
+}
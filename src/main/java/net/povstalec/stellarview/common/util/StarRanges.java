@@ -0,0 +1,72 @@
+package net.povstalec.stellarview.common.util;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of Star index ranges to draw, a range that starts where the previous one ended gets merged into it
+ */
+public class StarRanges
+{
+	private int[] ranges = new int[64];
+	private int count = 0;
+	
+	public void clear()
+	{
+		count = 0;
+	}
+	
+	/**
+	 * @param start First Star of the range
+	 * @param end Index after the last Star of the range
+	 */
+	public void add(int start, int end)
+	{
+		if(start >= end)
+			return;
+		
+		if(count > 0 && ranges[count * 2 - 1] == start)
+		{
+			ranges[count * 2 - 1] = end;
+			return;
+		}
+		
+		if(count * 2 == ranges.length)
+			ranges = Arrays.copyOf(ranges, ranges.length * 2);
+		
+		ranges[count * 2] = start;
+		ranges[count * 2 + 1] = end;
+		count++;
+	}
+	
+	/**
+	 * @return Start (inclusive) and end (exclusive) of each range, only the first {@link #count()} ranges are valid
+	 */
+	public int[] ranges()
+	{
+		return ranges;
+	}
+	
+	public int count()
+	{
+		return count;
+	}
+	
+	public boolean isEmpty()
+	{
+		return count == 0;
+	}
+	
+	/**
+	 * @return Total number of Stars covered by the ranges
+	 */
+	public int stars()
+	{
+		int stars = 0;
+		for(int i = 0; i < count; i++)
+		{
+			stars += ranges[i * 2 + 1] - ranges[i * 2];
+		}
+		
+		return stars;
+	}
+}
@@ -179,6 +179,19 @@ public class UV
 		{
 			return topRight;
 		}
+		
+		/**
+		 * @return True if none of the corners reach outside the texture, meaning the texture never has to repeat
+		 */
+		public boolean isWithinTexture()
+		{
+			return isWithinTexture(topLeft) && isWithinTexture(bottomLeft) && isWithinTexture(bottomRight) && isWithinTexture(topRight);
+		}
+		
+		private static boolean isWithinTexture(UV uv)
+		{
+			return uv.u() >= 0 && uv.u() <= 1 && uv.v() >= 0 && uv.v() <= 1;
+		}
 	}
 	
 	public static class PhaseHandler
@@ -201,7 +214,7 @@ public class UV
 	    		Codec.INT.fieldOf("columns").forGetter((phaseHandler) -> phaseHandler.columns),
 	    		Codec.INT.fieldOf("rows").forGetter((phaseHandler) -> phaseHandler.rows)
 				).apply(instance, PhaseHandler::new));
-	    
+	
 	    public PhaseHandler(int ticksPerPhase, int phaseTickOffset, int columns, int rows)
 	    {
 			this.ticksPerPhase = ticksPerPhase;
@@ -214,32 +227,32 @@ public class UV
 			
 			this.doPhases = this.totalPhases != 1;
 	    }
-	    
+	
 	    public int phase(long ticks)
 	    {
 			return (int) ((ticks + phaseTickOffset) % tickPeriod * totalPhases) / tickPeriod;
 	    }
-	    
+	
 	    public int u(long ticks)
 	    {
 	    	return phase(ticks) % columns;
 	    }
-	    
+	
 	    public int v(long ticks)
 	    {
 	        return phase(ticks) / columns % rows;
 	    }
-	    
+	
 	    public int rows()
 	    {
 	    	return rows;
 	    }
-	    
+	
 	    public int columns()
 	    {
 	        return columns;
 	    }
-	    
+	
 	    public boolean doPhases()
 	    {
 	    	return doPhases;
@@ -0,0 +1,9 @@
+#version 150
+
+// Sky state that stays the same for the whole frame, uploaded once by SkyFrameUniforms and shared by every sky shader
+layout(std140) uniform SkyFrame {
+	mat4 SkyProjMat;
+	mat4 SkyModelViewMat; // Model view of the texture layers, which already have the sky pose applied to their vertexes
+	mat4 StarModelViewMat; // Model view of Star Fields, rotated by the axis of the View Center
+	vec4 StarColorModulator;
+};
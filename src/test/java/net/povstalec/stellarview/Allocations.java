@@ -0,0 +1,35 @@
+package net.povstalec.stellarview;
+
+import org.junit.jupiter.api.Assumptions;
+
+import javax.annotation.Nullable;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Counts the bytes allocated by the current thread, only available on HotSpot based JVMs
+ */
+public final class Allocations
+{
+	@Nullable
+	private static final com.sun.management.ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadBean ? threadBean : null;
+	
+	/**
+	 * Skips the test if allocations can't be counted on this JVM
+	 */
+	public static void assumeSupported()
+	{
+		Assumptions.assumeTrue(THREAD_BEAN != null && THREAD_BEAN.isThreadAllocatedMemorySupported(), "Allocated memory can't be measured on this JVM");
+		
+		if(!THREAD_BEAN.isThreadAllocatedMemoryEnabled())
+			THREAD_BEAN.setThreadAllocatedMemoryEnabled(true);
+	}
+	
+	/**
+	 * @return Bytes allocated by the current thread so far, only differences between two calls mean anything.
+	 * Only call this after {@link #assumeSupported()}
+	 */
+	public static long allocatedBytes()
+	{
+		return THREAD_BEAN.getCurrentThreadAllocatedBytes();
+	}
+}
@@ -0,0 +1,219 @@
+package net.povstalec.stellarview.client.resourcepack;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.datafixers.util.Either;
+import net.povstalec.stellarview.Allocations;
+import net.povstalec.stellarview.client.resourcepack.effects.MeteorEffect;
+import net.povstalec.stellarview.client.resourcepack.objects.Planet;
+import net.povstalec.stellarview.client.resourcepack.objects.SpaceObject;
+import net.povstalec.stellarview.common.util.AxisRotation;
+import net.povstalec.stellarview.common.util.SpaceCoords;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Evaluates a Space tree with one nearby system and a number of systems too far away to be drawn, which should be culled as a whole
+ */
+public class SkySceneTest
+{
+	private static final int FAR_SYSTEMS = 100;
+	private static final int PLANETS_PER_SYSTEM = 8;
+	
+	private static final int WARMUP_FRAMES = 10_000;
+	private static final int MEASURED_FRAMES = 10_000;
+	
+	@BeforeAll
+	public static void initRenderThread()
+	{
+		// Absolute coordinates are only ever resolved on the render thread
+		if(!RenderSystem.isOnRenderThread())
+			RenderSystem.initRenderThread();
+	}
+	
+	static ViewCenter viewCenter()
+	{
+		return new ViewCenter(Optional.empty(), Optional.empty(), new AxisRotation(), 0, ViewCenter.DAY_MAX_BRIGHTNESS, ViewCenter.DAY_MIN_VISIBLE_SIZE, ViewCenter.DAY_MAX_VISIBLE_SIZE,
+				new MeteorEffect.ShootingStar(), new MeteorEffect.MeteorShower(), false, false, false, 1);
+	}
+	
+	static Planet planet(SpaceCoords coords)
+	{
+		return new Planet(Optional.empty(), Either.left(coords), new AxisRotation(), Optional.empty(), List.of(), SpaceObject.FadeOutHandler.DEFAULT_PLANET_HANDLER);
+	}
+	
+	/**
+	 * @param lightYears Distance of the system from the center
+	 * @return Planet with smaller Planets around it
+	 */
+	static Planet system(long lightYears)
+	{
+		Planet system = planet(new SpaceCoords(lightYears, 0, 0));
+		for(int i = 1; i <= PLANETS_PER_SYSTEM; i++)
+		{
+			system.addChild(planet(new SpaceCoords(i * 100_000_000D, 0, 0)));
+		}
+		
+		return system;
+	}
+	
+	/**
+	 * @return Nearby system first, it's used as the master parent
+	 */
+	static List<SpaceObject> space()
+	{
+		List<SpaceObject> spaceObjects = new ArrayList<SpaceObject>();
+		
+		spaceObjects.add(system(0));
+		for(int i = 1; i <= FAR_SYSTEMS; i++)
+		{
+			spaceObjects.add(system(i * 1000L));
+		}
+		
+		return spaceObjects;
+	}
+	
+	static void evaluate(SkyScene scene, ViewCenter viewCenter, List<SpaceObject> spaceObjects, Vector3f parentVector, long ticks)
+	{
+		scene.begin(viewCenter, true, ticks, 0, 1, 1, 1);
+		scene.evaluate(viewCenter, spaceObjects, spaceObjects.get(0), parentVector);
+	}
+	
+	@Test
+	public void farSystemsAreCulled()
+	{
+		SkyScene scene = new SkyScene();
+		List<SpaceObject> spaceObjects = space();
+		
+		evaluate(scene, viewCenter(), spaceObjects, new Vector3f(), 0);
+		
+		assertEquals(1 + PLANETS_PER_SYSTEM, scene.size());
+		assertEquals(FAR_SYSTEMS, scene.culledSubtrees());
+		
+		for(int i = 0; i < scene.size(); i++)
+		{
+			assertTrue(scene.isVisible(i));
+		}
+	}
+	
+	@Test
+	public void movedParentsMoveTheirChildren()
+	{
+		Planet system = planet(new SpaceCoords());
+		Planet planet = planet(new SpaceCoords(100_000_000D, 0, 0));
+		system.addChild(planet);
+		
+		assertEquals(0, planet.getCoords().sub(new SpaceCoords(100_000_000D, 0, 0)).distanceToCenter());
+		
+		// Checked twice, the second time nothing has been moved since the first one
+		system.setPosAndRotation(new SpaceCoords(1, 0, 0), new AxisRotation());
+		for(int i = 0; i < 2; i++)
+		{
+			assertEquals(0, system.getCoords().sub(new SpaceCoords(1, 0, 0)).distanceToCenter());
+			assertEquals(0, planet.getCoords().sub(new SpaceCoords(1, 0, 0).add(new SpaceCoords(100_000_000D, 0, 0))).distanceToCenter());
+		}
+	}
+	
+	@Test
+	public void evaluationTime()
+	{
+		SkyScene scene = new SkyScene();
+		ViewCenter viewCenter = viewCenter();
+		List<SpaceObject> spaceObjects = space();
+		Vector3f parentVector = new Vector3f();
+		
+		for(int i = 0; i < WARMUP_FRAMES; i++)
+		{
+			evaluate(scene, viewCenter, spaceObjects, parentVector, i);
+		}
+		
+		long startTime = System.nanoTime();
+		for(int i = 0; i < MEASURED_FRAMES; i++)
+		{
+			evaluate(scene, viewCenter, spaceObjects, parentVector, i);
+		}
+		long nanos = System.nanoTime() - startTime;
+		
+		System.out.println("Evaluated " + scene.size() + " sky objects and culled " + scene.culledSubtrees() + " subtrees in " + nanos / MEASURED_FRAMES / 1000D + " \u00b5s per frame on average");
+	}
+	
+	@Test
+	public void filledSlotsDoNotAllocate()
+	{
+		Allocations.assumeSupported();
+		
+		SkyScene scene = new SkyScene();
+		ViewCenter viewCenter = viewCenter();
+		Planet system = planet(new SpaceCoords());
+		List<SpaceObject> objects = new ArrayList<SpaceObject>();
+		objects.add(system);
+		for(int i = 1; i <= PLANETS_PER_SYSTEM; i++)
+		{
+			Planet planet = planet(new SpaceCoords(i * 100_000_000D, 0, 0));
+			system.addChild(planet);
+			objects.add(planet);
+		}
+		Vector3f offset = new Vector3f(384_400, 0, 0);
+		
+		for(int i = 0; i < WARMUP_FRAMES; i++)
+		{
+			fillSlots(scene, viewCenter, objects, offset, i);
+		}
+		
+		long startBytes = Allocations.allocatedBytes();
+		for(int i = 0; i < MEASURED_FRAMES; i++)
+		{
+			fillSlots(scene, viewCenter, objects, offset, i);
+		}
+		long bytes = Allocations.allocatedBytes() - startBytes;
+		
+		// A single object per frame would already be hundreds of kilobytes, anything below a byte per frame is the measurement itself
+		assertTrue(bytes < MEASURED_FRAMES, "Filling the slots allocated " + bytes + " bytes over " + MEASURED_FRAMES + " frames");
+	}
+	
+	private static void fillSlots(SkyScene scene, ViewCenter viewCenter, List<SpaceObject> objects, Vector3f offset, long ticks)
+	{
+		scene.begin(viewCenter, true, ticks, 0, 1, 1, 1);
+		for(int i = 0; i < objects.size(); i++)
+		{
+			SpaceObject object = objects.get(i);
+			scene.distance(object.getCoords(), offset, viewCenter.getCoords());
+			scene.add(object, object.getCoords(), offset, object.getFadeOutHandler(), viewCenter.getCoords(), false);
+		}
+	}
+	
+	@Test
+	public void culledSubtreesDoNotAllocate()
+	{
+		Allocations.assumeSupported();
+		
+		SkyScene scene = new SkyScene();
+		ViewCenter viewCenter = viewCenter();
+		List<SpaceObject> spaceObjects = space();
+		Vector3f parentVector = new Vector3f();
+		
+		for(int i = 0; i < WARMUP_FRAMES; i++)
+		{
+			evaluate(scene, viewCenter, spaceObjects, parentVector, i);
+		}
+		
+		long startBytes = Allocations.allocatedBytes();
+		for(int i = 0; i < MEASURED_FRAMES; i++)
+		{
+			evaluate(scene, viewCenter, spaceObjects, parentVector, i);
+		}
+		long bytesPerFrame = (Allocations.allocatedBytes() - startBytes) / MEASURED_FRAMES;
+		
+		System.out.println("Evaluating " + scene.size() + " sky objects and culling " + scene.culledSubtrees() + " subtrees allocated " + bytesPerFrame + " bytes per frame");
+		
+		// Orbit positions are still returned as new vectors, so only the objects that are actually evaluated may allocate anything
+		assertTrue(bytesPerFrame <= 64L * scene.size(), "Evaluation allocated " + bytesPerFrame + " bytes per frame");
+	}
+}
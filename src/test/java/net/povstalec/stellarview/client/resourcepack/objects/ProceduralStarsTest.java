@@ -0,0 +1,115 @@
+package net.povstalec.stellarview.client.resourcepack.objects;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.mojang.datafixers.util.Either;
+import net.povstalec.stellarview.client.resourcepack.StarInfo;
+import net.povstalec.stellarview.common.util.AxisRotation;
+import net.povstalec.stellarview.common.util.ProceduralStars;
+import net.povstalec.stellarview.common.util.SpaceCoords;
+import net.povstalec.stellarview.common.util.StarRandom;
+import org.joml.Quaterniond;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares the CPU reference of the procedural Star shader with hashed Star generation, lives next to StarField to reach its hashed positions
+ */
+public class ProceduralStarsTest
+{
+	private static final int DISC_STARS = 3000;
+	private static final int ARM_STARS = 4000;
+	private static final int ARMS = 3;
+	
+	@BeforeAll
+	public static void initRenderThread()
+	{
+		// Absolute rotations are only ever resolved on the render thread
+		if(!RenderSystem.isOnRenderThread())
+			RenderSystem.initRenderThread();
+	}
+	
+	private static StarField galaxy(boolean clumpStarsInCenter)
+	{
+		List<StarField.SpiralArm> spiralArms = List.of(
+				new StarField.SpiralArm(ARM_STARS, 0, 3, 2.5, true),
+				new StarField.SpiralArm(ARM_STARS, 120, 3, 2.5, false),
+				new StarField.SpiralArm(ARM_STARS, 240, 2, 1.5, true));
+		
+		return new StarField(Optional.empty(), Either.left(new SpaceCoords()), new AxisRotation(18, 0, 45), SpaceObject.FadeOutHandler.DEFAULT_STAR_FIELD_HANDLER,
+				StarInfo.DEFAULT_STAR_INFO, 131313L, 90000, DISC_STARS, clumpStarsInCenter, 1, 0.1, 1, spiralArms);
+	}
+	
+	private static void assertMatchesGeneration(StarField starField)
+	{
+		ProceduralStars procedural = new ProceduralStars(starField);
+		Quaterniond rotation = starField.getAxisRotation().quaterniond();
+		StarRandom random = new StarRandom();
+		
+		int samples = 0;
+		for(int index = 0; index < DISC_STARS + ARMS * ARM_STARS; index++)
+		{
+			Vector3d expected = starField.hashedStarPosition(rotation, random.setStar(starField.getSeed(), index), index, starField.getDiameter() / 30D);
+			// The first Star of each Spiral Arm gets an infinite spread, which the shader and the generator both turn into an unusable position
+			if(!expected.isFinite())
+				continue;
+			
+			Vector3f actual = procedural.referencePosition(index);
+			double deviation = expected.distance(actual.x, actual.y, actual.z);
+			
+			// The shader works in floats, the generator in doubles
+			assertTrue(deviation <= 1.0E-4 * expected.length() + 1.0E-3, "Star " + index + " is " + deviation + " ly away from its generated position " + expected);
+			samples++;
+		}
+		
+		assertTrue(samples >= DISC_STARS + ARMS * (ARM_STARS - 1));
+	}
+	
+	@Test
+	public void referencePositionMatchesHashedGeneration()
+	{
+		assertMatchesGeneration(galaxy(false));
+		assertMatchesGeneration(galaxy(true));
+	}
+	
+	@Test
+	public void densityThinsEverySpiralArm()
+	{
+		ProceduralStars procedural = new ProceduralStars(galaxy(false));
+		float keepFraction = 0.25F;
+		
+		// Disc and every Spiral Arm should keep about the same share of their Stars, instead of the last Spiral Arms disappearing
+		int first = 0;
+		for(int stars : new int[] {DISC_STARS, ARM_STARS, ARM_STARS, ARM_STARS})
+		{
+			int kept = 0;
+			for(int index = first; index < first + stars; index++)
+			{
+				if(procedural.isKept(index, keepFraction))
+					kept++;
+			}
+			
+			assertEquals(keepFraction, (float) kept / stars, 0.04F, "Stars " + first + " to " + (first + stars) + " kept " + kept);
+			first += stars;
+		}
+	}
+	
+	@Test
+	public void higherDensityKeepsTheSameStars()
+	{
+		ProceduralStars procedural = new ProceduralStars(galaxy(false));
+		
+		for(int index = 0; index < DISC_STARS + ARMS * ARM_STARS; index++)
+		{
+			assertTrue(procedural.isKept(index, 1F));
+			assertTrue(!procedural.isKept(index, 0.3F) || procedural.isKept(index, 0.6F), "Star " + index + " disappears when the density goes up");
+		}
+	}
+}
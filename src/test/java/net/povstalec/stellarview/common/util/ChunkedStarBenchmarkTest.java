@@ -0,0 +1,145 @@
+package net.povstalec.stellarview.common.util;
+
+import net.povstalec.stellarview.client.resourcepack.StarInfo;
+import net.povstalec.stellarview.client.resourcepack.objects.StarField;
+import org.junit.jupiter.api.Test;
+import org.lwjgl.system.MemoryUtil;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Times the CPU side of a Star Field far above the old cap of 30 000 Stars: generating the Stars, writing their vertexes chunk by chunk
+ * and the round trip through the cache format. Uploading and drawing the chunks needs a GL context, so it isn't covered here
+ */
+public class ChunkedStarBenchmarkTest
+{
+	private static final int STARS = 1_000_000;
+	private static final long SEED = 42L;
+	private static final int RUNS = 5;
+	
+	private static StarData generate()
+	{
+		StarData starData = new StarData(STARS);
+		StarRandom random = new StarRandom();
+		
+		for(int i = 0; i < STARS; i++)
+		{
+			random.setStar(SEED, i);
+			starData.newStar(StarInfo.DEFAULT_STAR_INFO, random, (random.nextFloat() - 0.5F) * 3000F, (random.nextFloat() - 0.5F) * 3000F, (random.nextFloat() - 0.5F) * 3000F, i);
+		}
+		
+		return starData;
+	}
+	
+	/**
+	 * Writes the vertexes of every Star the same way StarMesh.build does
+	 */
+	private static ByteBuffer vertices(StarData starData)
+	{
+		ByteBuffer vertices = MemoryUtil.memAlloc(starData.getStars() * StarData.STAR_VERTEX_BYTES);
+		long pointer = MemoryUtil.memAddress(vertices);
+		
+		for(int i = 0; i < starData.getStars(); i++)
+		{
+			starData.createStarVertices(pointer + (long) i * StarData.STAR_VERTEX_BYTES, i);
+		}
+		
+		return vertices;
+	}
+	
+	private static void log(String step, long nanos)
+	{
+		System.out.println(step + " " + STARS + " Stars took " + nanos / RUNS / 1_000_000D + " ms on average");
+	}
+	
+	@Test
+	public void chunksFitSixteenBitIndexes()
+	{
+		int chunks = (STARS + StarField.STARS_PER_CHUNK - 1) / StarField.STARS_PER_CHUNK;
+		
+		assertTrue(STARS <= StarData.MAX_STARS);
+		assertTrue(StarField.STARS_PER_CHUNK * 4 <= 65536, "A chunk has more vertexes than a 16-bit index can address");
+		assertEquals(62, chunks);
+	}
+	
+	@Test
+	public void generateAndWriteVertices()
+	{
+		// Warm-up, so the runs below measure compiled code
+		StarData starData = generate();
+		MemoryUtil.memFree(vertices(starData));
+		
+		long generationNanos = 0;
+		long vertexNanos = 0;
+		for(int run = 0; run < RUNS; run++)
+		{
+			long startTime = System.nanoTime();
+			starData = generate();
+			generationNanos += System.nanoTime() - startTime;
+			
+			startTime = System.nanoTime();
+			ByteBuffer vertices = vertices(starData);
+			vertexNanos += System.nanoTime() - startTime;
+			
+			assertEquals(STARS * StarData.STAR_VERTEX_BYTES, vertices.remaining());
+			MemoryUtil.memFree(vertices);
+		}
+		
+		log("Generating", generationNanos);
+		log("Writing the vertexes of", vertexNanos);
+	}
+	
+	@Test
+	public void cacheRoundTrip()
+	{
+		StarData starData = generate();
+		ByteBuffer buffer = MemoryUtil.memAlloc((int) starData.heapSize());
+		
+		try
+		{
+			long writeNanos = 0;
+			long readNanos = 0;
+			StarData read = null;
+			for(int run = 0; run < RUNS + 1; run++)
+			{
+				long startTime = System.nanoTime();
+				starData.write(buffer);
+				buffer.flip();
+				long writeTime = System.nanoTime() - startTime;
+				
+				startTime = System.nanoTime();
+				read = StarData.read(buffer, STARS);
+				long readTime = System.nanoTime() - startTime;
+				buffer.clear();
+				
+				// The first run is the warm-up
+				if(run > 0)
+				{
+					writeNanos += writeTime;
+					readNanos += readTime;
+				}
+			}
+			
+			log("Writing", writeNanos);
+			log("Reading", readNanos);
+			
+			for(int i = 0; i < STARS; i += 997)
+			{
+				assertEquals(starData.getX(i), read.getX(i));
+				assertEquals(starData.getY(i), read.getY(i));
+				assertEquals(starData.getZ(i), read.getZ(i));
+				assertEquals(starData.getSize(i), read.getSize(i));
+				assertEquals(starData.getARGB(i), read.getARGB(i));
+				assertEquals(starData.getSin(i), read.getSin(i));
+				assertEquals(starData.getCos(i), read.getCos(i));
+			}
+		}
+		finally
+		{
+			MemoryUtil.memFree(buffer);
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package net.povstalec.stellarview.common.util;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SkyTilesTest
+{
+	private static final int TILES_PER_FACE = SkyTiles.RESOLUTION * SkyTiles.RESOLUTION;
+	private static final int STARS = 20_000;
+	private static final float RADIUS = 1000F;
+	
+	/**
+	 * @return Stars spread evenly over a sphere around the origin
+	 */
+	private static StarData sphere(long seed)
+	{
+		Random random = new Random(seed);
+		StarData starData = new StarData(STARS);
+		
+		for(int i = 0; i < STARS; i++)
+		{
+			double theta = random.nextDouble() * Math.PI * 2;
+			double cosPhi = random.nextDouble() * 2 - 1;
+			double sinPhi = Math.sqrt(1 - cosPhi * cosPhi);
+			
+			starData.setPoint(i, (float) (RADIUS * sinPhi * Math.cos(theta)), (float) (RADIUS * cosPhi), (float) (RADIUS * sinPhi * Math.sin(theta)),
+					StarData.packARGB(255, 255, 255, random.nextInt(256)), 0.05F + random.nextFloat() * 0.3F);
+		}
+		
+		return starData;
+	}
+	
+	private static FrustumIntersection frustum(float x, float y, float z)
+	{
+		float upX = Math.abs(y) > 0.9F ? 1F : 0F;
+		float upY = Math.abs(y) > 0.9F ? 0F : 1F;
+		
+		return new FrustumIntersection(new Matrix4f().perspective((float) Math.toRadians(70), 16F / 9F, 0.05F, 1000F).lookAt(0, 0, 0, x, y, z, upX, upY, 0));
+	}
+	
+	@Test
+	public void axesPointIntoTheCentersOfTheirFaces()
+	{
+		// Faces are +X, -X, +Y, -Y, +Z, -Z and the axis goes through the corner shared by the four center tiles of the face
+		int center = (SkyTiles.RESOLUTION / 2) * SkyTiles.RESOLUTION + SkyTiles.RESOLUTION / 2;
+		
+		assertEquals(0 * TILES_PER_FACE + center, SkyTiles.tile(1, 0, 0));
+		assertEquals(1 * TILES_PER_FACE + center, SkyTiles.tile(-1, 0, 0));
+		assertEquals(2 * TILES_PER_FACE + center, SkyTiles.tile(0, 1, 0));
+		assertEquals(3 * TILES_PER_FACE + center, SkyTiles.tile(0, -1, 0));
+		assertEquals(4 * TILES_PER_FACE + center, SkyTiles.tile(0, 0, 1));
+		assertEquals(5 * TILES_PER_FACE + center, SkyTiles.tile(0, 0, -1));
+	}
+	
+	@Test
+	public void cornersAndEdges()
+	{
+		// Rows follow the second coordinate of the face, columns the first
+		assertEquals(0, SkyTiles.tile(1, -0.99F, -0.99F));
+		assertEquals(SkyTiles.RESOLUTION - 1, SkyTiles.tile(1, 0.99F, -0.99F));
+		assertEquals(TILES_PER_FACE - 1, SkyTiles.tile(1, 0.99F, 0.99F));
+		
+		// Directions exactly on the edge of the cube stay in range
+		assertEquals(TILES_PER_FACE - 1, SkyTiles.tile(1, 1, 1));
+		assertEquals(1 * TILES_PER_FACE, SkyTiles.tile(-1, -1, -1));
+		
+		// A Star sitting right on the reference point still gets a tile
+		int tile = SkyTiles.tile(0, 0, 0);
+		assertTrue(tile >= 0 && tile < SkyTiles.TILES);
+	}
+	
+	@Test
+	public void sortedStarsAreGroupedByTile()
+	{
+		StarData starData = sphere(1L);
+		SkyTiles skyTiles = new SkyTiles(starData, 0, 0, 0);
+		StarData sorted = skyTiles.sort(starData);
+		
+		assertEquals(0, skyTiles.tileStart(0));
+		assertEquals(STARS, skyTiles.tileEnd(SkyTiles.TILES - 1));
+		
+		for(int tile = 0; tile < SkyTiles.TILES; tile++)
+		{
+			for(int i = skyTiles.tileStart(tile); i < skyTiles.tileEnd(tile); i++)
+			{
+				assertEquals(tile, SkyTiles.tile(sorted.getX(i), sorted.getY(i), sorted.getZ(i)));
+			}
+		}
+	}
+	
+	@Test
+	public void tilesInFrontAreVisibleAndTilesBehindAreNot()
+	{
+		SkyTiles skyTiles = new SkyTiles(sphere(2L), 0, 0, 0);
+		FrustumIntersection frustum = frustum(1, 0, 0);
+		
+		assertTrue(skyTiles.isVisible(SkyTiles.tile(1, 0, 0), frustum, 0));
+		assertTrue(skyTiles.isVisible(SkyTiles.tile(1, 0.1F, -0.1F), frustum, 0));
+		
+		// Nothing on the face behind the viewer can be seen
+		for(int tile = TILES_PER_FACE; tile < 2 * TILES_PER_FACE; tile++)
+		{
+			assertFalse(skyTiles.isVisible(tile, frustum, 0), "Tile " + tile + " behind the viewer is visible");
+		}
+	}
+	
+	@Test
+	public void noStarInsideTheFrustumIsCulled()
+	{
+		StarData starData = sphere(3L);
+		SkyTiles skyTiles = new SkyTiles(starData, 0, 0, 0);
+		
+		float[][] directions = {{1, 0, 0}, {0, 1, 0}, {0, 0, -1}, {0.6F, -0.3F, 0.74F}, {-0.5F, 0.5F, -0.7F}};
+		for(float[] direction : directions)
+		{
+			FrustumIntersection frustum = frustum(direction[0], direction[1], direction[2]);
+			
+			int inside = 0;
+			for(int i = 0; i < STARS; i++)
+			{
+				// Stars are drawn at sky distance in the direction they're seen in
+				float scale = SkyTiles.SKY_DISTANCE / RADIUS;
+				if(!frustum.testPoint(starData.getX(i) * scale, starData.getY(i) * scale, starData.getZ(i) * scale))
+					continue;
+				
+				inside++;
+				assertTrue(skyTiles.isVisible(SkyTiles.tile(starData.getX(i), starData.getY(i), starData.getZ(i)), frustum, 0), "Star " + i + " inside the frustum is culled");
+			}
+			
+			assertTrue(inside > 0);
+		}
+	}
+	
+	@Test
+	public void driftingPastTheClosestStarShowsEverything()
+	{
+		SkyTiles skyTiles = new SkyTiles(sphere(4L), 0, 0, 0);
+		FrustumIntersection frustum = frustum(1, 0, 0);
+		
+		for(int tile = 0; tile < SkyTiles.TILES; tile++)
+		{
+			assertTrue(skyTiles.isVisible(tile, frustum, RADIUS + 1));
+		}
+	}
+}
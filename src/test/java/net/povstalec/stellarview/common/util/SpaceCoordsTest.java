@@ -0,0 +1,148 @@
+package net.povstalec.stellarview.common.util;
+
+import net.povstalec.stellarview.Allocations;
+import org.joml.Vector3d;
+import org.joml.Vector3f;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpaceCoordsTest
+{
+	private static final int WARMUP_ITERATIONS = 100_000;
+	private static final int MEASURED_ITERATIONS = 100_000;
+	
+	private static final double STEP_KM = 1D / SpaceCoords.SpaceDistance.STEPS_PER_KM;
+	
+	/**
+	 * Light years and steps can be split differently for the same distance, but the exact difference of two equal distances is always zero
+	 */
+	private static void assertSameDistance(SpaceCoords.SpaceDistance expected, SpaceCoords.SpaceDistance actual)
+	{
+		SpaceCoords.SpaceDistance difference = expected.sub(actual);
+		
+		assertEquals(0, difference.ly(), actual + " differs from " + expected);
+		assertEquals(0D, difference.km(), actual + " differs from " + expected);
+	}
+	
+	@Test
+	public void addAndSubAreExact()
+	{
+		SpaceCoords.SpaceDistance a = new SpaceCoords.SpaceDistance(1_000_000_000_000L, 123_456.78);
+		SpaceCoords.SpaceDistance b = new SpaceCoords.SpaceDistance(-999_999_999_997L, -0.75 * SpaceCoords.KM_PER_LY);
+		
+		assertSameDistance(a, a.add(b).sub(b));
+		assertSameDistance(a, a.sub(b).add(b));
+		assertSameDistance(b, b.add(a).sub(a));
+		assertSameDistance(new SpaceCoords.SpaceDistance(0), a.sub(a));
+		
+		// Kilometers added one by one end up in the same place as adding them at once
+		SpaceCoords.SpaceDistance sum = a;
+		for(int i = 0; i < 1000; i++)
+		{
+			sum = sum.add(1_234.56);
+		}
+		assertSameDistance(a.add(1_234_560D), sum);
+	}
+	
+	@Test
+	public void differencesOfFarAwayDistancesAreExact()
+	{
+		SpaceCoords.SpaceDistance far = new SpaceCoords.SpaceDistance(5_000_000_000L, 42.0);
+		SpaceCoords.SpaceDistance next = far.add(1.0);
+		
+		// At five billion light years a double can't tell 1 km apart, the fixed-point difference still can
+		assertEquals(1.0, next.subKm(far));
+		assertEquals(-1.0, far.subKm(next));
+		assertEquals(0.01, far.add(STEP_KM).subKm(far), 1e-15);
+	}
+	
+	@Test
+	public void kilometersOverflowIntoLightYears()
+	{
+		SpaceCoords.SpaceDistance positive = new SpaceCoords.SpaceDistance(0, 2.5 * SpaceCoords.KM_PER_LY);
+		assertEquals(2, positive.ly());
+		assertEquals(0.5 * SpaceCoords.KM_PER_LY, positive.km(), STEP_KM);
+		assertEquals(2.5 * SpaceCoords.KM_PER_LY, positive.toKm(), STEP_KM + Math.ulp(2.5 * SpaceCoords.KM_PER_LY));
+		
+		SpaceCoords.SpaceDistance negative = new SpaceCoords.SpaceDistance(0, -2.5 * SpaceCoords.KM_PER_LY);
+		assertEquals(-2, negative.ly());
+		assertEquals(-0.5 * SpaceCoords.KM_PER_LY, negative.km(), STEP_KM);
+		
+		// Steps carried over by adding two distances end up in the light years as well
+		SpaceCoords.SpaceDistance threeQuarters = new SpaceCoords.SpaceDistance(0, 0.75 * SpaceCoords.KM_PER_LY);
+		SpaceCoords.SpaceDistance sum = threeQuarters.add(threeQuarters);
+		assertEquals(1, sum.ly());
+		assertTrue(Math.abs(sum.km()) < SpaceCoords.KM_PER_LY);
+		assertSameDistance(threeQuarters, sum.sub(threeQuarters));
+	}
+	
+	@Test
+	public void lightYearsAndKilometersRoundTrip()
+	{
+		SpaceCoords.SpaceDistance[] distances = {
+				new SpaceCoords.SpaceDistance(0, 0.01),
+				new SpaceCoords.SpaceDistance(-7, 384_400),
+				new SpaceCoords.SpaceDistance(26_000, -1.5e13),
+				new SpaceCoords.SpaceDistance(-3, 0.999 * SpaceCoords.KM_PER_LY),
+				new SpaceCoords.SpaceDistance(1_000_000_000_000L, 0.123)
+		};
+		
+		// The codec stores ly() and km(), reading them back has to give the exact same distance
+		for(SpaceCoords.SpaceDistance distance : distances)
+		{
+			assertSameDistance(distance, new SpaceCoords.SpaceDistance(distance.ly(), distance.km()));
+		}
+	}
+	
+	@Test
+	public void lightYearsCanHaveTheOppositeSignOfKilometers()
+	{
+		// Only whole light years are carried over, so a distance just short of a light year keeps its light year and negative kilometers
+		SpaceCoords.SpaceDistance distance = new SpaceCoords.SpaceDistance(1, -1000);
+		
+		assertEquals(1, distance.ly());
+		assertEquals(-1000, distance.km());
+		assertEquals(SpaceCoords.KM_PER_LY - 1000, distance.toKm(), Math.ulp(SpaceCoords.KM_PER_LY));
+		assertTrue(Math.abs(distance.toLy() - distance.ly()) < 1);
+	}
+	
+	private static double inPlaceArithmetic(SpaceCoords a, SpaceCoords b, Vector3f offset, SpaceCoords scratch, Vector3d relative)
+	{
+		a.addInto(offset, scratch);
+		scratch.addInto(b, scratch);
+		scratch.subInto(offset, scratch);
+		scratch.subInto(b, scratch);
+		
+		return scratch.relativeKm(b, relative).x + a.distanceSquared(b);
+	}
+	
+	@Test
+	public void inPlaceArithmeticDoesNotAllocate()
+	{
+		Allocations.assumeSupported();
+		
+		SpaceCoords a = new SpaceCoords(12, -3, 7, 1.5e12, -4.25e7, 300);
+		SpaceCoords b = new SpaceCoords(-5, 2, 7, -8.75e12, 1e3, -2.5e9);
+		Vector3f offset = new Vector3f(1.5e8F, -2e6F, 384_400F);
+		SpaceCoords scratch = new SpaceCoords();
+		Vector3d relative = new Vector3d();
+		
+		double sum = 0;
+		for(int i = 0; i < WARMUP_ITERATIONS; i++)
+		{
+			sum += inPlaceArithmetic(a, b, offset, scratch, relative);
+		}
+		
+		long startBytes = Allocations.allocatedBytes();
+		for(int i = 0; i < MEASURED_ITERATIONS; i++)
+		{
+			sum += inPlaceArithmetic(a, b, offset, scratch, relative);
+		}
+		long bytes = Allocations.allocatedBytes() - startBytes;
+		
+		// A single object per iteration would already be more than a megabyte, anything below a byte per iteration is the measurement itself
+		assertTrue(bytes < MEASURED_ITERATIONS, "In-place arithmetic allocated " + bytes + " bytes over " + MEASURED_ITERATIONS + " iterations (" + sum + ")");
+	}
+}
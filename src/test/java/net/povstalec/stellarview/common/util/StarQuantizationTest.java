@@ -0,0 +1,101 @@
+package net.povstalec.stellarview.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StarQuantizationTest
+{
+	private static final int STARS = 100_000;
+	private static final int ARGB = StarData.packARGB(255, 255, 255, 255);
+	
+	/**
+	 * @return Stars spread over a box of the specified size, with the corners of the box set explicitly
+	 */
+	private static StarData stars(float sizeX, float sizeY, float sizeZ, long seed)
+	{
+		Random random = new Random(seed);
+		StarData starData = new StarData(STARS);
+		
+		starData.setPoint(0, -sizeX / 2, -sizeY / 2, -sizeZ / 2, ARGB, 0.2F);
+		starData.setPoint(1, sizeX / 2, sizeY / 2, sizeZ / 2, ARGB, 0.2F);
+		for(int i = 2; i < STARS; i++)
+		{
+			starData.setPoint(i, (random.nextFloat() - 0.5F) * sizeX, (random.nextFloat() - 0.5F) * sizeY, (random.nextFloat() - 0.5F) * sizeZ, ARGB, 0.05F + random.nextFloat() * 0.3F);
+		}
+		
+		return starData;
+	}
+	
+	/**
+	 * @return How much the float math of positionError itself can be off by for coordinates up to the specified magnitude
+	 */
+	private static float roundingError(float magnitude)
+	{
+		return 2F * (float) Math.sqrt(3) * Math.ulp(magnitude);
+	}
+	
+	private static void assertWithinBound(StarData starData, float magnitude)
+	{
+		StarQuantization quantization = StarQuantization.of(starData);
+		float bound = quantization.maxPositionError() + roundingError(magnitude);
+		
+		float maxError = 0F;
+		for(int i = 0; i < starData.getStars(); i++)
+		{
+			maxError = Math.max(maxError, quantization.positionError(starData, i));
+		}
+		
+		assertTrue(maxError <= bound, "Stars moved by up to " + maxError + " ly, more than the allowed " + bound + " ly");
+	}
+	
+	@Test
+	public void starsStayWithinHalfAStep()
+	{
+		// Roughly the size of a generated Star Field and of the disc of the Milky Way
+		assertWithinBound(stars(3000F, 3000F, 3000F, 1L), 1500F);
+		assertWithinBound(stars(90000F, 1000F, 90000F, 2L), 45000F);
+	}
+	
+	@Test
+	public void maxPositionErrorIsHalfAStep()
+	{
+		StarQuantization quantization = StarQuantization.of(stars(65535F, 65535F, 65535F, 3L));
+		
+		// Every axis is split into 65535 steps of 1 ly
+		assertEquals(0.5F * (float) Math.sqrt(3), quantization.maxPositionError(), 1e-3F);
+	}
+	
+	@Test
+	public void boundsAreExact()
+	{
+		StarData starData = stars(3000F, 2000F, 1000F, 4L);
+		StarQuantization quantization = StarQuantization.of(starData);
+		
+		// The corners of the bounding box land exactly on the first and last step
+		assertEquals(0F, quantization.positionError(starData, 0), roundingError(1500F));
+		assertEquals(0F, quantization.positionError(starData, 1), roundingError(1500F));
+	}
+	
+	@Test
+	public void flatFieldsHaveNoErrorAcrossThePlane()
+	{
+		StarData starData = stars(3000F, 0F, 3000F, 5L);
+		StarQuantization quantization = StarQuantization.of(starData);
+		
+		// The flat axis falls back to a step of 1 ly, but every Star is exactly at its minimum
+		assertTrue(Float.isFinite(quantization.maxPositionError()));
+		assertWithinBound(starData, 1500F);
+	}
+	
+	@Test
+	public void emptyStarData()
+	{
+		StarQuantization quantization = StarQuantization.of(new StarData(0));
+		
+		assertTrue(Float.isFinite(quantization.maxPositionError()));
+	}
+}